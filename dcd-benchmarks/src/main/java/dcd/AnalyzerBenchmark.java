@@ -0,0 +1,125 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks des analyses de méthodes de l'étape LOCAL_ANALYSIS (LocalVariablesAnalyzer,
+ * SelfAssignmentAnalyzer et StringToStringAnalyzer) sur un {@link MethodNodeCorpus}.
+ * <br/>Une opération analyse une méthode du corpus, à tour de rôle : le débit est en méthodes
+ * par seconde et gc.alloc.rate.norm donne les octets alloués par méthode.
+ * @author evernat
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnalyzerBenchmark {
+	@Param({ "small", "huge", "generated" })
+	String corpus;
+
+	private MethodNodeCorpus methodNodeCorpus;
+	private int index;
+
+	/**
+	 * Lit le corpus.
+	 * @throws IOException e
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		methodNodeCorpus = MethodNodeCorpus.create(corpus);
+	}
+
+	private int nextIndex() {
+		index++;
+		if (index == methodNodeCorpus.size()) {
+			index = 0;
+		}
+		return index;
+	}
+
+	/**
+	 * @return Variables locales non utilisées
+	 */
+	@Benchmark
+	public Set<LocalVariableNode> localVariablesAnalyzeMethod() {
+		return Factory.createLocalVariablesAnalyzer(methodNodeCorpus.getMethod(nextIndex()))
+				.analyzeMethod();
+	}
+
+	/**
+	 * Analyse de la méthode puis de ses classes internes, comme dans DeadCodeDetector : les
+	 * constantes lues par la méthode sont alors connues dans les classes internes.
+	 * <br/>Le coût des classes internes seules est la différence avec
+	 * {@link #localVariablesAnalyzeMethod()}.
+	 * @return Variables locales non utilisées
+	 */
+	@Benchmark
+	public Set<LocalVariableNode> localVariablesAnalyzeInnerClass() {
+		final int methodIndex = nextIndex();
+		final LocalVariablesAnalyzer localVariablesAnalyzer = Factory
+				.createLocalVariablesAnalyzer(methodNodeCorpus.getMethod(methodIndex));
+		final Set<LocalVariableNode> localVariables = localVariablesAnalyzer.analyzeMethod();
+		for (final ClassNode innerClass : methodNodeCorpus.getInnerClasses(methodIndex)) {
+			if (localVariables.isEmpty()) {
+				break;
+			}
+			localVariablesAnalyzer.analyzeInnerClass(innerClass);
+		}
+		return localVariables;
+	}
+
+	/**
+	 * @return Affectations d'une variable à elle-même
+	 */
+	@Benchmark
+	public Set<String> selfAssignmentAnalyze() {
+		final MethodNode methodNode = methodNodeCorpus.getMethod(nextIndex());
+		return Factory.createSelfAssignmentAnalyzer(methodNode).analyze();
+	}
+
+	/**
+	 * @return true si toString() est appelée sur un String
+	 */
+	@Benchmark
+	public boolean stringToStringAnalyze() {
+		return Factory.createStringToStringAnalyzer(methodNodeCorpus.getMethod(nextIndex()))
+				.analyze();
+	}
+}
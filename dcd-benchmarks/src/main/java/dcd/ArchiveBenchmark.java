@@ -0,0 +1,295 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark des façons d'amener les bytes des classes d'un jar ou d'un war jusqu'à
+ * un ClassReader : une opération lit toutes les classes de l'archive.
+ * <ul>
+ * <li>unzipToTemp : décompression dans un répertoire temporaire avec
+ * DcdHelper.unzipIntoTempDirectory puis lecture des fichiers comme aujourd'hui
+ * (Factory.createClassReader), suppression du répertoire comprise,</li>
+ * <li>zipFileStreaming : lecture des entrées avec ZipFile, sans fichier temporaire,</li>
+ * <li>zipFileSystem : lecture avec le FileSystem NIO des fichiers zip,</li>
+ * <li>explodedRead : lecture des fichiers d'un répertoire déjà décompressé (référence),</li>
+ * <li>explodedMmap : mmap des fichiers d'un répertoire déjà décompressé,</li>
+ * <li>inMemory : bytes déjà en mémoire, sans lecture (borne inférieure).</li>
+ * </ul>
+ * Les archives sont générées par {@link CorpusGenerator} (paramètres classes et format)
+ * dans le répertoire du paramètre storage : disk (propriété système dcd.benchmark.disk,
+ * target/archive-benchmark par défaut) ou tmpfs (propriété dcd.benchmark.tmpfs,
+ * /dev/shm/dcd-archive-benchmark par défaut). Les répertoires temporaires de unzipToTemp
+ * y sont aussi créés. Sur disque, les fichiers sont dans le cache de pages du système
+ * sauf à le vider entre les itérations, en dehors de ce benchmark.
+ * @author evernat
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArchiveBenchmark {
+	private static final String CLASS_EXTENSION = ".class";
+
+	@Param({ "1000", "10000" })
+	int classes;
+
+	@Param({ "jar", "war" })
+	String format;
+
+	@Param({ "disk", "tmpfs" })
+	String storage;
+
+	@Param({ "unzipToTemp", "zipFileStreaming", "zipFileSystem", "explodedRead", "explodedMmap",
+			"inMemory" })
+	String strategy;
+
+	private File archive;
+	private File explodedDirectory;
+	private List<byte[]> classBytes;
+	private String tmpDir;
+
+	/**
+	 * Génère l'archive si besoin et prépare le répertoire décompressé ou les bytes en mémoire.
+	 * @throws IOException e
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		final File directory = new File("tmpfs".equals(storage)
+				? System.getProperty("dcd.benchmark.tmpfs", "/dev/shm/dcd-archive-benchmark")
+				: System.getProperty("dcd.benchmark.disk", "target/archive-benchmark"));
+		if (!directory.mkdirs() && !directory.exists()) {
+			throw new IOException("Directory can't be created: " + directory);
+		}
+		archive = new File(directory, "corpus-" + classes + '.' + format);
+		if (!archive.exists()) {
+			final Properties properties = new Properties();
+			properties.setProperty("output", archive.getPath());
+			properties.setProperty("classes", String.valueOf(classes));
+			properties.setProperty("packages", String.valueOf(Math.max(1, classes / 100)));
+			new CorpusGenerator(properties).generate();
+		}
+		// répertoires temporaires de unzipIntoTempDirectory sur le stockage mesuré
+		tmpDir = System.getProperty("java.io.tmpdir");
+		System.setProperty("java.io.tmpdir", directory.getAbsolutePath());
+		if ("explodedRead".equals(strategy) || "explodedMmap".equals(strategy)) {
+			explodedDirectory = DcdHelper.unzipIntoTempDirectory(archive);
+		} else if ("inMemory".equals(strategy)) {
+			classBytes = new ArrayList<>();
+			final ZipFile zipFile = new ZipFile(archive);
+			try {
+				final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					final ZipEntry entry = entries.nextElement();
+					if (entry.getName().endsWith(CLASS_EXTENSION)) {
+						classBytes.add(read(zipFile.getInputStream(entry), (int) entry.getSize()));
+					}
+				}
+			} finally {
+				zipFile.close();
+			}
+		}
+	}
+
+	/**
+	 * Supprime le répertoire décompressé.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (explodedDirectory != null) {
+			DcdHelper.rmdir(explodedDirectory);
+			explodedDirectory = null;
+		}
+		classBytes = null;
+		System.setProperty("java.io.tmpdir", tmpDir);
+	}
+
+	/**
+	 * @return Somme des tailles des classes lues
+	 * @throws IOException e
+	 */
+	@Benchmark
+	public long readAllClasses() throws IOException {
+		switch (strategy) {
+		case "unzipToTemp":
+			return unzipToTemp();
+		case "zipFileStreaming":
+			return zipFileStreaming();
+		case "zipFileSystem":
+			return zipFileSystem();
+		case "explodedRead":
+			return readDirectory(explodedDirectory, false);
+		case "explodedMmap":
+			return readDirectory(explodedDirectory, true);
+		case "inMemory":
+			return inMemory();
+		default:
+			throw new IllegalArgumentException("Unknown strategy: " + strategy);
+		}
+	}
+
+	private long unzipToTemp() throws IOException {
+		final File tmpDirectory = DcdHelper.unzipIntoTempDirectory(archive);
+		try {
+			return readDirectory(tmpDirectory, false);
+		} finally {
+			DcdHelper.rmdir(tmpDirectory);
+		}
+	}
+
+	private long zipFileStreaming() throws IOException {
+		long total = 0;
+		final ZipFile zipFile = new ZipFile(archive);
+		try {
+			final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				if (entry.getName().endsWith(CLASS_EXTENSION)) {
+					total += parse(read(zipFile.getInputStream(entry), (int) entry.getSize()));
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+		return total;
+	}
+
+	private long zipFileSystem() throws IOException {
+		final long[] total = new long[1];
+		final FileSystem fileSystem = FileSystems.newFileSystem(archive.toPath(),
+				(ClassLoader) null);
+		try {
+			for (final Path root : fileSystem.getRootDirectories()) {
+				Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+					/** {@inheritDoc} */
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+							throws IOException {
+						if (file.toString().endsWith(CLASS_EXTENSION)) {
+							total[0] += parse(Files.readAllBytes(file));
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+		} finally {
+			fileSystem.close();
+		}
+		return total[0];
+	}
+
+	private static long readDirectory(File directory, boolean mmap) throws IOException {
+		long total = 0;
+		for (final File file : DcdHelper.listFiles(directory)) {
+			if (file.isDirectory()) {
+				total += readDirectory(file, mmap);
+			} else if (file.getName().endsWith(CLASS_EXTENSION)) {
+				if (mmap) {
+					total += parse(map(file));
+				} else {
+					// comme dans DeadCodeDetector.createClassReader
+					total += Factory.createClassReader(file).b.length;
+				}
+			}
+		}
+		return total;
+	}
+
+	private long inMemory() {
+		long total = 0;
+		for (final byte[] bytes : classBytes) {
+			total += parse(bytes);
+		}
+		return total;
+	}
+
+	// le ClassReader d'ASM lit un tableau de bytes : le contenu mappé y est copié
+	private static byte[] map(File file) throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			final byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static int parse(byte[] bytes) {
+		// le constructeur de ClassReader lit le pool de constantes
+		return new ClassReader(bytes).b.length;
+	}
+
+	private static byte[] read(InputStream inputStream, int size) throws IOException {
+		final InputStream input = new BufferedInputStream(inputStream);
+		try {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream(
+					size > 0 ? size : 8192);
+			final byte[] buffer = new byte[8192];
+			int length = input.read(buffer);
+			while (length != -1) {
+				output.write(buffer, 0, length);
+				length = input.read(buffer);
+			}
+			return output.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lancement des benchmarks JMH, avec les options habituelles de JMH
+ * (ex : java -jar target/benchmarks.jar ResultBenchmark -p depth=5).
+ * <br/>Le profiler gc (débit d'allocation et octets alloués par opération) est ajouté
+ * si aucun profiler n'est demandé avec -prof.
+ * @author evernat
+ */
+public final class BenchmarkRunner {
+	private static final List<String> JMH_INFO_OPTIONS = Arrays.asList("-h", "-l", "-lp",
+			"-lprof", "-lrf");
+
+	private BenchmarkRunner() {
+		super();
+	}
+
+	/**
+	 * Méthode main.
+	 * @param args Options de JMH
+	 * @throws Exception e
+	 */
+	public static void main(String[] args) throws Exception { // NOPMD
+		for (final String arg : args) {
+			if (JMH_INFO_OPTIONS.contains(arg)) {
+				// aide et listes affichées par JMH
+				Main.main(args);
+				return;
+			}
+		}
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		final ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLineOptions);
+		if (commandLineOptions.getProfilers().isEmpty()) {
+			builder.addProfiler(GCProfiler.class);
+		}
+		new Runner(builder.build()).run();
+	}
+}
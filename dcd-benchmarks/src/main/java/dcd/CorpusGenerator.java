@@ -0,0 +1,597 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Générateur de corpus synthétiques pour les tests à grande échelle : un fichier jar ou war
+ * de N classes générées avec ASM, et la vérité terrain des suspects attendus.
+ * <br/>Paramètres (clé=valeur) : output (fichier .jar ou .war), classes, packages, depth
+ * (profondeur des hiérarchies), interfaceFanOut (interfaces implémentées par classe),
+ * callDensity (nombre moyen d'appels par méthode ou champ utilisé), deadPercent (pourcentage
+ * de membres non utilisés), innerClassPercent (pourcentage de classes ayant une classe interne
+ * dans main), viewFiles (nombre de jsp, war seulement) et seed.
+ * <br/>Tout est calculé classe par classe à partir d'un hash des indices (appelants d'un membre
+ * compris) : hors répertoire central du zip, la mémoire utilisée ne dépend pas du nombre
+ * de classes (1M de classes avec -Xmx256m).
+ * <br/>La vérité terrain est écrite dans le fichier output + ".truth", une ligne par suspect
+ * au format de {@link Baseline} et de {@link ReportDiff} (utilisable comme baselineFile) :
+ * ce sont les suspects attendus avec toutes les analyses et includeViewFiles=true.
+ * Les méthodes utilisées seulement dans les jsp sont dans des lignes préfixées par
+ * {@link #VIEW_TRUTH_PREFIX} : elles sont aussi attendues si includeViewFiles=false.
+ * @author evernat
+ */
+final class CorpusGenerator {
+	static final String VIEW_TRUTH_PREFIX = "#view ";
+	static final String TRUTH_EXTENSION = ".truth";
+	private static final int PUBLIC_METHODS_PER_CLASS = 4;
+	private static final int PUBLIC_FIELDS_PER_CLASS = 2;
+	private static final int PRIVATE_METHODS_PER_CLASS = 2;
+	private static final int PRIVATE_FIELDS_PER_CLASS = 1;
+	private static final int LOCALS_PER_MAIN = 2;
+	// une interface pour INTERFACE_RATIO classes
+	private static final int INTERFACE_RATIO = 20;
+	// une méthode utilisée seulement dans les jsp pour VIEWED_CLASS_RATIO classes
+	private static final int VIEWED_CLASS_RATIO = 10;
+	private static final String VOID_DESC = "()V";
+	private static final String STRING_DESC = "Ljava/lang/String;";
+	private static final String MAIN_DESC = "([Ljava/lang/String;)V";
+	private static final String OBJECT = "java/lang/Object";
+	private static final String CONSTRUCTOR = "<init>";
+	// graines des différents tirages
+	private static final int DEAD_METHOD = 1;
+	private static final int DEAD_FIELD = 2;
+	private static final int DEAD_PRIVATE_METHOD = 3;
+	private static final int DEAD_PRIVATE_FIELD = 4;
+	private static final int DEAD_LOCAL = 5;
+	private static final int DEAD_INTERFACE = 6;
+	private static final int DEAD_VIEWED = 7;
+	private static final int USELESS_INIT = 8;
+	private static final int INNER_CLASS = 9;
+	private static final int CALL_SITES = 10;
+
+	private final File output;
+	private final int classCount;
+	private final int packageCount;
+	private final int depth;
+	private final int interfaceFanOut;
+	private final double callDensity;
+	private final double deadRatio;
+	private final double innerClassRatio;
+	private final int viewFileCount;
+	private final long seed;
+	private final int interfaceCount;
+	private final boolean war;
+	private final String classesPrefix;
+	private int deadCount;
+	private int viewedCount;
+
+	/**
+	 * Constructeur.
+	 * @param properties Paramètres du corpus (voir la description de la classe)
+	 */
+	CorpusGenerator(Properties properties) {
+		super();
+		if (properties.getProperty("output") == null) {
+			throw new IllegalArgumentException("output must be defined");
+		}
+		this.output = new File(properties.getProperty("output"));
+		this.war = output.getName().endsWith(".war");
+		if (!war && !output.getName().endsWith(".jar")) {
+			throw new IllegalArgumentException("output must be a jar or war file: " + output);
+		}
+		this.classCount = getInt(properties, "classes", 10000, 1);
+		this.packageCount = Math.min(classCount, getInt(properties, "packages", 100, 1));
+		this.depth = getInt(properties, "depth", 3, 1);
+		this.interfaceFanOut = getInt(properties, "interfaceFanOut", 2, 0);
+		this.callDensity = getDouble(properties, "callDensity", 1.5, 1);
+		this.deadRatio = getDouble(properties, "deadPercent", 10, 0) / 100;
+		this.innerClassRatio = getDouble(properties, "innerClassPercent", 10, 0) / 100;
+		this.viewFileCount = war ? getInt(properties, "viewFiles", 10, 0) : 0;
+		this.seed = Long.parseLong(properties.getProperty("seed", "0").trim());
+		this.interfaceCount = interfaceFanOut == 0 ? 0
+				: Math.max(interfaceFanOut, (classCount + INTERFACE_RATIO - 1) / INTERFACE_RATIO);
+		this.classesPrefix = war ? "WEB-INF/classes/" : "";
+		if (deadRatio > 1 || innerClassRatio > 1) {
+			throw new IllegalArgumentException("percents must be between 0 and 100");
+		}
+	}
+
+	private static int getInt(Properties properties, String key, int defaultValue,
+			int minValue) {
+		final String value = properties.getProperty(key);
+		final int result = value == null ? defaultValue : Integer.parseInt(value.trim());
+		if (result < minValue) {
+			throw new IllegalArgumentException(key + " must be >= " + minValue);
+		}
+		return result;
+	}
+
+	private static double getDouble(Properties properties, String key, double defaultValue,
+			double minValue) {
+		final String value = properties.getProperty(key);
+		final double result = value == null ? defaultValue : Double.parseDouble(value.trim());
+		if (result < minValue) {
+			throw new IllegalArgumentException(key + " must be >= " + minValue);
+		}
+		return result;
+	}
+
+	/**
+	 * Génère le fichier jar ou war et sa vérité terrain.
+	 * @throws IOException e
+	 */
+	void generate() throws IOException {
+		if (output.getParentFile() != null && !output.getParentFile().mkdirs()
+				&& !output.getParentFile().exists()) {
+			throw new IOException("Parent directory can't be created: " + output.getPath());
+		}
+		deadCount = 0;
+		viewedCount = 0;
+		final ZipOutputStream zipOutput = new ZipOutputStream(
+				new BufferedOutputStream(new FileOutputStream(output), 64 * 1024));
+		try {
+			final Writer truthWriter = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(getTruthFile(output)), StandardCharsets.UTF_8),
+					64 * 1024);
+			try {
+				for (int i = 0; i < interfaceCount; i++) {
+					addEntry(zipOutput, classesPrefix + getInterfaceName(i) + ".class",
+							generateInterface(i));
+				}
+				final List<String> truth = new ArrayList<>();
+				for (int i = 0; i < classCount; i++) {
+					truth.clear();
+					addEntry(zipOutput, classesPrefix + getClassName(i) + ".class",
+							generateClass(i, truth));
+					if (hasInnerClass(i)) {
+						addEntry(zipOutput, classesPrefix + getClassName(i) + "$1.class",
+								generateInnerClass(i));
+					}
+					for (final String line : truth) {
+						truthWriter.write(line);
+						truthWriter.write('\n');
+					}
+				}
+			} finally {
+				truthWriter.close();
+			}
+			for (int i = 0; i < viewFileCount; i++) {
+				addEntry(zipOutput, "views/page" + i + ".jsp", generateViewFile(i));
+			}
+		} finally {
+			zipOutput.close();
+		}
+	}
+
+	static File getTruthFile(File archive) {
+		return new File(archive.getPath() + TRUTH_EXTENSION);
+	}
+
+	private static void addEntry(ZipOutputStream zipOutput, String name, byte[] bytes)
+			throws IOException {
+		zipOutput.putNextEntry(new ZipEntry(name));
+		zipOutput.write(bytes);
+		zipOutput.closeEntry();
+	}
+
+	// hash des indices (splitmix64) en double entre 0 et 1, pour des tirages reproductibles
+	// sans état : un membre et ses appelants sont tirés indépendamment de l'ordre de génération
+	private double random(int kind, int index, int member) {
+		long z = seed + kind * 0x9E3779B97F4A7C15L + index * 0xBF58476D1CE4E5B9L
+				+ member * 0x94D049BB133111EBL;
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		z = z ^ z >>> 31;
+		return (z >>> 11) * 0x1.0p-53;
+	}
+
+	private String getClassName(int index) {
+		return "gen/p" + (int) ((long) index * packageCount / classCount) + "/C" + index;
+	}
+
+	private String getInterfaceName(int index) {
+		return "gen/p" + index % packageCount + "/I" + index;
+	}
+
+	private String getSuperClassName(int index) {
+		return index % depth == 0 ? OBJECT : getClassName(index - 1);
+	}
+
+	private boolean hasSubClass(int index) {
+		return index % depth < depth - 1 && index + 1 < classCount;
+	}
+
+	private boolean hasInnerClass(int index) {
+		return random(INNER_CLASS, index, 0) < innerClassRatio;
+	}
+
+	private boolean hasViewedMethod(int index) {
+		return viewFileCount > 0 && index % VIEWED_CLASS_RATIO == 0;
+	}
+
+	private boolean isDead(int kind, int index, int member) {
+		return random(kind, index, member) < deadRatio;
+	}
+
+	// membres publics : les méthodes puis les champs
+	private boolean isPublicMemberDead(int index, int member) {
+		if (member < PUBLIC_METHODS_PER_CLASS) {
+			return isDead(DEAD_METHOD, index, member);
+		}
+		return isDead(DEAD_FIELD, index, member - PUBLIC_METHODS_PER_CLASS);
+	}
+
+	private int getCallSiteCount(int index, int member) {
+		final int floor = (int) callDensity;
+		return random(CALL_SITES, index, member) < callDensity - floor ? floor + 1 : floor;
+	}
+
+	// le site d'appel callSite du membre member de la classe index est dans la classe renvoyée,
+	// la fonction étant inversible pour trouver les membres appelés par une classe
+	private int getCallerIndex(int index, int member, int callSite) {
+		return (int) ((index + 1L + getCallOffset(member, callSite)) % classCount);
+	}
+
+	private int getCalleeIndex(int callerIndex, int member, int callSite) {
+		final long callee = (callerIndex - 1L - getCallOffset(member, callSite)) % classCount;
+		return (int) (callee < 0 ? callee + classCount : callee);
+	}
+
+	private static int getCallOffset(int member, int callSite) {
+		return callSite * (PUBLIC_METHODS_PER_CLASS + PUBLIC_FIELDS_PER_CLASS) * 7 + member * 7;
+	}
+
+	private String getTruth(String type, int index, String method, String member,
+			String descriptor) {
+		deadCount++;
+		return Baseline.getFingerprint(type, getClassName(index).replace('/', '.'), method,
+				member, descriptor);
+	}
+
+	private byte[] generateInterface(int index) {
+		final ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_7,
+				Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+				getInterfaceName(index), null, OBJECT, null);
+		classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "i" + index, VOID_DESC,
+				null, null).visitEnd();
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	private byte[] generateClass(int index, List<String> truth) {
+		final String className = getClassName(index);
+		final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		final String[] interfaces = new String[Math.min(interfaceFanOut, interfaceCount)];
+		for (int t = 0; t < interfaces.length; t++) {
+			interfaces[t] = getInterfaceName((index + t) % interfaceCount);
+		}
+		classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null,
+				getSuperClassName(index), interfaces);
+		if (hasInnerClass(index)) {
+			classWriter.visitInnerClass(className + "$1", null, null, 0);
+		}
+		for (int k = 0; k < PUBLIC_FIELDS_PER_CLASS; k++) {
+			final String name = "f" + index + '_' + k;
+			classWriter.visitField(Opcodes.ACC_PUBLIC, name, STRING_DESC, null, null).visitEnd();
+			if (isDead(DEAD_FIELD, index, k)) {
+				truth.add(getTruth("publicDeadCode", index, null, name, STRING_DESC));
+			}
+		}
+		for (int k = 0; k < PRIVATE_FIELDS_PER_CLASS; k++) {
+			final String name = "pf" + index + '_' + k;
+			// champ d'instance : un champ static de type String est ignoré comme constante possible
+			classWriter.visitField(Opcodes.ACC_PRIVATE, name, STRING_DESC, null, null)
+					.visitEnd();
+			if (isDead(DEAD_PRIVATE_FIELD, index, k)) {
+				truth.add(getTruth("privateDeadCode", index, null, name, STRING_DESC));
+			}
+		}
+		generateConstructor(classWriter, index, truth);
+		for (int k = 0; k < PUBLIC_METHODS_PER_CLASS; k++) {
+			final String name = "m" + index + '_' + k;
+			generateEmptyMethod(classWriter, Opcodes.ACC_PUBLIC, name);
+			if (isDead(DEAD_METHOD, index, k)) {
+				truth.add(getTruth("publicDeadCode", index, null, name, VOID_DESC));
+			}
+		}
+		for (int k = 0; k < PRIVATE_METHODS_PER_CLASS; k++) {
+			final String name = "p" + index + '_' + k;
+			generateEmptyMethod(classWriter, Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, name);
+			if (isDead(DEAD_PRIVATE_METHOD, index, k)) {
+				truth.add(getTruth("privateDeadCode", index, null, name, VOID_DESC));
+			}
+		}
+		for (final String interfaceName : interfaces) {
+			final int interfaceIndex = Integer
+					.parseInt(interfaceName.substring(interfaceName.lastIndexOf('I') + 1));
+			final String name = "i" + interfaceIndex;
+			generateEmptyMethod(classWriter, Opcodes.ACC_PUBLIC, name);
+			if (isDead(DEAD_INTERFACE, interfaceIndex, 0)) {
+				truth.add(getTruth("publicDeadCode", index, null, name, VOID_DESC));
+			}
+		}
+		if (hasViewedMethod(index)) {
+			final String name = "v" + index;
+			generateEmptyMethod(classWriter, Opcodes.ACC_PUBLIC, name);
+			if (isDead(DEAD_VIEWED, index, 0)) {
+				truth.add(getTruth("publicDeadCode", index, null, name, VOID_DESC));
+			} else {
+				viewedCount++;
+				truth.add(VIEW_TRUTH_PREFIX
+						+ Baseline.getFingerprint("publicDeadCode",
+								getClassName(index).replace('/', '.'), null, name, VOID_DESC));
+			}
+		}
+		generateMain(classWriter, index, truth);
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	private void generateConstructor(ClassWriter classWriter, int index, List<String> truth) {
+		final MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, CONSTRUCTOR,
+				VOID_DESC, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, getSuperClassName(index), CONSTRUCTOR,
+				VOID_DESC, false);
+		if (PUBLIC_FIELDS_PER_CLASS > 0 && random(USELESS_INIT, index, 0) < deadRatio) {
+			// initialisation inutile d'un champ à null
+			final String name = "f" + index + "_0";
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitInsn(Opcodes.ACONST_NULL);
+			mv.visitFieldInsn(Opcodes.PUTFIELD, getClassName(index), name, STRING_DESC);
+			truth.add(getTruth("uselessInitialization", index, null, name, null));
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void generateEmptyMethod(ClassWriter classWriter, int access, String name) {
+		final MethodVisitor mv = classWriter.visitMethod(access, name, VOID_DESC, null, null);
+		mv.visitCode();
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	// main (non reportée) : variables locales, classe interne, méthodes et champs privés
+	// utilisés, appels des membres publics d'autres classes et des interfaces
+	private void generateMain(ClassWriter classWriter, int index, List<String> truth) {
+		final String className = getClassName(index);
+		final MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+				"main", MAIN_DESC, null, null);
+		mv.visitCode();
+		final Label start = new Label();
+		final Label end = new Label();
+		mv.visitLabel(start);
+		for (int k = 0; k < LOCALS_PER_MAIN; k++) {
+			mv.visitLdcInsn("l" + index + '_' + k);
+			mv.visitVarInsn(Opcodes.ASTORE, 1 + k);
+			if (isDead(DEAD_LOCAL, index, k)) {
+				truth.add(getTruth("deadLocalVariable", index, "main(String[])", "l" + k,
+						STRING_DESC));
+			} else {
+				mv.visitVarInsn(Opcodes.ALOAD, 1 + k);
+				mv.visitInsn(Opcodes.POP);
+			}
+		}
+		if (hasInnerClass(index)) {
+			// variable locale constante lue seulement dans la classe interne
+			mv.visitLdcInsn("c" + index);
+			mv.visitVarInsn(Opcodes.ASTORE, 1 + LOCALS_PER_MAIN);
+			mv.visitTypeInsn(Opcodes.NEW, className + "$1");
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitMethodInsn(Opcodes.INVOKESPECIAL, className + "$1", CONSTRUCTOR, VOID_DESC,
+					false);
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, className + "$1", "run", VOID_DESC, false);
+		}
+		for (int k = 0; k < PRIVATE_METHODS_PER_CLASS; k++) {
+			if (!isDead(DEAD_PRIVATE_METHOD, index, k)) {
+				mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, "p" + index + '_' + k,
+						VOID_DESC, false);
+			}
+		}
+		for (int k = 0; k < PRIVATE_FIELDS_PER_CLASS; k++) {
+			if (!isDead(DEAD_PRIVATE_FIELD, index, k)) {
+				mv.visitTypeInsn(Opcodes.NEW, className);
+				mv.visitInsn(Opcodes.DUP);
+				mv.visitMethodInsn(Opcodes.INVOKESPECIAL, className, CONSTRUCTOR, VOID_DESC,
+						false);
+				mv.visitFieldInsn(Opcodes.GETFIELD, className, "pf" + index + '_' + k,
+						STRING_DESC);
+				mv.visitInsn(Opcodes.POP);
+			}
+		}
+		generateCalls(mv, index);
+		for (int i = index; i < interfaceCount; i += classCount) {
+			if (!isDead(DEAD_INTERFACE, i, 0)) {
+				// appel par l'interface, résolu dans les classes qui l'implémentent
+				mv.visitInsn(Opcodes.ACONST_NULL);
+				mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, getInterfaceName(i), "i" + i,
+						VOID_DESC, true);
+			}
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitLabel(end);
+		mv.visitLocalVariable("args", "[Ljava/lang/String;", null, start, end, 0);
+		for (int k = 0; k < LOCALS_PER_MAIN; k++) {
+			mv.visitLocalVariable("l" + k, STRING_DESC, null, start, end, 1 + k);
+		}
+		if (hasInnerClass(index)) {
+			mv.visitLocalVariable("captured", STRING_DESC, null, start, end, 1 + LOCALS_PER_MAIN);
+		}
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private void generateCalls(MethodVisitor mv, int index) {
+		final int maxCallSites = (int) Math.ceil(callDensity);
+		for (int s = 0; s < maxCallSites; s++) {
+			for (int k = 0; k < PUBLIC_METHODS_PER_CLASS + PUBLIC_FIELDS_PER_CLASS; k++) {
+				final int callee = getCalleeIndex(index, k, s);
+				if (isPublicMemberDead(callee, k) || s >= getCallSiteCount(callee, k)) {
+					continue;
+				}
+				// un site d'appel sur deux passe par la sous-classe, s'il y en a une :
+				// l'appel est alors résolu dans la hiérarchie
+				final String owner = s % 2 == 1 && hasSubClass(callee) ? getClassName(callee + 1)
+						: getClassName(callee);
+				mv.visitTypeInsn(Opcodes.NEW, owner);
+				mv.visitInsn(Opcodes.DUP);
+				mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, CONSTRUCTOR, VOID_DESC, false);
+				if (k < PUBLIC_METHODS_PER_CLASS) {
+					mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, "m" + callee + '_' + k,
+							VOID_DESC, false);
+				} else {
+					mv.visitFieldInsn(Opcodes.GETFIELD, owner,
+							"f" + callee + '_' + (k - PUBLIC_METHODS_PER_CLASS), STRING_DESC);
+					mv.visitInsn(Opcodes.POP);
+				}
+			}
+		}
+	}
+
+	private byte[] generateInnerClass(int index) {
+		final String className = getClassName(index);
+		final String innerClassName = className + "$1";
+		final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		classWriter.visit(Opcodes.V1_7, Opcodes.ACC_SUPER, innerClassName, null, OBJECT, null);
+		classWriter.visitOuterClass(className, "main", MAIN_DESC);
+		classWriter.visitInnerClass(innerClassName, null, null, 0);
+		final MethodVisitor init = classWriter.visitMethod(Opcodes.ACC_PUBLIC, CONSTRUCTOR,
+				VOID_DESC, null, null);
+		init.visitCode();
+		init.visitVarInsn(Opcodes.ALOAD, 0);
+		init.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, CONSTRUCTOR, VOID_DESC, false);
+		init.visitInsn(Opcodes.RETURN);
+		init.visitMaxs(0, 0);
+		init.visitEnd();
+		final MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "run", VOID_DESC,
+				null, null);
+		mv.visitCode();
+		// constante de la variable finale de main, copiée par le compilateur
+		mv.visitLdcInsn("c" + index);
+		mv.visitInsn(Opcodes.POP);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	// la jsp numéro viewIndex utilise les méthodes v des classes index % viewFileCount
+	private byte[] generateViewFile(int viewIndex) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("<%@ page contentType=\"text/html; charset=UTF-8\" %>\n<html><body>\n");
+		for (int i = viewIndex * VIEWED_CLASS_RATIO; i < classCount; i += viewFileCount
+				* VIEWED_CLASS_RATIO) {
+			if (!isDead(DEAD_VIEWED, i, 0)) {
+				sb.append("<p>${bean.v").append(i).append("()}</p>\n");
+			}
+		}
+		sb.append("</body></html>\n");
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	int getClassCount() {
+		return classCount;
+	}
+
+	int getDeadCount() {
+		return deadCount;
+	}
+
+	int getViewedCount() {
+		return viewedCount;
+	}
+
+	/**
+	 * Lit les paramètres de la ligne de commande.
+	 * @param args Paramètres clé=valeur, ou fichiers properties
+	 * @return Properties
+	 * @throws IOException e
+	 */
+	static Properties loadProperties(String[] args) throws IOException {
+		final Properties properties = new Properties();
+		for (final String arg : args) {
+			final int index = arg.indexOf('=');
+			if (index == -1) {
+				final InputStream input = new FileInputStream(arg);
+				try {
+					properties.load(input);
+				} finally {
+					input.close();
+				}
+			} else {
+				properties.setProperty(arg.substring(0, index), arg.substring(index + 1));
+			}
+		}
+		return properties;
+	}
+
+	private static void log(String msg) {
+		DcdHelper.log(msg);
+	}
+
+	/**
+	 * Méthode main.
+	 * @param args Paramètres clé=valeur, ou fichier properties
+	 * @throws IOException e
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			log("Usage: java -cp benchmarks.jar dcd.CorpusGenerator output=corpus.war"
+					+ " [classes=10000] [packages=100] [depth=3] [interfaceFanOut=2]"
+					+ " [callDensity=1.5] [deadPercent=10] [innerClassPercent=10] [viewFiles=10]"
+					+ " [seed=0]");
+			log("or: java -cp benchmarks.jar dcd.CorpusGenerator corpus.properties");
+			return;
+		}
+		final Properties properties = loadProperties(args);
+		final CorpusGenerator generator = new CorpusGenerator(properties);
+		final long start = System.currentTimeMillis();
+		generator.generate();
+		log(generator.getClassCount() + " classes generated in " + generator.output + " in "
+				+ (System.currentTimeMillis() - start) + " ms, " + generator.getDeadCount()
+				+ " expected suspects and " + generator.getViewedCount()
+				+ " methods used only in view files in " + getTruthFile(generator.output));
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Corpus de MethodNode pour les benchmarks des analyses de méthodes, lus comme dans l'étape
+ * LOCAL_ANALYSIS (classe avec EXPAND_FRAMES, classes internes sans debug ni frames) :
+ * <ul>
+ * <li>small : classes de dcd, de taille courante,</li>
+ * <li>huge : classes d'ASM ayant de très grosses méthodes (ClassReader, MethodWriter, Frame),</li>
+ * <li>generated : classe générée à la manière d'une jsp compilée, méthode _jspService
+ * avec des centaines de variables locales et une classe interne,</li>
+ * <li>ou le chemin d'un fichier jar dont toutes les classes sont lues.</li>
+ * </ul>
+ * @author evernat
+ */
+final class MethodNodeCorpus {
+	private static final String[] SMALL_CLASSES = { "dcd/Finding", "dcd/Parameters",
+			"dcd/DcdHelper", "dcd/Result", "dcd/Report", "dcd/DeadCodeDetector", "dcd/Baseline",
+			"dcd/ExternalSorter", "dcd/LocalVariablesAnalyzer", "dcd/SpillableSetMap", };
+	private static final String[] HUGE_CLASSES = { "org/objectweb/asm/ClassReader",
+			"org/objectweb/asm/MethodWriter", "org/objectweb/asm/Frame", };
+	private static final String GENERATED_CLASS = "generated/Page_jsp";
+	private static final int GENERATED_LOCAL_COUNT = 400;
+	private final List<MethodNode> methods = new ArrayList<>();
+	// classes internes créées dans chaque méthode, comme dans analyzeMethodForLocalDeadCode
+	private final List<List<ClassNode>> innerClassesByMethod = new ArrayList<>();
+
+	private MethodNodeCorpus() {
+		super();
+	}
+
+	/**
+	 * @param corpus small, huge, generated ou chemin d'un fichier jar
+	 * @return MethodNodeCorpus
+	 * @throws IOException e
+	 */
+	static MethodNodeCorpus create(String corpus) throws IOException {
+		final MethodNodeCorpus methodNodeCorpus = new MethodNodeCorpus();
+		if ("small".equals(corpus)) {
+			methodNodeCorpus.addResourceClasses(SMALL_CLASSES);
+		} else if ("huge".equals(corpus)) {
+			methodNodeCorpus.addResourceClasses(HUGE_CLASSES);
+		} else if ("generated".equals(corpus)) {
+			methodNodeCorpus.addClass(createGeneratedClass(GENERATED_LOCAL_COUNT),
+					new byte[][] { createGeneratedInnerClass(GENERATED_LOCAL_COUNT) });
+		} else if (corpus.endsWith(".jar")) {
+			methodNodeCorpus.addJarClasses(new File(corpus));
+		} else {
+			throw new IllegalArgumentException("Unknown corpus: " + corpus);
+		}
+		if (methodNodeCorpus.methods.isEmpty()) {
+			throw new IllegalArgumentException("No method in corpus: " + corpus);
+		}
+		return methodNodeCorpus;
+	}
+
+	private void addResourceClasses(String[] classNames) throws IOException {
+		for (final String className : classNames) {
+			final List<byte[]> innerClasses = new ArrayList<>();
+			final byte[] bytes = readResource(className);
+			for (final InnerClassNode innerClassNode : getInnerClasses(bytes)) {
+				innerClasses.add(readResource(innerClassNode.name));
+			}
+			addClass(bytes, innerClasses.toArray(new byte[innerClasses.size()][]));
+		}
+	}
+
+	private void addJarClasses(File jarFile) throws IOException {
+		final ZipFile zipFile = new ZipFile(jarFile);
+		try {
+			final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final String name = entry.getName();
+				if (!name.endsWith(".class") || name.indexOf('$') != -1) {
+					continue;
+				}
+				final byte[] bytes = read(zipFile.getInputStream(entry));
+				final List<byte[]> innerClasses = new ArrayList<>();
+				for (final InnerClassNode innerClassNode : getInnerClasses(bytes)) {
+					final ZipEntry innerEntry = zipFile.getEntry(innerClassNode.name + ".class");
+					if (innerEntry != null) {
+						innerClasses.add(read(zipFile.getInputStream(innerEntry)));
+					}
+				}
+				addClass(bytes, innerClasses.toArray(new byte[innerClasses.size()][]));
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<InnerClassNode> getInnerClasses(byte[] bytes) {
+		final ClassNode classNode = new ClassNode();
+		new ClassReader(bytes).accept(classNode,
+				ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		final List<InnerClassNode> innerClasses = new ArrayList<>();
+		for (final InnerClassNode innerClassNode : (List<InnerClassNode>) classNode.innerClasses) {
+			// mêmes classes internes que dans analyzeMethodForLocalDeadCode
+			if (innerClassNode.outerName == null || innerClassNode.outerName.equals(classNode.name)
+					&& !innerClassNode.name.equals(classNode.name)) {
+				innerClasses.add(innerClassNode);
+			}
+		}
+		return innerClasses;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addClass(byte[] bytes, byte[][] innerClassesBytes) {
+		final ClassNode classNode = new ClassNode();
+		new ClassReader(bytes).accept(classNode, ClassReader.EXPAND_FRAMES);
+		final List<ClassNode> innerClasses = new ArrayList<>();
+		for (final byte[] innerClassBytes : innerClassesBytes) {
+			final ClassNode innerClass = new ClassNode();
+			new ClassReader(innerClassBytes).accept(innerClass,
+					ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			innerClasses.add(innerClass);
+		}
+		for (final MethodNode methodNode : (List<MethodNode>) classNode.methods) {
+			final List<ClassNode> methodInnerClasses = new ArrayList<>();
+			for (final ClassNode innerClass : innerClasses) {
+				if (methodNode.name.equals(innerClass.outerMethod)
+						&& methodNode.desc.equals(innerClass.outerMethodDesc)) {
+					methodInnerClasses.add(innerClass);
+				}
+			}
+			methods.add(methodNode);
+			innerClassesByMethod.add(methodInnerClasses);
+		}
+	}
+
+	private static byte[] readResource(String className) throws IOException {
+		final InputStream input = MethodNodeCorpus.class
+				.getResourceAsStream('/' + className + ".class");
+		if (input == null) {
+			throw new IOException("Class not found in classpath: " + className);
+		}
+		return read(input);
+	}
+
+	private static byte[] read(InputStream input) throws IOException {
+		try {
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int length = input.read(buffer);
+			while (length != -1) {
+				output.write(buffer, 0, length);
+				length = input.read(buffer);
+			}
+			return output.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Classe générée comme une jsp compilée : _jspService affecte des constantes à de nombreuses
+	 * variables locales, en lit la moitié et crée une classe interne qui lit les constantes
+	 * d'un tiers d'entre elles.
+	 * @param localCount Nombre de variables locales
+	 * @return Bytecode
+	 */
+	static byte[] createGeneratedClass(int localCount) {
+		final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, GENERATED_CLASS, null,
+				"java/lang/Object", null);
+		classWriter.visitInnerClass(GENERATED_CLASS + "$1", null, null, 0);
+		final MethodVisitor init = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V",
+				null, null);
+		init.visitCode();
+		init.visitVarInsn(Opcodes.ALOAD, 0);
+		init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		init.visitInsn(Opcodes.RETURN);
+		init.visitMaxs(0, 0);
+		init.visitEnd();
+		final MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "_jspService",
+				"(Ljava/lang/Object;)V", null, null);
+		mv.visitCode();
+		final Label start = new Label();
+		final Label end = new Label();
+		mv.visitLabel(start);
+		for (int i = 0; i < localCount; i++) {
+			mv.visitLdcInsn("value" + i);
+			mv.visitVarInsn(Opcodes.ASTORE, 2 + i);
+		}
+		for (int i = 0; i < localCount; i += 2) {
+			mv.visitVarInsn(Opcodes.ALOAD, 2 + i);
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I",
+					false);
+			mv.visitInsn(Opcodes.POP);
+		}
+		mv.visitTypeInsn(Opcodes.NEW, GENERATED_CLASS + "$1");
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, GENERATED_CLASS + "$1", "<init>", "()V",
+				false);
+		mv.visitInsn(Opcodes.POP);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitLabel(end);
+		mv.visitLocalVariable("this", 'L' + GENERATED_CLASS + ';', null, start, end, 0);
+		mv.visitLocalVariable("request", "Ljava/lang/Object;", null, start, end, 1);
+		for (int i = 0; i < localCount; i++) {
+			mv.visitLocalVariable("v" + i, "Ljava/lang/String;", null, start, end, 2 + i);
+		}
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	static byte[] createGeneratedInnerClass(int localCount) {
+		final String innerClassName = GENERATED_CLASS + "$1";
+		final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		classWriter.visit(Opcodes.V1_6, 0, innerClassName, null, "java/lang/Object", null);
+		classWriter.visitOuterClass(GENERATED_CLASS, "_jspService", "(Ljava/lang/Object;)V");
+		classWriter.visitInnerClass(innerClassName, null, null, 0);
+		final MethodVisitor init = classWriter.visitMethod(0, "<init>", "()V", null, null);
+		init.visitCode();
+		init.visitVarInsn(Opcodes.ALOAD, 0);
+		init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		init.visitInsn(Opcodes.RETURN);
+		init.visitMaxs(0, 0);
+		init.visitEnd();
+		final MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "run", "()V", null,
+				null);
+		mv.visitCode();
+		for (int i = 1; i < localCount; i += 3) {
+			mv.visitLdcInsn("value" + i);
+			mv.visitInsn(Opcodes.POP);
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	int size() {
+		return methods.size();
+	}
+
+	MethodNode getMethod(int index) {
+		return methods.get(index);
+	}
+
+	List<ClassNode> getInnerClasses(int index) {
+		return innerClassesByMethod.get(index);
+	}
+}
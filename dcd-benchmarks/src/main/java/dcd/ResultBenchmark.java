@@ -0,0 +1,201 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de la résolution des appels dans {@link Result} (methodCalled, fieldCalled,
+ * getAllSubClasses, filterJavaMethods et reportDeadCode) sur des hiérarchies synthétiques.
+ * <br/>Chaque opération traite toute la hiérarchie : les contextes d'analyse modifiés
+ * par une opération sont recréés avant chaque appel (Level.Invocation).
+ * @author evernat
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultBenchmark {
+	/**
+	 * Hiérarchie et rapport, partagés par les benchmarks.
+	 */
+	@State(Scope.Benchmark)
+	public static class HierarchyState {
+		@Param({ "10" })
+		int rootCount;
+
+		@Param({ "3", "5" })
+		int depth;
+
+		@Param({ "2", "6" })
+		int fanOut;
+
+		@Param({ "0.1", "0.5" })
+		double callDensity;
+
+		SyntheticHierarchy hierarchy;
+		Result indexedResult;
+		Report report;
+		private File xmlReportFile;
+
+		/**
+		 * Crée la hiérarchie et un rapport xml temporaire (pas de sortie console).
+		 * @throws IOException e
+		 * @throws XMLStreamException e
+		 */
+		@Setup(Level.Trial)
+		public void setUp() throws IOException, XMLStreamException {
+			hierarchy = new SyntheticHierarchy(rootCount, depth, fanOut, callDensity);
+			xmlReportFile = File.createTempFile("dcd-bench", ".xml");
+			report = new Report(xmlReportFile);
+			indexedResult = hierarchy.createResult(report);
+		}
+
+		/**
+		 * Ferme et supprime le rapport.
+		 * @throws IOException e
+		 * @throws XMLStreamException e
+		 */
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException, XMLStreamException {
+			report.close(0, 0, 0, null);
+			if (!xmlReportFile.delete()) {
+				xmlReportFile.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Contexte d'analyse indexé, recréé avant chaque appel.
+	 */
+	@State(Scope.Thread)
+	public static class IndexedResultState {
+		Result result;
+
+		/**
+		 * @param hierarchyState HierarchyState
+		 */
+		@Setup(Level.Invocation)
+		public void setUp(HierarchyState hierarchyState) {
+			result = hierarchyState.hierarchy.createResult(hierarchyState.report);
+		}
+	}
+
+	/**
+	 * Contexte d'analyse indexé dont les appels sont résolus, recréé avant chaque appel.
+	 */
+	@State(Scope.Thread)
+	public static class ResolvedResultState {
+		Result result;
+
+		/**
+		 * @param hierarchyState HierarchyState
+		 */
+		@Setup(Level.Invocation)
+		public void setUp(HierarchyState hierarchyState) {
+			result = hierarchyState.hierarchy.createResult(hierarchyState.report);
+			hierarchyState.hierarchy.resolveCalls(result);
+		}
+	}
+
+	/**
+	 * @param hierarchyState HierarchyState
+	 * @param state IndexedResultState
+	 * @return Result
+	 */
+	@Benchmark
+	public Result methodCalled(HierarchyState hierarchyState, IndexedResultState state) {
+		final Result result = state.result;
+		for (final String[] call : hierarchyState.hierarchy.getMethodCalls()) {
+			result.methodCalled(call[0], call[1], call[2]);
+		}
+		return result;
+	}
+
+	/**
+	 * @param hierarchyState HierarchyState
+	 * @param state IndexedResultState
+	 * @return Result
+	 */
+	@Benchmark
+	public Result fieldCalled(HierarchyState hierarchyState, IndexedResultState state) {
+		final Result result = state.result;
+		for (final String[] call : hierarchyState.hierarchy.getFieldCalls()) {
+			result.fieldCalled(call[0], call[1], call[2]);
+		}
+		return result;
+	}
+
+	/**
+	 * @param hierarchyState HierarchyState
+	 * @return Nombre total de sous-classes
+	 */
+	@Benchmark
+	public int getAllSubClasses(HierarchyState hierarchyState) {
+		int count = 0;
+		for (final String className : hierarchyState.hierarchy.getClassNames()) {
+			count += hierarchyState.indexedResult.getAllSubClasses(className).size();
+		}
+		return count;
+	}
+
+	/**
+	 * @param state IndexedResultState
+	 * @return Result
+	 */
+	@Benchmark
+	public Result filterJavaMethods(IndexedResultState state) {
+		state.result.filterJavaMethods();
+		return state.result;
+	}
+
+	/**
+	 * @param hierarchyState HierarchyState
+	 * @param state ResolvedResultState
+	 * @return Nombre de suspects
+	 * @throws IOException e
+	 * @throws XMLStreamException e
+	 */
+	@Benchmark
+	public int reportDeadCode(HierarchyState hierarchyState, ResolvedResultState state)
+			throws IOException, XMLStreamException {
+		final int suspectCount = state.result.reportDeadCode(true);
+		// les résultats sont écrits par le thread du rapport : on attend la fin de l'écriture
+		hierarchyState.report.flush();
+		return suspectCount;
+	}
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Benchmark de bout en bout de {@link DeadCodeDetector#run()} sur les corpus générés par
+ * {@link CorpusGenerator}, avec seuils de régression.
+ * <br/>Pour chaque taille de corpus, chaque mode (private, public, local, init, viewFiles),
+ * chaque nombre de threads et chaque taille de heap, une JVM {@link ScalingRun} est lancée
+ * autant de fois que le paramètre runs (5 par défaut avec updateThresholds=true, sinon 1) et
+ * les médianes des classes/s, du pic de RSS et du temps de gc sont écrites dans un fichier CSV.
+ * <br/>L'analyse étant mono-thread dans un processus, le nombre de threads est le nombre de
+ * workers du mode shard (1 pour une analyse sans shard).
+ * <br/>Une exécution est en échec si elle échoue, si le nombre de suspects diffère de la vérité
+ * terrain du corpus, si le débit passe sous le seuil ou si le pic de RSS dépasse le seuil,
+ * à la tolérance près. Les seuils sont dans le fichier thresholdsFile ; updateThresholds=true
+ * le réécrit avec les médianes mesurées et la description de l'environnement, pour un nouvel
+ * environnement de référence. Il n'y a pas de seuil pour les exécutions ayant plus de workers
+ * que de cpus : leur débit dépend alors surtout du partage des cpus.
+ * @author evernat
+ */
+public final class ScalingBenchmark {
+	private static final String CLASSES_PER_SECOND_KEY = ".classesPerSecond";
+	private static final String PEAK_RSS_MB_KEY = ".peakRssMB";
+	private static final String TOLERANCE_PERCENT_KEY = "tolerancePercent";
+	private static final double DEFAULT_TOLERANCE_PERCENT = 20;
+	private static final List<String> CORPUS_KEYS = Arrays.asList("depth", "interfaceFanOut",
+			"callDensity", "deadPercent", "innerClassPercent", "viewFiles", "seed");
+	private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
+	private static final String CSV_HEADER = "classes,mode,threads,heap,runs,analyzedClasses,"
+			+ "millis,classesPerSecond,peakRssMB,gcMillis,suspects,expectedSuspects,status";
+
+	private final Properties properties;
+	private final File workDirectory;
+	private final File thresholdsFile;
+	private final Properties thresholds = new Properties();
+	private final double tolerance;
+	private final boolean updateThresholds;
+	private final int runCount;
+	private int failureCount;
+
+	/**
+	 * Mode d'analyse mesuré, avec ses paramètres et les suspects attendus dans la vérité terrain.
+	 */
+	enum Mode {
+		PRIVATE("private", "privateDeadCode=true", "privateDeadCode "),
+		PUBLIC("public", "publicDeadCode=true",
+				"publicDeadCode ", CorpusGenerator.VIEW_TRUTH_PREFIX),
+		LOCAL("local", "localDeadCode=true", "deadLocalVariable "),
+		INIT("init", "initDeadCode=true", "uselessInitialization "),
+		VIEW_FILES("viewFiles", "publicDeadCode=true\nincludeViewFiles=true", "publicDeadCode ");
+
+		private final String name;
+		private final String parameters;
+		private final String[] truthPrefixes;
+
+		Mode(String name, String parameters, String... truthPrefixes) {
+			this.name = name;
+			this.parameters = parameters;
+			this.truthPrefixes = truthPrefixes;
+		}
+
+		static Mode parse(String name) {
+			for (final Mode mode : values()) {
+				if (mode.name.equals(name)) {
+					return mode;
+				}
+			}
+			throw new IllegalArgumentException("Unknown mode: " + name);
+		}
+
+		String getName() {
+			return name;
+		}
+
+		String getParameters() {
+			// les analyses non demandées sont désactivées explicitement,
+			// privateDeadCode étant true par défaut
+			return "publicDeadCode=false\nprivateDeadCode=false\n" + parameters;
+		}
+
+		boolean isExpected(String truthLine) {
+			for (final String prefix : truthPrefixes) {
+				if (truthLine.startsWith(prefix)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private ScalingBenchmark(Properties properties) throws IOException {
+		super();
+		this.properties = properties;
+		this.workDirectory = new File(properties.getProperty("workDirectory", "target/scaling"));
+		this.thresholdsFile = new File(
+				properties.getProperty("thresholdsFile", "scaling-thresholds.properties"));
+		if (thresholdsFile.exists()) {
+			final InputStream input = new BufferedInputStream(new FileInputStream(thresholdsFile));
+			try {
+				thresholds.load(input);
+			} finally {
+				input.close();
+			}
+		}
+		this.tolerance = Double.parseDouble(thresholds.getProperty(TOLERANCE_PERCENT_KEY,
+				String.valueOf(DEFAULT_TOLERANCE_PERCENT))) / 100;
+		this.updateThresholds = Boolean.parseBoolean(properties.getProperty("updateThresholds"));
+		this.runCount = Integer
+				.parseInt(properties.getProperty("runs", updateThresholds ? "5" : "1"));
+		if (runCount < 1) {
+			throw new IllegalArgumentException("runs must be at least 1");
+		}
+		if (!workDirectory.mkdirs() && !workDirectory.exists()) {
+			throw new IOException("Work directory can't be created: " + workDirectory);
+		}
+	}
+
+	private List<String> getList(String key, String defaultValue) {
+		final List<String> list = new ArrayList<>();
+		for (final String value : properties.getProperty(key, defaultValue).split(",")) {
+			if (!value.trim().isEmpty()) {
+				list.add(value.trim());
+			}
+		}
+		return list;
+	}
+
+	private void run() throws IOException, InterruptedException {
+		final File csvFile = new File(workDirectory, "scaling.csv");
+		final Writer csv = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(csvFile), StandardCharsets.UTF_8));
+		try {
+			csv.write(CSV_HEADER + '\n');
+			log(CSV_HEADER);
+			for (final String size : getList("sizes", "10000")) {
+				final File corpus = getCorpus(Integer.parseInt(size));
+				for (final String modeName : getList("modes",
+						"private,public,local,init,viewFiles")) {
+					final Mode mode = Mode.parse(modeName);
+					final int expectedSuspects = countExpectedSuspects(corpus, mode);
+					for (final String threads : getList("threads", "1,2")) {
+						for (final String heap : getList("heaps", "256m,1g")) {
+							final String row = measure(corpus, size, mode,
+									Integer.parseInt(threads), heap, expectedSuspects);
+							csv.write(row + '\n');
+							csv.flush();
+							log(row);
+						}
+					}
+				}
+			}
+		} finally {
+			csv.close();
+		}
+		log("Results written in " + csvFile);
+		if (updateThresholds) {
+			writeThresholds();
+			log("Thresholds written in " + thresholdsFile);
+		}
+	}
+
+	private File getCorpus(int classCount) throws IOException {
+		// corpus gardé entre les exécutions : le supprimer pour le regénérer avec d'autres paramètres
+		final File corpus = new File(workDirectory, "corpus-" + classCount + ".war");
+		if (!corpus.exists() || !CorpusGenerator.getTruthFile(corpus).exists()) {
+			final Properties corpusProperties = new Properties();
+			for (final String key : CORPUS_KEYS) {
+				if (properties.getProperty(key) != null) {
+					corpusProperties.setProperty(key, properties.getProperty(key));
+				}
+			}
+			corpusProperties.setProperty("output", corpus.getPath());
+			corpusProperties.setProperty("classes", String.valueOf(classCount));
+			corpusProperties.setProperty("packages", String.valueOf(Math.max(1, classCount / 100)));
+			log("Generating " + corpus + " ...");
+			new CorpusGenerator(corpusProperties).generate();
+		}
+		return corpus;
+	}
+
+	private static int countExpectedSuspects(File corpus, Mode mode) throws IOException {
+		int count = 0;
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(CorpusGenerator.getTruthFile(corpus)), StandardCharsets.UTF_8),
+				64 * 1024);
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				if (mode.isExpected(line)) {
+					count++;
+				}
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		return count;
+	}
+
+	// CHECKSTYLE:OFF
+	private String measure(File corpus, String size, Mode mode, int threads, String heap,
+			int expectedSuspects) throws IOException, InterruptedException {
+		// CHECKSTYLE:ON
+		final String runName = size + '.' + mode.getName() + '.' + threads + '.' + heap;
+		final String prefix = size + ',' + mode.getName() + ',' + threads + ',' + heap + ','
+				+ runCount + ',';
+		// une mesure isolée est trop bruitée pour un seuil : on garde la médiane de chaque valeur
+		final double[] millis = new double[runCount];
+		final double[] classesPerSecond = new double[runCount];
+		final double[] peakRssMB = new double[runCount];
+		final double[] gcMillis = new double[runCount];
+		long analyzedClasses = 0;
+		int suspects = expectedSuspects;
+		for (int run = 0; run < runCount; run++) {
+			final File runDirectory = new File(workDirectory, "runs" + File.separatorChar
+					+ runName + (runCount > 1 ? File.separatorChar + String.valueOf(run + 1) : ""));
+			final File resultFile = new File(runDirectory, "result.properties");
+			final File logFile = new File(runDirectory, "output.log");
+			final int exitValue = execute(corpus, mode, threads, heap, runDirectory);
+			if (exitValue != 0 || !resultFile.exists()) {
+				failureCount++;
+				return prefix + ",,,,,," + expectedSuspects + ",failed with exit value "
+						+ exitValue + " (see " + logFile + ')';
+			}
+			final Properties result = new Properties();
+			final InputStream input = new FileInputStream(resultFile);
+			try {
+				result.load(input);
+			} finally {
+				input.close();
+			}
+			millis[run] = Long.parseLong(result.getProperty(ScalingRun.MILLIS_KEY));
+			analyzedClasses = Long
+					.parseLong(result.getProperty(ScalingRun.ANALYZED_CLASS_COUNT_KEY));
+			final long peakRss = Long.parseLong(result.getProperty(ScalingRun.PEAK_RSS_KEY));
+			peakRssMB[run] = peakRss < 0 ? -1 : peakRss / (1024 * 1024);
+			gcMillis[run] = Long.parseLong(result.getProperty(ScalingRun.GC_MILLIS_KEY));
+			classesPerSecond[run] = analyzedClasses * 1000d / Math.max(1, millis[run]);
+			final int runSuspects = Integer
+					.parseInt(result.getProperty(ScalingRun.SUSPECT_COUNT_KEY));
+			if (runSuspects != expectedSuspects) {
+				suspects = runSuspects;
+			}
+		}
+		final double medianClassesPerSecond = median(classesPerSecond);
+		final long medianPeakRssMB = Math.round(median(peakRssMB));
+		final String status = check(runName, threads, medianClassesPerSecond, medianPeakRssMB,
+				suspects, expectedSuspects);
+		if (!"ok".equals(status)) {
+			failureCount++;
+		} else if (updateThresholds) {
+			if (threads > AVAILABLE_PROCESSORS) {
+				thresholds.remove(runName + CLASSES_PER_SECOND_KEY);
+				thresholds.remove(runName + PEAK_RSS_MB_KEY);
+			} else {
+				thresholds.setProperty(runName + CLASSES_PER_SECOND_KEY,
+						String.valueOf(Math.round(medianClassesPerSecond)));
+				if (medianPeakRssMB >= 0) {
+					thresholds.setProperty(runName + PEAK_RSS_MB_KEY,
+							String.valueOf(medianPeakRssMB));
+				}
+			}
+		}
+		return prefix + analyzedClasses + ',' + Math.round(median(millis)) + ','
+				+ String.format(Locale.US, "%.1f", medianClassesPerSecond) + ','
+				+ medianPeakRssMB + ',' + Math.round(median(gcMillis)) + ',' + suspects + ','
+				+ expectedSuspects + ',' + status;
+	}
+
+	private int execute(File corpus, Mode mode, int threads, String heap, File runDirectory)
+			throws IOException, InterruptedException {
+		if (!runDirectory.mkdirs() && !runDirectory.exists()) {
+			throw new IOException("Run directory can't be created: " + runDirectory);
+		}
+		final File parametersFile = new File(runDirectory, "parameters.properties");
+		final File resultFile = new File(runDirectory, "result.properties");
+		final File logFile = new File(runDirectory, "output.log");
+		if (resultFile.exists() && !resultFile.delete()) {
+			throw new IOException(resultFile + " can't be deleted");
+		}
+		final StringBuilder parameters = new StringBuilder();
+		parameters.append("directories=").append(corpus.getAbsolutePath().replace('\\', '/'))
+				.append('\n').append(mode.getParameters()).append('\n');
+		if (threads > 1) {
+			parameters.append("shardCount=").append(threads).append("\nshardDirectory=")
+					.append(new File(runDirectory, "shards").getAbsolutePath().replace('\\', '/'))
+					.append('\n');
+		}
+		final OutputStream output = new FileOutputStream(parametersFile);
+		try {
+			output.write(parameters.toString().getBytes(StandardCharsets.ISO_8859_1));
+		} finally {
+			output.close();
+		}
+		final List<String> command = Arrays.asList(
+				System.getProperty("java.home") + File.separatorChar + "bin" + File.separatorChar
+						+ "java",
+				"-Xmx" + heap, "-cp", System.getProperty("java.class.path"),
+				ScalingRun.class.getName(), parametersFile.getPath(), resultFile.getPath());
+		final ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.redirectErrorStream(true);
+		processBuilder.redirectOutput(logFile);
+		return processBuilder.start().waitFor();
+	}
+
+	private static double median(double[] values) {
+		final double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		final int middle = sorted.length / 2;
+		return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+
+	private String check(String runName, int threads, double classesPerSecond, long peakRssMB,
+			int suspects, int expectedSuspects) {
+		if (suspects != expectedSuspects) {
+			return "wrong suspect count";
+		}
+		if (updateThresholds) {
+			return "ok";
+		}
+		final String minClassesPerSecond = thresholds
+				.getProperty(runName + CLASSES_PER_SECOND_KEY);
+		// débit non comparable si les workers se partagent moins de cpus qu'à la référence
+		if (minClassesPerSecond != null && threads <= AVAILABLE_PROCESSORS
+				&& classesPerSecond < Double.parseDouble(minClassesPerSecond) * (1 - tolerance)) {
+			return "throughput below threshold " + minClassesPerSecond;
+		}
+		final String maxPeakRssMB = thresholds.getProperty(runName + PEAK_RSS_MB_KEY);
+		if (maxPeakRssMB != null && peakRssMB >= 0
+				&& peakRssMB > Double.parseDouble(maxPeakRssMB) * (1 + tolerance)) {
+			return "peak RSS above threshold " + maxPeakRssMB;
+		}
+		return "ok";
+	}
+
+	private void writeThresholds() throws IOException {
+		final Map<String, String> sortedThresholds = new TreeMap<>();
+		for (final String key : thresholds.stringPropertyNames()) {
+			sortedThresholds.put(key, thresholds.getProperty(key));
+		}
+		sortedThresholds.remove(TOLERANCE_PERCENT_KEY);
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(thresholdsFile), StandardCharsets.ISO_8859_1));
+		try {
+			writer.write("# Regression thresholds of ScalingBenchmark, per run"
+					+ " <classes>.<mode>.<threads>.<heap>:\n# minimal classes/s and maximal peak"
+					+ " RSS in MB, with a tolerance in percent.\n# Rewritten with"
+					+ " updateThresholds=true on the reference environment.\n");
+			writer.write(getEnvironmentDescription());
+			writer.write(TOLERANCE_PERCENT_KEY + '=' + String.valueOf(tolerance * 100)
+					.replaceAll("\\.0$", "") + '\n');
+			for (final Map.Entry<String, String> entry : sortedThresholds.entrySet()) {
+				writer.write(entry.getKey() + '=' + entry.getValue() + '\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private String getEnvironmentDescription() {
+		final StringBuilder corpusParameters = new StringBuilder();
+		for (final String key : CORPUS_KEYS) {
+			if (properties.getProperty(key) != null) {
+				corpusParameters.append(corpusParameters.length() == 0 ? "" : ", ").append(key)
+						.append('=').append(properties.getProperty(key));
+			}
+		}
+		return "# Median of " + runCount + " run(s) per threshold, measured on "
+				+ System.getProperty("os.name") + ' ' + System.getProperty("os.arch") + " with "
+				+ AVAILABLE_PROCESSORS + " cpu(s), JDK " + System.getProperty("java.version")
+				+ ",\n# for the " + (corpusParameters.length() == 0
+						? "default corpus of CorpusGenerator"
+						: "corpus of CorpusGenerator with " + corpusParameters)
+				+ ".\n# Runs with more threads than cpus have no threshold.\n";
+	}
+
+	private static void log(String msg) {
+		DcdHelper.log(msg);
+	}
+
+	/**
+	 * Méthode main.
+	 * @param args Paramètres clé=valeur, ou fichiers properties : sizes (nombres de classes des
+	 * corpus), modes, threads, heaps, runs, workDirectory, thresholdsFile, updateThresholds
+	 * et les paramètres de {@link CorpusGenerator}
+	 * @throws Exception e
+	 */
+	public static void main(String[] args) throws Exception { // NOPMD
+		final ScalingBenchmark scalingBenchmark = new ScalingBenchmark(
+				CorpusGenerator.loadProperties(args));
+		scalingBenchmark.run();
+		if (scalingBenchmark.failureCount > 0) {
+			log(scalingBenchmark.failureCount + " run(s) failed");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Une exécution mesurée de {@link DeadCodeDetector#run()} pour {@link ScalingBenchmark},
+ * dans une JVM lancée avec le heap à tester.
+ * <br/>Le résultat (durée, temps de gc, pic de RSS, classes analysées et suspects) est écrit
+ * dans un fichier properties. Le pic de RSS inclut les workers en mode shard : il est
+ * échantillonné dans /proc (linux), en plus du VmHWM de cette JVM, et vaut -1 sans /proc.
+ * Le temps de gc est celui de cette JVM seulement.
+ * @author evernat
+ */
+public final class ScalingRun {
+	static final String MILLIS_KEY = "millis";
+	static final String GC_MILLIS_KEY = "gcMillis";
+	static final String PEAK_RSS_KEY = "peakRss";
+	static final String ANALYZED_CLASS_COUNT_KEY = "analyzedClassCount";
+	static final String SUSPECT_COUNT_KEY = "suspectCount";
+	private static final long RSS_SAMPLING_PERIOD_MILLIS = 50;
+	private static final File PROC = new File("/proc");
+
+	private ScalingRun() {
+		super();
+	}
+
+	/**
+	 * Sortie recevant les totaux de l'analyse à la fin, y compris ceux des workers en mode shard.
+	 */
+	private static class TotalsReportSink implements ReportSink {
+		private int suspectCount = -1;
+		private int analyzedClassCount = -1;
+
+		TotalsReportSink() {
+			super();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void report(Finding finding) {
+			// seuls les totaux sont utiles
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void log(String message) {
+			// rien
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void flush() {
+			// rien
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void close(long durationMillis, int suspects, int analyzedClasses) {
+			this.suspectCount = suspects;
+			this.analyzedClassCount = analyzedClasses;
+		}
+	}
+
+	/**
+	 * Echantillonnage du RSS de cette JVM et de ses processus fils (workers en mode shard).
+	 */
+	private static class RssSampler extends Thread {
+		private final String pid;
+		private volatile long peakRss;
+
+		RssSampler() {
+			super("dcd-rss-sampler");
+			setDaemon(true);
+			final String name = ManagementFactory.getRuntimeMXBean().getName();
+			this.pid = name.substring(0, name.indexOf('@'));
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void run() {
+			try {
+				while (!isInterrupted()) {
+					sample();
+					Thread.sleep(RSS_SAMPLING_PERIOD_MILLIS);
+				}
+			} catch (final InterruptedException e) {
+				// fin de l'échantillonnage
+				return;
+			} catch (final IOException e) {
+				// pas de /proc lisible
+				peakRss = -1;
+			}
+		}
+
+		void sample() throws IOException {
+			long rss = readStatus(pid, "VmRSS:");
+			final String[] processes = PROC.list();
+			if (processes != null) {
+				for (final String process : processes) {
+					if (Character.isDigit(process.charAt(0)) && pid.equals(readParentPid(process))) {
+						rss += readChildRss(process);
+					}
+				}
+			}
+			peakRss = Math.max(peakRss, rss);
+		}
+
+		long getPeakRss() throws IOException {
+			if (peakRss < 0) {
+				return -1;
+			}
+			return Math.max(peakRss, readStatus(pid, "VmHWM:"));
+		}
+
+		private static long readChildRss(String process) {
+			try {
+				return Math.max(0, readStatus(process, "VmRSS:"));
+			} catch (final IOException e) {
+				// processus terminé entre temps
+				return 0;
+			}
+		}
+
+		private static String readParentPid(String process) {
+			try {
+				return String.valueOf(readStatus(process, "PPid:"));
+			} catch (final IOException e) {
+				// processus terminé entre temps
+				return null;
+			}
+		}
+
+		// valeur en octets des lignes en kB, telle quelle sinon
+		private static long readStatus(String process, String key) throws IOException {
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(new File(PROC, process + "/status")),
+					StandardCharsets.US_ASCII));
+			try {
+				String line = reader.readLine();
+				while (line != null) {
+					if (line.startsWith(key)) {
+						final String[] values = line.substring(key.length()).trim().split("\\s+");
+						final long value = Long.parseLong(values[0]);
+						return values.length > 1 && "kB".equals(values[1]) ? value * 1024 : value;
+					}
+					line = reader.readLine();
+				}
+				return -1;
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private static long getGcMillis() {
+		long gcMillis = 0;
+		for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcMillis += Math.max(0, gc.getCollectionTime());
+		}
+		return gcMillis;
+	}
+
+	/**
+	 * Méthode main.
+	 * @param args Fichier des paramètres de DeadCodeDetector et fichier du résultat
+	 * @throws IOException e
+	 * @throws XMLStreamException e
+	 */
+	public static void main(String[] args) throws IOException, XMLStreamException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: ScalingRun parameters result");
+		}
+		final Parameters parameters = new Parameters(
+				CorpusGenerator.loadProperties(new String[] { args[0] }));
+		final DeadCodeDetector deadCodeDetector = new DeadCodeDetector(parameters);
+		final TotalsReportSink totals = new TotalsReportSink();
+		deadCodeDetector.addReportSink(totals);
+		final RssSampler rssSampler = new RssSampler();
+		rssSampler.start();
+		final long gcMillisBefore = getGcMillis();
+		final long start = System.nanoTime();
+		deadCodeDetector.run();
+		final long millis = (System.nanoTime() - start) / 1000000;
+		final long gcMillis = getGcMillis() - gcMillisBefore;
+		rssSampler.interrupt();
+		final Properties result = new Properties();
+		result.setProperty(MILLIS_KEY, String.valueOf(millis));
+		result.setProperty(GC_MILLIS_KEY, String.valueOf(gcMillis));
+		result.setProperty(PEAK_RSS_KEY, String.valueOf(rssSampler.getPeakRss()));
+		result.setProperty(ANALYZED_CLASS_COUNT_KEY, String.valueOf(totals.analyzedClassCount));
+		result.setProperty(SUSPECT_COUNT_KEY, String.valueOf(totals.suspectCount));
+		final OutputStream output = new BufferedOutputStream(new FileOutputStream(args[1]));
+		try {
+			result.store(output, null);
+		} finally {
+			output.close();
+		}
+	}
+}
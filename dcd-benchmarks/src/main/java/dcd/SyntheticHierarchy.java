@@ -0,0 +1,148 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Hiérarchie de classes synthétique pour les benchmarks de {@link Result} : arbres de classes
+ * de profondeur et de nombre de sous-classes paramétrables, avec méthodes, champs
+ * et appels tirés au hasard (graine fixe) selon une densité d'appels.
+ * <br/>Les classes racines héritent de java.util.AbstractList pour que filterJavaMethods
+ * ait des méthodes java à filtrer.
+ * @author evernat
+ */
+final class SyntheticHierarchy {
+	static final String JAVA_SUPER_CLASS = "java/util/AbstractList";
+	private static final int METHODS_PER_CLASS = 8;
+	private static final int FIELDS_PER_CLASS = 4;
+	private static final int CLASSES_PER_PACKAGE = 100;
+	private static final String METHOD_DESC = "()V";
+	private static final String FIELD_DESC = "Ljava/lang/String;";
+	private final List<String> rootClassNames = new ArrayList<>();
+	private final List<String> classNames = new ArrayList<>();
+	private final List<String> superClassNames = new ArrayList<>();
+	private final List<String[]> methodCalls = new ArrayList<>();
+	private final List<String[]> fieldCalls = new ArrayList<>();
+
+	/**
+	 * Constructeur.
+	 * @param rootCount Nombre d'arbres de classes
+	 * @param depth Profondeur de chaque arbre (1 pour les racines seules)
+	 * @param fanOut Nombre de sous-classes de chaque classe
+	 * @param callDensity Proportion des méthodes et des champs appelés (entre 0 et 1)
+	 */
+	SyntheticHierarchy(int rootCount, int depth, int fanOut, double callDensity) {
+		super();
+		for (int i = 0; i < rootCount; i++) {
+			final String rootClassName = addClass(JAVA_SUPER_CLASS);
+			rootClassNames.add(rootClassName);
+			addSubClasses(rootClassName, depth - 1, fanOut);
+		}
+		final Random random = new Random(classNames.size());
+		final int memberCallCount = (int) (classNames.size() * callDensity);
+		for (int i = 0; i < memberCallCount * METHODS_PER_CLASS; i++) {
+			// appel sur une classe quelconque, résolu dans ses super-classes et ses sous-classes
+			methodCalls.add(new String[] { classNames.get(random.nextInt(classNames.size())),
+					"m" + random.nextInt(METHODS_PER_CLASS), METHOD_DESC });
+		}
+		for (int i = 0; i < memberCallCount * FIELDS_PER_CLASS; i++) {
+			fieldCalls.add(new String[] { classNames.get(random.nextInt(classNames.size())),
+					"f" + random.nextInt(FIELDS_PER_CLASS), FIELD_DESC });
+		}
+	}
+
+	private String addClass(String superClassName) {
+		final int index = classNames.size();
+		final String className = "bench/p" + index / CLASSES_PER_PACKAGE + "/C" + index;
+		classNames.add(className);
+		superClassNames.add(superClassName);
+		return className;
+	}
+
+	private void addSubClasses(String className, int depth, int fanOut) {
+		if (depth <= 0) {
+			return;
+		}
+		for (int i = 0; i < fanOut; i++) {
+			addSubClasses(addClass(className), depth - 1, fanOut);
+		}
+	}
+
+	/**
+	 * Crée un contexte d'analyse indexé avec cette hiérarchie, comme après l'étape PUBLIC_INDEXATION.
+	 * @param report Report
+	 * @return Result
+	 */
+	Result createResult(Report report) {
+		final Result result = new Result(report);
+		for (int i = 0; i < classNames.size(); i++) {
+			final String className = classNames.get(i);
+			final String superClassName = superClassNames.get(i);
+			result.registerSuperClass(superClassName, className);
+			result.registerSubClass(superClassName, className);
+			final Set<String> methods = new LinkedHashSet<>();
+			for (int j = 0; j < METHODS_PER_CLASS; j++) {
+				methods.add(DcdHelper.getMethodKey("m" + j, METHOD_DESC));
+			}
+			// méthodes de java.util.AbstractList redéfinies, à filtrer par filterJavaMethods
+			methods.add(DcdHelper.getMethodKey("size", "()I"));
+			methods.add(DcdHelper.getMethodKey("get", "(I)Ljava/lang/Object;"));
+			result.registerMethods(className, methods);
+			final Set<String> fields = new LinkedHashSet<>();
+			for (int j = 0; j < FIELDS_PER_CLASS; j++) {
+				fields.add(DcdHelper.getMethodKey("f" + j, FIELD_DESC));
+			}
+			result.registerFields(className, fields);
+		}
+		return result;
+	}
+
+	/**
+	 * Résout tous les appels de méthodes et de champs dans un contexte d'analyse.
+	 * @param result Result créé par {@link #createResult(Report)}
+	 */
+	void resolveCalls(Result result) {
+		for (final String[] call : methodCalls) {
+			result.methodCalled(call[0], call[1], call[2]);
+		}
+		for (final String[] call : fieldCalls) {
+			result.fieldCalled(call[0], call[1], call[2]);
+		}
+	}
+
+	List<String> getRootClassNames() {
+		return rootClassNames;
+	}
+
+	List<String> getClassNames() {
+		return classNames;
+	}
+
+	List<String[]> getMethodCalls() {
+		return methodCalls;
+	}
+
+	List<String[]> getFieldCalls() {
+		return fieldCalls;
+	}
+}
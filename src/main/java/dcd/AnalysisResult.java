@@ -0,0 +1,148 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Résultat d'une analyse lancée par {@link DeadCodeDetector#analyze()} : suspects par type,
+ * compteurs et durées, sans relire le rapport xml ni la sortie standard.
+ * <br/>Les listes et maps sont non modifiables.
+ * <br/>Si l'analyse a repris d'un point de reprise (paramètre checkpointFile), les suspects
+ * trouvés avant l'interruption sont comptés dans {@link #getSuspectCount()} et sont dans
+ * les rapports, mais pas dans {@link #getFindings()} : voir {@link #isFindingsComplete()}
+ * et {@link #getRestoredSuspectCount()}.
+ * @author evernat
+ */
+public final class AnalysisResult {
+	private final List<Finding> findings;
+	private final Map<Finding.Kind, List<Finding>> findingsByKind;
+	private final int suspectCount;
+	private final int analyzedClassCount;
+	private final long durationMillis;
+	private final Map<String, Long> stepDurationsMillis;
+	private final boolean interrupted;
+	private final int restoredSuspectCount;
+
+	AnalysisResult(List<Finding> findings, int suspectCount, int analyzedClassCount,
+			long durationMillis, Map<String, Long> stepDurationsMillis, boolean interrupted,
+			int restoredSuspectCount) {
+		super();
+		this.findings = Collections.unmodifiableList(new ArrayList<>(findings));
+		final Map<Finding.Kind, List<Finding>> map = new EnumMap<>(Finding.Kind.class);
+		for (final Finding.Kind kind : Finding.Kind.values()) {
+			map.put(kind, new ArrayList<Finding>());
+		}
+		for (final Finding finding : findings) {
+			map.get(finding.getKind()).add(finding);
+		}
+		for (final Map.Entry<Finding.Kind, List<Finding>> entry : map.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		this.findingsByKind = Collections.unmodifiableMap(map);
+		this.suspectCount = suspectCount;
+		this.analyzedClassCount = analyzedClassCount;
+		this.durationMillis = durationMillis;
+		this.stepDurationsMillis = Collections
+				.unmodifiableMap(new LinkedHashMap<>(stepDurationsMillis));
+		this.interrupted = interrupted;
+		this.restoredSuspectCount = restoredSuspectCount;
+	}
+
+	/**
+	 * @return Tous les résultats, dans l'ordre de l'analyse
+	 */
+	public List<Finding> getFindings() {
+		return findings;
+	}
+
+	/**
+	 * @param kind Type de résultat
+	 * @return Résultats de ce type, dans l'ordre de l'analyse (liste vide si aucun)
+	 */
+	public List<Finding> getFindings(Finding.Kind kind) {
+		return findingsByKind.get(kind);
+	}
+
+	/**
+	 * @return Nombre de méthodes, champs ou variables suspects, y compris ceux restaurés
+	 * d'un point de reprise
+	 */
+	public int getSuspectCount() {
+		return suspectCount;
+	}
+
+	/**
+	 * @return Nombre de classes analysées
+	 */
+	public int getAnalyzedClassCount() {
+		return analyzedClassCount;
+	}
+
+	/**
+	 * @return Durée totale de l'analyse en millisecondes
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return Durées en millisecondes par étape de l'analyse (INIT_ANALYSIS, LOCAL_ANALYSIS,
+	 * PRIVATE_INDEXATION_AND_ANALYSIS, PUBLIC_INDEXATION, PUBLIC_ANALYSIS), dans l'ordre d'exécution
+	 */
+	public Map<String, Long> getStepDurationsMillis() {
+		return stepDurationsMillis;
+	}
+
+	/**
+	 * @return true si l'analyse a été interrompue, les résultats étant alors partiels
+	 */
+	public boolean isInterrupted() {
+		return interrupted;
+	}
+
+	/**
+	 * @return true si getFindings contient tous les suspects comptés dans getSuspectCount,
+	 * false si l'analyse a repris d'un point de reprise après avoir déjà trouvé des suspects
+	 */
+	public boolean isFindingsComplete() {
+		return restoredSuspectCount == 0;
+	}
+
+	/**
+	 * @return Nombre de suspects trouvés avant la reprise, comptés dans getSuspectCount
+	 * mais absents de getFindings (0 sans reprise)
+	 */
+	public int getRestoredSuspectCount() {
+		return restoredSuspectCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[suspectCount=" + suspectCount
+				+ ", analyzedClassCount=" + analyzedClassCount + ", durationMillis="
+				+ durationMillis + ", interrupted=" + interrupted + ", restoredSuspectCount="
+				+ restoredSuspectCount + ']';
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Session d'analyses consécutives, par exemple dans l'IHM après une modification des filtres ou
+ * des types de code mort : les fichiers jar et war décompressés et les faits des classes lues sont
+ * conservés d'une analyse à l'autre, voir {@link DeadCodeDetector#setSession(AnalysisSession)}.
+ * <br/>Les faits d'une classe (hiérarchie, membres candidats, appels, résultats des analyses
+ * init et local) ne dépendent pas des filtres ni des types de code mort : une nouvelle analyse
+ * applique ses paramètres à ces faits sans relire les classes, sauf pour les faits qui n'ont pas
+ * encore été calculés. Un fichier modifié depuis (date ou taille) est relu.
+ * <br/>Les faits sont gardés dans la limite d'une taille mémoire estimée, les classes les moins
+ * récemment utilisées étant retirées en premier.
+ * @author evernat
+ */
+public class AnalysisSession {
+	private static final long DEFAULT_MAX_CACHED_BYTES = 256L * 1024 * 1024;
+	private final long maxCachedBytes;
+	// faits des classes lues, dans l'ordre d'utilisation (LRU)
+	private final Map<File, CachedFile<ClassFacts>> cachedClasses = new LinkedHashMap<>(1024,
+			0.75f, true);
+	// taille mémoire estimée des faits gardés
+	private long cachedBytes;
+	private final Map<File, CachedFile<File>> uncompressedDirectories = new HashMap<>();
+	private long hitCount;
+	private long missCount;
+
+	/**
+	 * Fichier lu, avec sa date et sa taille pour vérifier qu'il n'a pas été modifié depuis.
+	 * @param <T> Type de ce qui a été lu
+	 */
+	private static class CachedFile<T> {
+		final T value;
+		private final long lastModified;
+		private final long length;
+		// taille estimée de value comptée dans cachedBytes
+		long size;
+
+		CachedFile(File file, T value) {
+			super();
+			this.value = value;
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+		}
+
+		boolean isUpToDate(File file) {
+			return file.lastModified() == lastModified && file.length() == length;
+		}
+	}
+
+	/**
+	 * Constructeur, avec une limite de 256 Mo pour les faits des classes lues.
+	 */
+	public AnalysisSession() {
+		this(DEFAULT_MAX_CACHED_BYTES);
+	}
+
+	/**
+	 * Constructeur.
+	 * @param maxCachedBytes Taille mémoire maximum estimée des faits des classes gardés
+	 */
+	public AnalysisSession(long maxCachedBytes) {
+		super();
+		this.maxCachedBytes = maxCachedBytes;
+	}
+
+	/**
+	 * @param file Fichier class
+	 * @param fact Fait recherché, par exemple {@link ClassFacts#CALLS}
+	 * @return Faits de la classe contenant ce fait, ou null s'il faut lire la classe
+	 * (pas dans la session, modifiée depuis ou fait pas encore calculé)
+	 */
+	synchronized ClassFacts getClassFacts(File file, int fact) {
+		final CachedFile<ClassFacts> cachedClass = cachedClasses.get(file);
+		if (cachedClass != null && cachedClass.isUpToDate(file)
+				&& cachedClass.value.has(fact)) {
+			hitCount++;
+			return cachedClass.value;
+		}
+		missCount++;
+		return null;
+	}
+
+	/**
+	 * @param file Fichier class
+	 * @param classReader Classe qui vient d'être lue
+	 * @return Faits de la classe déjà dans la session, ou nouveaux faits gardés dans la session,
+	 * à compléter puis à signaler par {@link #classFactsUpdated(File)}
+	 */
+	synchronized ClassFacts getOrCreateClassFacts(File file, ClassReader classReader) {
+		final CachedFile<ClassFacts> cachedClass = cachedClasses.get(file);
+		if (cachedClass != null && cachedClass.isUpToDate(file)) {
+			return cachedClass.value;
+		}
+		if (cachedClass != null) {
+			removeCachedClass(file);
+		}
+		final ClassFacts classFacts = new ClassFacts(classReader);
+		cachedClasses.put(file, new CachedFile<>(file, classFacts));
+		return classFacts;
+	}
+
+	/**
+	 * Met à jour la taille mémoire des faits d'une classe qui viennent d'être complétés,
+	 * en retirant si besoin les classes les moins récemment utilisées.
+	 * @param file Fichier class
+	 */
+	synchronized void classFactsUpdated(File file) {
+		final CachedFile<ClassFacts> cachedClass = cachedClasses.get(file);
+		if (cachedClass == null) {
+			return;
+		}
+		final long size = cachedClass.value.getEstimatedSize();
+		cachedBytes += size - cachedClass.size;
+		cachedClass.size = size;
+		final Iterator<CachedFile<ClassFacts>> iterator = cachedClasses.values().iterator();
+		while (cachedBytes > maxCachedBytes && iterator.hasNext()) {
+			// classe la moins récemment utilisée
+			cachedBytes -= iterator.next().size;
+			iterator.remove();
+		}
+	}
+
+	private void removeCachedClass(File file) {
+		final CachedFile<ClassFacts> removed = cachedClasses.remove(file);
+		cachedBytes -= removed.size;
+	}
+
+	/**
+	 * @param file Fichier jar ou war
+	 * @return Répertoire temporaire contenant le fichier décompressé, ou null s'il n'est pas
+	 * dans la session ou s'il a été modifié depuis
+	 */
+	synchronized File getUncompressedDirectory(File file) {
+		final CachedFile<File> uncompressedDirectory = uncompressedDirectories.get(file);
+		if (uncompressedDirectory == null) {
+			return null;
+		} else if (!uncompressedDirectory.isUpToDate(file)
+				|| !uncompressedDirectory.value.isDirectory()) {
+			uncompressedDirectories.remove(file);
+			DcdHelper.rmdir(uncompressedDirectory.value);
+			return null;
+		}
+		return uncompressedDirectory.value;
+	}
+
+	synchronized void putUncompressedDirectory(File file, File tmpDirectory) {
+		uncompressedDirectories.put(file, new CachedFile<>(file, tmpDirectory));
+	}
+
+	synchronized boolean isUncompressedDirectory(File tmpDirectory) {
+		for (final CachedFile<File> uncompressedDirectory : uncompressedDirectories.values()) {
+			if (uncompressedDirectory.value.equals(tmpDirectory)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Nombre de classes dont les faits sont gardés en mémoire
+	 */
+	public synchronized int getCachedClassCount() {
+		return cachedClasses.size();
+	}
+
+	/**
+	 * @return Taille mémoire estimée des faits des classes gardés
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * @return Nombre de faits de classes trouvés dans la session, sans lire les classes
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return Nombre de faits de classes absents de la session, les classes étant alors lues
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Libère les faits des classes lues et supprime les répertoires temporaires
+	 * des fichiers décompressés.
+	 */
+	public synchronized void close() {
+		cachedClasses.clear();
+		cachedBytes = 0;
+		for (final CachedFile<File> uncompressedDirectory : uncompressedDirectories.values()) {
+			DcdHelper.rmdir(uncompressedDirectory.value);
+		}
+		uncompressedDirectories.clear();
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Baseline des suspects déjà connus, qui ne sont pas reportés (paramètre baselineFile).
+ * <br/>Le fichier contient un suspect par ligne, au format des lignes de {@link ReportDiff} :
+ * "type classe[ in method méthode]: membre[ descripteur]". Il peut être écrit à partir d'un
+ * rapport binaire avec la méthode main de cette classe.
+ * <br/>Seul un hash de 64 bits de chaque ligne est gardé en mémoire, dans une table à adressage
+ * ouvert : un suspect est comparé à la baseline sans construire sa ligne.
+ * @author evernat
+ */
+public final class Baseline {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	// 0 indique une case vide de la table
+	private final long[] table;
+	private final int mask;
+	private final int size;
+
+	private Baseline(long[] hashes, int count) {
+		super();
+		// taux de remplissage d'au plus 50% pour des sondages linéaires courts
+		int capacity = 2;
+		while (capacity < 2 * count) {
+			capacity *= 2;
+		}
+		table = new long[capacity];
+		mask = capacity - 1;
+		int added = 0;
+		for (int i = 0; i < count; i++) {
+			if (add(hashes[i])) {
+				added++;
+			}
+		}
+		size = added;
+	}
+
+	/**
+	 * Lit un fichier de baseline.
+	 * @param baselineFile Fichier (lignes vides et lignes commençant par # ignorées)
+	 * @return Baseline
+	 * @throws IOException e
+	 */
+	static Baseline load(File baselineFile) throws IOException {
+		long[] hashes = new long[1024];
+		int count = 0;
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(baselineFile), StandardCharsets.UTF_8), 64 * 1024);
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				if (!line.isEmpty() && line.charAt(0) != '#') {
+					if (count == hashes.length) {
+						hashes = Arrays.copyOf(hashes, count * 2);
+					}
+					hashes[count] = nonZero(hash(FNV_OFFSET_BASIS, line));
+					count++;
+				}
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+		return new Baseline(hashes, count);
+	}
+
+	private boolean add(long hash) {
+		int index = index(hash);
+		while (table[index] != 0) {
+			if (table[index] == hash) {
+				return false;
+			}
+			index = index + 1 & mask;
+		}
+		table[index] = hash;
+		return true;
+	}
+
+	/**
+	 * @param type Type de résultat (publicDeadCode, deadLocalVariable ...)
+	 * @param className Nom de la classe
+	 * @param method Méthode contenant le suspect ou null
+	 * @param member Nom de la méthode, du champ ou de la variable
+	 * @param descriptor Descripteur ou null
+	 * @return true si le suspect est dans la baseline
+	 */
+	boolean contains(String type, String className, String method, String member,
+			String descriptor) {
+		final long hash = nonZero(hash(type, className, method, member, descriptor));
+		int index = index(hash);
+		while (table[index] != 0) {
+			if (table[index] == hash) {
+				return true;
+			}
+			index = index + 1 & mask;
+		}
+		return false;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private int index(long hash) {
+		// mélange des bits de poids fort dans ceux de l'index
+		final long h = (hash ^ hash >>> 32) * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ h >>> 29) & mask;
+	}
+
+	/**
+	 * Ligne d'un suspect dans la baseline et dans le résultat de {@link ReportDiff}.
+	 * @param type Type de résultat
+	 * @param className Nom de la classe
+	 * @param method Méthode contenant le suspect ou null
+	 * @param member Nom de la méthode, du champ ou de la variable
+	 * @param descriptor Descripteur ou null
+	 * @return String
+	 */
+	static String getFingerprint(String type, String className, String method, String member,
+			String descriptor) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(type).append(' ').append(className);
+		if (method != null) {
+			sb.append(" in method ").append(method);
+		}
+		sb.append(": ").append(member);
+		if (descriptor != null) {
+			sb.append(' ').append(descriptor);
+		}
+		return sb.toString();
+	}
+
+	// hash FNV-1a des caractères de getFingerprint, calculé sans construire la chaîne
+	private static long hash(String type, String className, String method, String member,
+			String descriptor) {
+		long hash = hash(FNV_OFFSET_BASIS, type);
+		hash = hash(hash, " ");
+		hash = hash(hash, className);
+		if (method != null) {
+			hash = hash(hash, " in method ");
+			hash = hash(hash, method);
+		}
+		hash = hash(hash, ": ");
+		hash = hash(hash, member);
+		if (descriptor != null) {
+			hash = hash(hash, " ");
+			hash = hash(hash, descriptor);
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String string) {
+		long result = hash;
+		for (int i = 0; i < string.length(); i++) {
+			result ^= string.charAt(i);
+			result *= FNV_PRIME;
+		}
+		return result;
+	}
+
+	private static long nonZero(long hash) {
+		return hash == 0 ? 1 : hash;
+	}
+
+	private static void log(String msg) {
+		DcdHelper.log(msg);
+	}
+
+	/**
+	 * Méthode exécutée pour écrire un fichier de baseline à partir d'un rapport binaire.
+	 * @param args Fichier du rapport binaire et fichier de baseline à écrire
+	 * @throws IOException e
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			log("Arguments required: binary report file (binaryReportFile parameter) and baseline file to write");
+			return;
+		}
+		final BinaryReportReader reader = new BinaryReportReader(new File(args[0]));
+		try {
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(args[1]), StandardCharsets.UTF_8), 64 * 1024);
+			try {
+				while (reader.next()) {
+					writer.write(getFingerprint(reader.getField(BinaryReportReader.TYPE_FIELD),
+							reader.getField(BinaryReportReader.CLASS_FIELD),
+							reader.getField(BinaryReportReader.METHOD_FIELD),
+							reader.getField(BinaryReportReader.MEMBER_FIELD),
+							reader.getField(BinaryReportReader.DESCRIPTOR_FIELD)));
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+			log(reader.getRecordCount() + " suspects written to " + args[1]);
+		} finally {
+			reader.close();
+		}
+	}
+}
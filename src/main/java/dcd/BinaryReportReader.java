@@ -0,0 +1,178 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lecture séquentielle d'un rapport binaire écrit par {@link BinaryReportSink}.
+ * <br/>Format (entiers big-endian) :
+ * <ul>
+ * <li>entête non compressé : magic "DCDB", version, booléen si la suite est compressée en gzip</li>
+ * <li>index : nombre de chaînes, nombre d'enregistrements, nombre de classes,
+ * puis pour chaque classe l'index de son nom et celui de son premier enregistrement</li>
+ * <li>table des chaînes triées (UTF modifié)</li>
+ * <li>enregistrements de taille fixe triés : index des chaînes class, member, descriptor, type,
+ * method, visibility et analyzer (-1 si null), la taille du bytecode (-1 si inconnue),
+ * l'ordre du package (voir {@link Report#setFindingOrder(int)}) puis le numéro de
+ * l'enregistrement dans l'ordre de l'analyse</li>
+ * </ul>
+ * La version 1 n'a pas les deux derniers champs, lus comme 0 et le numéro dans le rapport.
+ * @author evernat
+ */
+class BinaryReportReader {
+	static final int MAGIC = 0x44434442;
+	static final int VERSION = 2;
+	static final int STRING_FIELD_COUNT = 7;
+	static final int RECORD_SIZE = STRING_FIELD_COUNT + 3;
+	static final int CLASS_FIELD = 0;
+	static final int MEMBER_FIELD = 1;
+	static final int DESCRIPTOR_FIELD = 2;
+	static final int TYPE_FIELD = 3;
+	static final int METHOD_FIELD = 4;
+	static final int VISIBILITY_FIELD = 5;
+	private final File file;
+	private final DataInputStream input;
+	private final String[] strings;
+	private final int recordCount;
+	// taille des enregistrements de ce rapport, selon sa version
+	private final int recordSize;
+	private final int[] record = new int[RECORD_SIZE];
+	private int readCount;
+
+	BinaryReportReader(File file) throws IOException {
+		super();
+		this.file = file;
+		final InputStream fileInput = new FileInputStream(file);
+		try {
+			final DataInputStream header = new DataInputStream(fileInput);
+			if (header.readInt() != MAGIC) {
+				throw new IOException("Not a binary report: " + file.getPath());
+			}
+			final int version = header.readInt();
+			if (version != VERSION && version != 1) {
+				throw new IOException("Unsupported binary report version: " + file.getPath());
+			}
+			recordSize = version == 1 ? STRING_FIELD_COUNT + 1 : RECORD_SIZE;
+			final boolean compressed = header.readBoolean();
+			final InputStream body = compressed
+					? new GZIPInputStream(fileInput, 64 * 1024)
+					: fileInput;
+			input = new DataInputStream(new BufferedInputStream(body, 64 * 1024));
+			strings = new String[input.readInt()];
+			recordCount = input.readInt();
+			final int classCount = input.readInt();
+			// l'index des classes n'est pas nécessaire pour une lecture séquentielle
+			for (int i = 0; i < classCount * 2; i++) {
+				input.readInt();
+			}
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = input.readUTF();
+			}
+		} catch (final IOException e) {
+			fileInput.close();
+			throw e;
+		}
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Lit l'enregistrement suivant.
+	 * @return false si fin du rapport
+	 * @throws IOException e
+	 */
+	boolean next() throws IOException {
+		if (readCount == recordCount) {
+			return false;
+		}
+		for (int i = 0; i < recordSize; i++) {
+			record[i] = input.readInt();
+		}
+		if (recordSize < RECORD_SIZE) {
+			record[STRING_FIELD_COUNT + 1] = 0;
+			record[STRING_FIELD_COUNT + 2] = readCount;
+		}
+		readCount++;
+		return true;
+	}
+
+	String getField(int field) {
+		final int index = record[field];
+		return index >= 0 ? strings[index] : null;
+	}
+
+	int getBytecodeSize() {
+		return record[STRING_FIELD_COUNT];
+	}
+
+	/**
+	 * @return Ordre du package de l'enregistrement courant, 0 si non défini
+	 */
+	int getOrder() {
+		return record[STRING_FIELD_COUNT + 1];
+	}
+
+	/**
+	 * @return Numéro de l'enregistrement courant dans l'ordre de l'analyse
+	 */
+	int getSequence() {
+		return record[STRING_FIELD_COUNT + 2];
+	}
+
+	/**
+	 * Compare les enregistrements courants de deux rapports, dans l'ordre du tri des rapports.
+	 * @param reader1 BinaryReportReader
+	 * @param reader2 BinaryReportReader
+	 * @return négatif, 0 ou positif
+	 */
+	static int compareCurrentRecords(BinaryReportReader reader1, BinaryReportReader reader2) {
+		for (int i = 0; i < STRING_FIELD_COUNT; i++) {
+			// les tables de chaînes sont différentes, on compare donc les chaînes (null en premier)
+			final String string1 = reader1.getField(i);
+			final String string2 = reader2.getField(i);
+			if (string1 == null || string2 == null) {
+				if (string1 != string2) {
+					return string1 == null ? -1 : 1;
+				}
+			} else {
+				final int diff = string1.compareTo(string2);
+				if (diff != 0) {
+					return diff;
+				}
+			}
+		}
+		return 0;
+	}
+
+	void close() throws IOException {
+		input.close();
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export des résultats dans un format binaire compact, trié, pour comparer rapidement les rapports
+ * de deux analyses avec {@link ReportDiff}.
+ * <br/>Pendant l'analyse, les enregistrements sont ajoutés dans un fichier temporaire (.spool)
+ * pour supporter les points de reprise. A la fin, ils sont triés par classe puis membre et écrits
+ * avec une table des chaînes, voir {@link BinaryReportReader} pour le format. Chaque
+ * enregistrement garde son numéro dans l'ordre de l'analyse, avec lequel le reducer du mode shard
+ * retrouve l'ordre des résultats des workers.
+ * @author evernat
+ */
+class BinaryReportSink implements ReportSink {
+	private final File binaryReportFile;
+	private final File spoolFile;
+	private final FileOutputStream spoolFileOutput;
+	private final DataOutputStream spool;
+	// ordre du package des résultats suivants, écrit par le thread du rapport
+	private int order;
+
+	BinaryReportSink(File binaryReportFile, long resumePosition) throws IOException {
+		super();
+		if (binaryReportFile.getParentFile() != null && !binaryReportFile.getParentFile().mkdirs()
+				&& !binaryReportFile.getParentFile().exists()) {
+			throw new IOException("Parent directory of binaryReportFile can't be created: "
+					+ binaryReportFile.getPath());
+		}
+		this.binaryReportFile = binaryReportFile;
+		this.spoolFile = new File(binaryReportFile.getPath() + ".spool");
+		if (resumePosition >= 0) {
+			// les enregistrements écrits avant l'interruption sont conservés
+			spoolFileOutput = new FileOutputStream(spoolFile, true);
+			spoolFileOutput.getChannel().truncate(resumePosition);
+		} else {
+			spoolFileOutput = new FileOutputStream(spoolFile);
+		}
+		spool = new DataOutputStream(new BufferedOutputStream(spoolFileOutput, 64 * 1024));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void report(Finding finding) throws IOException {
+		for (final Finding.Member member : finding.getMembers()) {
+			final String[] values = { finding.getClassName(), member.getName(),
+					member.getDescriptor(), finding.getKind().getName(), finding.getMethod(),
+					member.getVisibility(), finding.getKind().getAnalyzer(), };
+			for (final String value : values) {
+				spool.writeBoolean(value != null);
+				if (value != null) {
+					spool.writeUTF(value);
+				}
+			}
+			spool.writeInt(member.getBytecodeSize());
+			spool.writeInt(order);
+		}
+	}
+
+	/**
+	 * @param order Ordre du package des résultats suivants, voir
+	 * {@link Report#setFindingOrder(int)}
+	 */
+	void setOrder(int order) {
+		this.order = order;
+	}
+
+	long getPosition() throws IOException {
+		spool.flush();
+		return spoolFileOutput.getChannel().position();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void log(String message) {
+		// les messages de log ne sont pas dans le rapport
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void flush() {
+		// le rapport binaire n'est écrit qu'à la fin, après le tri
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close(long durationMillis, int suspectCount, int analyzedClassCount)
+			throws IOException {
+		// tri et écriture du rapport binaire à partir des enregistrements de l'analyse
+		spool.close();
+		try {
+			writeReport();
+		} finally {
+			if (!spoolFile.delete()) {
+				spoolFile.deleteOnExit();
+			}
+		}
+	}
+
+	private void writeReport() throws IOException {
+		// lecture du spool : chaînes uniques et enregistrements en index de chaînes
+		final Map<String, Integer> indexes = new HashMap<>();
+		final List<String> strings = new ArrayList<>();
+		final int recordSize = BinaryReportReader.RECORD_SIZE;
+		int[] records = new int[recordSize * 1024];
+		int recordCount = 0;
+		final DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(spoolFile), 64 * 1024));
+		try {
+			while (true) {
+				final boolean notNull;
+				try {
+					notNull = input.readBoolean();
+				} catch (final EOFException e) {
+					break;
+				}
+				if ((recordCount + 1) * recordSize > records.length) {
+					records = Arrays.copyOf(records, records.length * 2);
+				}
+				final int offset = recordCount * recordSize;
+				for (int i = 0; i < BinaryReportReader.STRING_FIELD_COUNT; i++) {
+					records[offset + i] = (i == 0 ? notNull : input.readBoolean())
+							? index(input.readUTF(), indexes, strings)
+							: -1;
+				}
+				// taille du bytecode, ordre du package et numéro dans l'ordre de l'analyse
+				records[offset + BinaryReportReader.STRING_FIELD_COUNT] = input.readInt();
+				records[offset + BinaryReportReader.STRING_FIELD_COUNT + 1] = input.readInt();
+				records[offset + BinaryReportReader.STRING_FIELD_COUNT + 2] = recordCount;
+				recordCount++;
+			}
+		} finally {
+			input.close();
+		}
+
+		// table des chaînes triée : l'ordre des index est alors l'ordre des chaînes
+		final String[] sortedStrings = strings.toArray(new String[strings.size()]);
+		Arrays.sort(sortedStrings);
+		final int[] ranks = new int[sortedStrings.length];
+		for (int i = 0; i < sortedStrings.length; i++) {
+			ranks[indexes.get(sortedStrings[i])] = i;
+		}
+		for (int record = 0; record < recordCount; record++) {
+			for (int i = 0; i < BinaryReportReader.STRING_FIELD_COUNT; i++) {
+				final int offset = record * recordSize + i;
+				if (records[offset] >= 0) {
+					records[offset] = ranks[records[offset]];
+				}
+			}
+		}
+		write(sortedStrings, records, sortRecords(records, recordCount));
+	}
+
+	private static int index(String string, Map<String, Integer> indexes, List<String> strings) {
+		Integer index = indexes.get(string);
+		if (index == null) {
+			index = strings.size();
+			indexes.put(string, index);
+			strings.add(string);
+		}
+		return index;
+	}
+
+	private static Integer[] sortRecords(final int[] records, int recordCount) {
+		final Integer[] order = new Integer[recordCount];
+		for (int i = 0; i < recordCount; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer record1, Integer record2) {
+				// index de chaînes triées : comparer les index revient à comparer les chaînes
+				final int offset1 = record1 * BinaryReportReader.RECORD_SIZE;
+				final int offset2 = record2 * BinaryReportReader.RECORD_SIZE;
+				for (int i = 0; i < BinaryReportReader.STRING_FIELD_COUNT; i++) {
+					final int diff = Integer.compare(records[offset1 + i], records[offset2 + i]);
+					if (diff != 0) {
+						return diff;
+					}
+				}
+				return Integer.compare(record1, record2);
+			}
+		});
+		return order;
+	}
+
+	private void write(String[] strings, int[] records, Integer[] order) throws IOException {
+		final boolean compressed = binaryReportFile.getName().endsWith(".gz");
+		final FileOutputStream fileOutput = new FileOutputStream(binaryReportFile);
+		try {
+			final DataOutputStream header = new DataOutputStream(fileOutput);
+			header.writeInt(BinaryReportReader.MAGIC);
+			header.writeInt(BinaryReportReader.VERSION);
+			header.writeBoolean(compressed);
+			final OutputStream body = compressed
+					? new GZIPOutputStream(fileOutput, 64 * 1024)
+					: fileOutput;
+			final DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(body, 64 * 1024));
+			// index : premier enregistrement de chaque classe
+			final List<int[]> classIndex = new ArrayList<>();
+			int previousClass = -1;
+			for (int i = 0; i < order.length; i++) {
+				final int classIdx = records[order[i] * BinaryReportReader.RECORD_SIZE];
+				if (classIdx != previousClass) {
+					classIndex.add(new int[] { classIdx, i });
+					previousClass = classIdx;
+				}
+			}
+			output.writeInt(strings.length);
+			output.writeInt(order.length);
+			output.writeInt(classIndex.size());
+			for (final int[] entry : classIndex) {
+				output.writeInt(entry[0]);
+				output.writeInt(entry[1]);
+			}
+			for (final String string : strings) {
+				output.writeUTF(string);
+			}
+			for (final Integer record : order) {
+				final int offset = record * BinaryReportReader.RECORD_SIZE;
+				for (int i = 0; i < BinaryReportReader.RECORD_SIZE; i++) {
+					output.writeInt(records[offset + i]);
+				}
+			}
+			output.close();
+		} finally {
+			fileOutput.close();
+		}
+	}
+}
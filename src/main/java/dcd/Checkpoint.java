@@ -0,0 +1,503 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Point de reprise d'une analyse longue, sous forme d'un journal en ajout seul.
+ * <br/>Après chaque package analysé, un enregistrement contient le package, les compteurs,
+ * la position du rapport xml et les modifications du contexte d'analyse (Result)
+ * faites pour ce package en mode public. Une analyse relancée avec le même journal
+ * rejoue ces modifications et ne réanalyse que les packages non terminés.
+ * @author evernat
+ */
+class Checkpoint {
+	private static final String MAGIC = "DCD-CHECKPOINT-3";
+	private static final byte PACKAGE_RECORD = 'P';
+	private static final byte EVENTS_RECORD = 'X';
+	private static final byte STEP_RECORD = 'E';
+	private static final byte SUPER_CLASS_EVENT = 'S';
+	private static final byte SUB_CLASS_EVENT = 'B';
+	private static final byte METHODS_EVENT = 'M';
+	private static final byte FIELDS_EVENT = 'F';
+	private static final byte FILTER_JAVA_METHODS_EVENT = 'J';
+	private static final byte METHOD_CALLED_EVENT = 'C';
+	private static final byte FIELD_CALLED_EVENT = 'D';
+	private static final byte VIEW_METHOD_CALLED_EVENT = 'V';
+	private static final byte MEMBER_INFOS_EVENT = 'I';
+
+	private final File file;
+	private final Set<String> donePackages = new HashSet<>();
+	private final Set<String> doneSteps = new HashSet<>();
+	private int restoredSuspectCount;
+	private int restoredAnalyzedClassCount;
+	// positions des fichiers de rapport (xml, json, binaire) au dernier package terminé
+	private long[] restoredReportPositions;
+	private DataOutputStream output;
+	// modifications du contexte d'analyse pour le package en cours
+	private final ByteArrayOutputStream eventsBuffer = new ByteArrayOutputStream();
+	private final DataOutputStream events = new DataOutputStream(eventsBuffer);
+	// appels déjà journalisés pour le package en cours (ils sont nombreux à être identiques)
+	private final Set<String> journaledCalls = new HashSet<>();
+	private boolean replaying;
+
+	Checkpoint(File file) {
+		super();
+		this.file = file;
+	}
+
+	/**
+	 * Ouvre le journal : s'il existe pour les mêmes paramètres, l'état est restauré pour une reprise,
+	 * sinon un nouveau journal est commencé.
+	 * @param parametersFingerprint Paramètres de l'analyse
+	 * @return true si reprise
+	 * @throws IOException e
+	 */
+	boolean open(String parametersFingerprint) throws IOException {
+		boolean resumed = false;
+		long validLength = 0;
+		if (file.exists()) {
+			final CountingInputStream countingInput = new CountingInputStream(
+					new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+			final DataInputStream input = new DataInputStream(countingInput);
+			try {
+				if (MAGIC.equals(input.readUTF())
+						&& parametersFingerprint.equals(input.readUTF())) {
+					resumed = true;
+					validLength = readRecords(input, countingInput);
+				}
+			} catch (final EOFException e) {
+				// journal vide ou entête tronqué
+				resumed = false;
+			} finally {
+				input.close();
+			}
+		}
+		if (resumed) {
+			// un enregistrement incomplet (arrêt brutal pendant l'écriture) est supprimé
+			final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				randomAccessFile.setLength(validLength);
+			} finally {
+				randomAccessFile.close();
+			}
+			output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024));
+		} else {
+			if (file.getParentFile() != null && !file.getParentFile().mkdirs()
+					&& !file.getParentFile().exists()) {
+				throw new IOException(
+						"Parent directory of checkpointFile can't be created: " + file);
+			}
+			output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+			output.writeUTF(MAGIC);
+			output.writeUTF(parametersFingerprint);
+			output.flush();
+		}
+		return resumed;
+	}
+
+	private long readRecords(DataInputStream input, CountingInputStream countingInput)
+			throws IOException {
+		long validLength = countingInput.getCount();
+		try {
+			while (true) {
+				final byte type = input.readByte();
+				final String step = input.readUTF();
+				if (type == STEP_RECORD) {
+					doneSteps.add(step);
+				} else {
+					String packageKey = null;
+					int suspects = 0;
+					int classes = 0;
+					long[] reportPositions = null;
+					if (type == PACKAGE_RECORD) {
+						packageKey = input.readUTF();
+						suspects = input.readInt();
+						classes = input.readInt();
+						reportPositions = readPositions(input);
+					}
+					skipFully(input, input.readInt());
+					if (packageKey != null) {
+						donePackages.add(step + '|' + packageKey);
+						restoredSuspectCount += suspects;
+						restoredAnalyzedClassCount += classes;
+						restoredReportPositions = reportPositions;
+					}
+				}
+				validLength = countingInput.getCount();
+			}
+		} catch (final EOFException e) {
+			// fin du journal, éventuellement avec un dernier enregistrement incomplet
+			return validLength;
+		}
+	}
+
+	private static void skipFully(DataInputStream input, int length) throws IOException {
+		int remaining = length;
+		while (remaining > 0) {
+			final int skipped = input.skipBytes(remaining);
+			if (skipped <= 0) {
+				throw new EOFException();
+			}
+			remaining -= skipped;
+		}
+	}
+
+	void close() throws IOException {
+		if (output != null) {
+			output.close();
+			output = null;
+		}
+	}
+
+	void delete() throws IOException {
+		close();
+		if (!file.delete()) {
+			throw new IOException(file + " can't be deleted");
+		}
+	}
+
+	boolean isStepDone(String step) {
+		return doneSteps.contains(step);
+	}
+
+	boolean isPackageDone(String step, String packageKey) {
+		return donePackages.contains(step + '|' + packageKey);
+	}
+
+	int getRestoredSuspectCount() {
+		return restoredSuspectCount;
+	}
+
+	int getRestoredAnalyzedClassCount() {
+		return restoredAnalyzedClassCount;
+	}
+
+	// null si aucun package terminé
+	long[] getRestoredReportPositions() {
+		return restoredReportPositions;
+	}
+
+	private static long[] readPositions(DataInputStream input) throws IOException {
+		final long[] positions = new long[input.readUnsignedByte()];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = input.readLong();
+		}
+		return positions;
+	}
+
+	int getDonePackageCount() {
+		return donePackages.size();
+	}
+
+	void packageDone(String step, String packageKey, int suspects, int classes,
+			long[] reportPositions) throws IOException {
+		output.writeByte(PACKAGE_RECORD);
+		output.writeUTF(step);
+		output.writeUTF(packageKey);
+		output.writeInt(suspects);
+		output.writeInt(classes);
+		output.writeByte(reportPositions.length);
+		for (final long reportPosition : reportPositions) {
+			output.writeLong(reportPosition);
+		}
+		writeEvents();
+		// flush sans fsync : le journal doit survivre à l'arrêt du processus, pas à celui du système
+		output.flush();
+	}
+
+	void eventsDone(String step) throws IOException {
+		if (eventsBuffer.size() > 0) {
+			output.writeByte(EVENTS_RECORD);
+			output.writeUTF(step);
+			writeEvents();
+			output.flush();
+		}
+	}
+
+	void stepDone(String step) throws IOException {
+		eventsDone(step);
+		output.writeByte(STEP_RECORD);
+		output.writeUTF(step);
+		output.flush();
+		doneSteps.add(step);
+	}
+
+	private void writeEvents() throws IOException {
+		events.flush();
+		output.writeInt(eventsBuffer.size());
+		eventsBuffer.writeTo(output);
+		eventsBuffer.reset();
+		journaledCalls.clear();
+	}
+
+	/**
+	 * Rejoue sur le contexte d'analyse les modifications journalisées pour une étape.
+	 * @param step Etape
+	 * @param result Result
+	 * @throws IOException e
+	 */
+	void replay(String step, Result result) throws IOException {
+		final DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+		replaying = true;
+		try {
+			input.readUTF();
+			input.readUTF();
+			while (true) {
+				final byte type;
+				try {
+					type = input.readByte();
+				} catch (final EOFException e) {
+					break;
+				}
+				final String recordStep = input.readUTF();
+				if (type == STEP_RECORD) {
+					continue;
+				}
+				if (type == PACKAGE_RECORD) {
+					input.readUTF();
+					input.readInt();
+					input.readInt();
+					readPositions(input);
+				}
+				final byte[] bytes = new byte[input.readInt()];
+				input.readFully(bytes);
+				if (step.equals(recordStep)) {
+					replayEvents(bytes, result);
+				}
+			}
+		} finally {
+			replaying = false;
+			input.close();
+		}
+	}
+
+	private static void replayEvents(byte[] bytes, Result result) throws IOException {
+		final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		while (input.available() > 0) {
+			final byte event = input.readByte();
+			switch (event) {
+			case SUPER_CLASS_EVENT:
+				result.registerSuperClass(input.readUTF(), input.readUTF());
+				break;
+			case SUB_CLASS_EVENT:
+				result.registerSubClass(input.readUTF(), input.readUTF());
+				break;
+			case METHODS_EVENT:
+				result.registerMethods(input.readUTF(), readSet(input));
+				break;
+			case FIELDS_EVENT:
+				result.registerFields(input.readUTF(), readSet(input));
+				break;
+			case FILTER_JAVA_METHODS_EVENT:
+				result.filterJavaMethods();
+				break;
+			case METHOD_CALLED_EVENT:
+				result.methodCalled(input.readUTF(), input.readUTF(), input.readUTF());
+				break;
+			case FIELD_CALLED_EVENT:
+				result.fieldCalled(input.readUTF(), input.readUTF(), input.readUTF());
+				break;
+			case VIEW_METHOD_CALLED_EVENT:
+				result.methodCalled(input.readUTF());
+				break;
+			case MEMBER_INFOS_EVENT:
+				result.registerMemberInfos(input.readUTF(), readMemberInfos(input));
+				break;
+			default:
+				throw new IOException("Invalid checkpoint event: " + event);
+			}
+		}
+	}
+
+	private static Map<String, Long> readMemberInfos(DataInputStream input) throws IOException {
+		final int size = input.readInt();
+		final Map<String, Long> memberInfos = new HashMap<>(size);
+		for (int i = 0; i < size; i++) {
+			memberInfos.put(input.readUTF(), input.readLong());
+		}
+		return memberInfos;
+	}
+
+	private static Set<String> readSet(DataInputStream input) throws IOException {
+		final int size = input.readInt();
+		final Set<String> set = new LinkedHashSet<>(size);
+		for (int i = 0; i < size; i++) {
+			set.add(input.readUTF());
+		}
+		return set;
+	}
+
+	void onMemberInfos(String asmClassName, Map<String, Long> memberInfos) {
+		if (!replaying) {
+			try {
+				events.writeByte(MEMBER_INFOS_EVENT);
+				events.writeUTF(asmClassName);
+				events.writeInt(memberInfos.size());
+				for (final Map.Entry<String, Long> entry : memberInfos.entrySet()) {
+					events.writeUTF(entry.getKey());
+					events.writeLong(entry.getValue());
+				}
+			} catch (final IOException e) {
+				// ne peut pas arriver avec un ByteArrayOutputStream
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	void onSuperClass(String asmSuperClassName, String asmClassName) {
+		if (!replaying) {
+			writeEvent(SUPER_CLASS_EVENT, asmSuperClassName, asmClassName);
+		}
+	}
+
+	void onSubClass(String asmSuperClassName, String asmClassName) {
+		if (!replaying) {
+			writeEvent(SUB_CLASS_EVENT, asmSuperClassName, asmClassName);
+		}
+	}
+
+	void onMethods(String asmClassName, Set<String> methods) {
+		if (!replaying) {
+			writeSetEvent(METHODS_EVENT, asmClassName, methods);
+		}
+	}
+
+	void onFields(String asmClassName, Set<String> fields) {
+		if (!replaying) {
+			writeSetEvent(FIELDS_EVENT, asmClassName, fields);
+		}
+	}
+
+	void onFilterJavaMethods() {
+		if (!replaying) {
+			writeEvent(FILTER_JAVA_METHODS_EVENT);
+		}
+	}
+
+	void onMethodCalled(String className, String name, String desc) {
+		if (!replaying
+				&& journaledCalls.add(PartialIndex.getCallKey(className, name, desc) + 'M')) {
+			writeEvent(METHOD_CALLED_EVENT, className, name, desc);
+		}
+	}
+
+	void onFieldCalled(String className, String name, String desc) {
+		if (!replaying
+				&& journaledCalls.add(PartialIndex.getCallKey(className, name, desc) + 'F')) {
+			writeEvent(FIELD_CALLED_EVENT, className, name, desc);
+		}
+	}
+
+	void onViewMethodCalled(String methodKey) {
+		if (!replaying) {
+			writeEvent(VIEW_METHOD_CALLED_EVENT, methodKey);
+		}
+	}
+
+	private void writeEvent(byte event, String... values) {
+		try {
+			events.writeByte(event);
+			for (final String value : values) {
+				events.writeUTF(value);
+			}
+		} catch (final IOException e) {
+			// ne peut pas arriver avec un ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeSetEvent(byte event, String asmClassName, Set<String> set) {
+		try {
+			events.writeByte(event);
+			events.writeUTF(asmClassName);
+			events.writeInt(set.size());
+			for (final String value : set) {
+				events.writeUTF(value);
+			}
+		} catch (final IOException e) {
+			// ne peut pas arriver avec un ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Flux comptant les octets lus, pour connaître la fin du dernier enregistrement complet.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b >= 0) {
+				count++;
+			}
+			return b;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			final int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public long skip(long n) throws IOException {
+			final long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
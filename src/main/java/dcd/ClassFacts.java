@@ -0,0 +1,227 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Faits d'une classe gardés par une {@link AnalysisSession} : hiérarchie, membres candidats,
+ * appels, initialisations inutiles et résultats locaux.
+ * <br/>Ces faits ne dépendent que du fichier class, et non des filtres ou des types de code mort :
+ * les filtres sont appliqués par le moteur à chaque analyse. Chaque fait est calculé à la première
+ * analyse qui en a besoin, puis réutilisé sans relire la classe.
+ * <br/>Les faits ne sont modifiés que par l'analyse en cours, une seule à la fois par session.
+ * @author evernat
+ */
+final class ClassFacts {
+	/** Membres candidats en mode private, avec leurs informations. */
+	static final int PRIVATE_MEMBERS = 1;
+	/** Membres candidats en mode public, avec leurs informations. */
+	static final int PUBLIC_MEMBERS = 1 << 1;
+	/** Appels de méthodes et lectures de champs. */
+	static final int CALLS = 1 << 2;
+	/** Champs initialisés inutilement dans les constructeurs. */
+	static final int USELESS_INIT_FIELDS = 1 << 3;
+	/** Résultats des analyses locales, avant filtre des noms de variables. */
+	static final int LOCAL_FINDINGS = 1 << 4;
+	// tailles approximatives en mémoire (jvm 64 bits, références compressées)
+	private static final int OBJECT_SIZE = 16;
+	private static final int ARRAY_SIZE = 16;
+	private static final int REFERENCE_SIZE = 4;
+	private static final int STRING_SIZE = 40;
+	private final String className;
+	private final String superName;
+	private final String[] interfaces;
+	private final int length;
+	private int facts;
+	private String[] privateMethods;
+	private String[] privateFields;
+	private String[] publicMethods;
+	private String[] publicFields;
+	// accès et taille du bytecode des membres candidats des deux modes, voir MemberInfos
+	private Map<String, Long> memberInfos;
+	private String[] methodCalls;
+	private String[] fieldCalls;
+	private String[] uselessInitFields;
+	private List<Finding> localFindings;
+	private long estimatedSize;
+
+	ClassFacts(ClassReader classReader) {
+		super();
+		this.className = classReader.getClassName();
+		this.superName = classReader.getSuperName();
+		this.interfaces = classReader.getInterfaces();
+		this.length = classReader.b.length;
+		this.estimatedSize = OBJECT_SIZE + 16 * REFERENCE_SIZE + estimateSize(className)
+				+ estimateSize(superName) + estimateSize(interfaces);
+	}
+
+	boolean has(int fact) {
+		return (facts & fact) != 0;
+	}
+
+	String getClassName() {
+		return className;
+	}
+
+	String getSuperName() {
+		return superName;
+	}
+
+	String[] getInterfaces() {
+		return interfaces;
+	}
+
+	/**
+	 * @return Taille du fichier class
+	 */
+	int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return Taille mémoire approximative de ces faits
+	 */
+	long getEstimatedSize() {
+		return estimatedSize;
+	}
+
+	String[] getMethods(boolean publicIndexation) {
+		return publicIndexation ? publicMethods : privateMethods;
+	}
+
+	String[] getFields(boolean publicIndexation) {
+		return publicIndexation ? publicFields : privateFields;
+	}
+
+	void setMembers(boolean publicIndexation, Set<String> methods, Set<String> fields,
+			Map<String, Long> infos) {
+		final String[] methodArray = methods.toArray(new String[methods.size()]);
+		final String[] fieldArray = fields.toArray(new String[fields.size()]);
+		if (publicIndexation) {
+			publicMethods = methodArray;
+			publicFields = fieldArray;
+			facts |= PUBLIC_MEMBERS;
+		} else {
+			privateMethods = methodArray;
+			privateFields = fieldArray;
+			facts |= PRIVATE_MEMBERS;
+		}
+		estimatedSize += estimateSize(methodArray) + estimateSize(fieldArray);
+		if (memberInfos == null) {
+			memberInfos = new HashMap<>(infos.size());
+			estimatedSize += OBJECT_SIZE + ARRAY_SIZE + REFERENCE_SIZE * infos.size();
+		}
+		for (final Map.Entry<String, Long> entry : infos.entrySet()) {
+			if (memberInfos.put(entry.getKey(), entry.getValue()) == null) {
+				// entrée de HashMap et Long, la clé étant déjà comptée dans les membres
+				estimatedSize += 2 * OBJECT_SIZE + 4 * REFERENCE_SIZE + 8;
+			}
+		}
+	}
+
+	/**
+	 * @param methods Méthodes restant après les filtres
+	 * @param fields Champs restant après les filtres
+	 * @return Informations de ces méthodes et champs, comme MemberInfos.read
+	 */
+	Map<String, Long> getMemberInfos(Set<String> methods, Set<String> fields) {
+		final Map<String, Long> infos = new HashMap<>(methods.size() + fields.size());
+		for (final String method : methods) {
+			putMemberInfo(infos, method);
+		}
+		for (final String field : fields) {
+			putMemberInfo(infos, field);
+		}
+		return infos;
+	}
+
+	private void putMemberInfo(Map<String, Long> infos, String key) {
+		final Long info = memberInfos != null ? memberInfos.get(key) : null;
+		if (info != null) {
+			infos.put(key, info);
+		}
+	}
+
+	/**
+	 * @return Appels de méthodes, au format PartialIndex.getCallKey
+	 */
+	String[] getMethodCalls() {
+		return methodCalls;
+	}
+
+	/**
+	 * @return Lectures de champs, au format PartialIndex.getCallKey
+	 */
+	String[] getFieldCalls() {
+		return fieldCalls;
+	}
+
+	void setCalls(Set<String> methodCallKeys, Set<String> fieldCallKeys) {
+		methodCalls = methodCallKeys.toArray(new String[methodCallKeys.size()]);
+		fieldCalls = fieldCallKeys.toArray(new String[fieldCallKeys.size()]);
+		facts |= CALLS;
+		estimatedSize += estimateSize(methodCalls) + estimateSize(fieldCalls);
+	}
+
+	String[] getUselessInitFields() {
+		return uselessInitFields;
+	}
+
+	void setUselessInitFields(Set<String> fields) {
+		uselessInitFields = fields.toArray(new String[fields.size()]);
+		facts |= USELESS_INIT_FIELDS;
+		estimatedSize += estimateSize(uselessInitFields);
+	}
+
+	List<Finding> getLocalFindings() {
+		return localFindings;
+	}
+
+	void setLocalFindings(List<Finding> findings) {
+		localFindings = findings;
+		facts |= LOCAL_FINDINGS;
+		estimatedSize += ARRAY_SIZE + OBJECT_SIZE + REFERENCE_SIZE * findings.size();
+		for (final Finding finding : findings) {
+			// le nom de classe est partagé avec les autres résultats
+			estimatedSize += OBJECT_SIZE + 4 * REFERENCE_SIZE + estimateSize(finding.getMethod())
+					+ ARRAY_SIZE + REFERENCE_SIZE * finding.getMembers().size();
+			for (final Finding.Member member : finding.getMembers()) {
+				estimatedSize += OBJECT_SIZE + 4 * REFERENCE_SIZE + estimateSize(member.getName())
+						+ estimateSize(member.getDescriptor());
+			}
+		}
+	}
+
+	private static long estimateSize(String[] strings) {
+		long size = ARRAY_SIZE + REFERENCE_SIZE * strings.length;
+		for (final String string : strings) {
+			size += estimateSize(string);
+		}
+		return size;
+	}
+
+	private static long estimateSize(String string) {
+		return string != null ? STRING_SIZE + 2L * string.length() : 0;
+	}
+}
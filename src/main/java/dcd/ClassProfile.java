@@ -0,0 +1,93 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profil des coûts de l'analyse par classe : durée de lecture des fichiers class
+ * et durée de chaque analyse, pour trouver les classes (générées souvent) qui dominent
+ * la durée de l'analyse et les exclure ou les corriger.
+ * <br/>Les durées d'une classe sont cumulées sur toutes les étapes, puis les classes
+ * les plus coûteuses de chaque catégorie sont écrites dans le rapport à la fin de l'analyse.
+ * @author evernat
+ */
+class ClassProfile {
+	static final String PARSE = "parse";
+	private final int topCount;
+	// durées en nanosecondes par classe, par catégorie dans l'ordre d'apparition
+	private final Map<String, Map<String, long[]>> nanosByClassByCategory = new LinkedHashMap<>();
+
+	ClassProfile(int topCount) {
+		super();
+		this.topCount = topCount;
+	}
+
+	void add(String category, String className, long nanos) {
+		Map<String, long[]> nanosByClass = nanosByClassByCategory.get(category);
+		if (nanosByClass == null) {
+			nanosByClass = new HashMap<>();
+			nanosByClassByCategory.put(category, nanosByClass);
+		}
+		final long[] total = nanosByClass.get(className);
+		if (total == null) {
+			nanosByClass.put(className, new long[] { nanos });
+		} else {
+			total[0] += nanos;
+		}
+	}
+
+	void log(Report report) {
+		for (final Map.Entry<String, Map<String, long[]>> entry : nanosByClassByCategory
+				.entrySet()) {
+			final String category = entry.getKey();
+			report.log("Profile: top " + topCount + " classes by " + category + " time");
+			for (final Map.Entry<String, long[]> classEntry : getTop(entry.getValue())) {
+				final long micros = classEntry.getValue()[0] / 1000;
+				report.log("\t" + micros / 1000 + '.' + micros % 1000 / 100 + " ms\t"
+						+ classEntry.getKey());
+			}
+		}
+		report.log("");
+	}
+
+	private List<Map.Entry<String, long[]>> getTop(Map<String, long[]> nanosByClass) {
+		final List<Map.Entry<String, long[]>> entries = new ArrayList<>(nanosByClass.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+			/** {@inheritDoc} */
+			@Override
+			public int compare(Map.Entry<String, long[]> entry1,
+					Map.Entry<String, long[]> entry2) {
+				final long nanos1 = entry1.getValue()[0];
+				final long nanos2 = entry2.getValue()[0];
+				// durées décroissantes, puis noms de classes pour un ordre stable
+				if (nanos1 != nanos2) {
+					return nanos1 > nanos2 ? -1 : 1;
+				}
+				return entry1.getKey().compareTo(entry2.getKey());
+			}
+		});
+		return entries.subList(0, Math.min(topCount, entries.size()));
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.PrintStream;
+
+/**
+ * Affichage des messages de log et, s'il n'y a pas de rapport xml, des résultats d'analyses
+ * sur la sortie standard.
+ * <br/>Les lignes sont accumulées dans un buffer de grande taille et écrites en une fois quand
+ * aucun résultat n'est en attente, plutôt qu'un println synchronisé et vidé par ligne.
+ * @author evernat
+ */
+class ConsoleReportSink implements ReportSink {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private final PrintStream out;
+	private final boolean findingsDisplayed;
+	private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+
+	/**
+	 * Constructeur.
+	 * @param out Sortie, par exemple System.out (redirigée dans l'IHM)
+	 * @param findingsDisplayed true si les résultats sont affichés (pas de rapport xml)
+	 */
+	ConsoleReportSink(PrintStream out, boolean findingsDisplayed) {
+		super();
+		this.out = out;
+		this.findingsDisplayed = findingsDisplayed;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void report(Finding finding) {
+		if (findingsDisplayed) {
+			writeLine(FindingFormatter.getMessage(finding));
+			final String details = FindingFormatter.getDetails(finding);
+			if (details != null) {
+				writeLine(details);
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void log(String message) {
+		writeLine(message);
+	}
+
+	private void writeLine(String line) {
+		buffer.append(line).append(LINE_SEPARATOR);
+		if (buffer.length() >= BUFFER_SIZE) {
+			flush();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void flush() {
+		if (buffer.length() > 0) {
+			// l'encodage est celui de la sortie, comme pour println
+			out.print(buffer);
+			out.flush();
+			buffer.setLength(0);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close(long durationMillis, int suspectCount, int analyzedClassCount) {
+		flush();
+	}
+}
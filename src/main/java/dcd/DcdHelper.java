@@ -223,6 +223,43 @@ final class DcdHelper {
 		return files;
 	}
 
+	/**
+	 * Ajoute une chaîne entre guillemets et échappée au format JSON.
+	 * @param sb StringBuilder
+	 * @param value Chaîne (non null)
+	 */
+	static void appendJsonString(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < ' ') {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+				break;
+			}
+		}
+		sb.append('"');
+	}
+
 	static boolean isJarOrWarFile(File file) {
 		return file.getName().endsWith(".jar") || file.getName().endsWith(".war");
 	}
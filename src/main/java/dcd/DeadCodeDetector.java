@@ -19,11 +19,15 @@ package dcd;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.MemoryNotificationInfo;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +35,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
+import javax.management.JMException;
 import javax.xml.stream.XMLStreamException;
 
 import org.objectweb.asm.ClassReader;
@@ -49,6 +54,8 @@ public class DeadCodeDetector {
 	 * Nom et copyright de DCD.
 	 */
 	public static final String APPLICATION_NAME = DcdHelper.APPLICATION_NAME;
+	private static final long DEFAULT_PROGRESS_PERIOD_MILLIS = 250;
+	private static final String LOCAL_VARIABLES_ANALYZER = "LocalVariablesAnalyzer";
 	private final Parameters parameters;
 	private final Map<File, File> tmpDirectoriesByJarOrWar = new HashMap<>();
 	private final Report report;
@@ -56,10 +63,27 @@ public class DeadCodeDetector {
 	private int suspectCount;
 	private int analyzedClassCount;
 	private ProgressListener progressListener;
-	private long totalSize;
-	private long progressSize;
-	private int lastPercentOfProgress;
+	private ProgressEventListener progressEventListener;
+	private long progressPeriodMillis;
+	private ProgressMonitor progressMonitor;
+	private EngineMetrics engineMetrics;
+	private ClassProfile classProfile;
+	private TraceWriter traceWriter;
+	// classes lues et leur taille, pour les évènements JFR des étapes et des packages
+	private long parsedClassCount;
+	private long parsedBytes;
+	// numéro du dernier package parcouru, toutes étapes confondues
+	private int packageOrder;
 	private Step currentStep;
+	private HeapPressureMonitor heapPressureMonitor;
+	private int spilledEntryCount;
+	private final Checkpoint checkpoint;
+	private File currentFile;
+	// classes internes de la classe en cours d'analyse locale, lues une seule fois par classe
+	// et indexées par méthode englobante (attribut EnclosingMethod)
+	private Map<String, List<ClassNode>> innerClassesByOuterMethod;
+	private final Map<String, Long> stepDurationsMillis = new LinkedHashMap<>();
+	private AnalysisSession session;
 
 	/**
 	 * Enumération des différentes étapes possibles.
@@ -126,7 +150,40 @@ public class DeadCodeDetector {
 	public DeadCodeDetector(Parameters parameters) throws IOException, XMLStreamException {
 		super();
 		this.parameters = parameters;
-		report = new Report(parameters.getXmlReportFile());
+		final File xmlReportFile;
+		final File jsonReportFile;
+		final File binaryReportFile;
+		final Baseline baseline;
+		if (parameters.isShardWorker()) {
+			// un worker écrit ses résultats dans un rapport binaire du répertoire des shards,
+			// transmis par le reducer à la console et aux rapports avec la baseline appliquée
+			xmlReportFile = null;
+			jsonReportFile = null;
+			binaryReportFile = PartialIndex.getReportFile(parameters.getShardDirectory(),
+					parameters.getShardIndex());
+			baseline = null;
+		} else {
+			xmlReportFile = parameters.getXmlReportFile();
+			jsonReportFile = parameters.getJsonReportFile();
+			binaryReportFile = parameters.getBinaryReportFile();
+			// les suspects déjà connus sont écartés avant leur transmission aux sorties du rapport
+			baseline = parameters.getBaselineFile() != null
+					? Baseline.load(parameters.getBaselineFile())
+					: null;
+		}
+		final boolean findingsInConsole = !parameters.isShardWorker();
+		if (parameters.getCheckpointFile() != null && !parameters.isShardReducer()) {
+			// le reducer n'a pas de point de reprise : ses workers en ont chacun un
+			checkpoint = new Checkpoint(parameters.getCheckpointFile());
+			final boolean resumed = checkpoint.open(parameters.getCheckpointFingerprint());
+			report = new Report(xmlReportFile, jsonReportFile, binaryReportFile,
+					resumed ? checkpoint.getRestoredReportPositions() : null, baseline,
+					findingsInConsole);
+		} else {
+			checkpoint = null;
+			report = new Report(xmlReportFile, jsonReportFile, binaryReportFile, null, baseline,
+					findingsInConsole);
+		}
 		result = new Result(report);
 	}
 
@@ -144,6 +201,53 @@ public class DeadCodeDetector {
 		this.progressListener = progressListener;
 	}
 
+	/**
+	 * Définit un listener d'avancement détaillé (étape, classes et octets traités, débit,
+	 * durée restante estimée, suspects), appelé à fréquence fixe par un timer pendant run.
+	 * @param listener Instance de l'interface, ou null
+	 * @param periodMillis Période d'appel du listener en millisecondes
+	 */
+	public void setProgressEventListener(ProgressEventListener listener, long periodMillis) {
+		if (periodMillis <= 0) {
+			throw new IllegalArgumentException("periodMillis must be positive");
+		}
+		this.progressEventListener = listener;
+		this.progressPeriodMillis = periodMillis;
+	}
+
+	/**
+	 * Ajoute une sortie au rapport (en plus de la console et des rapports des paramètres),
+	 * avant l'appel de run.
+	 * @param sink Sortie recevant les résultats de l'analyse, par exemple {@link InMemoryReportSink}
+	 */
+	public void addReportSink(ReportSink sink) {
+		report.addSink(sink);
+	}
+
+	/**
+	 * @param session Session gardant les fichiers décompressés et les faits des classes lues
+	 * pour les analyses suivantes, les filtres et les types de code mort de cette analyse
+	 * étant appliqués à ces faits (null par défaut, sans session)
+	 */
+	public void setSession(AnalysisSession session) {
+		this.session = session;
+	}
+
+	/**
+	 * @return Nombre de résultats en attente d'écriture dans le rapport
+	 * (l'écriture est faite dans un thread dédié)
+	 */
+	public int getReportQueueDepth() {
+		return report.getQueueDepth();
+	}
+
+	/**
+	 * @return Nombre maximum de résultats qui ont été en attente d'écriture dans le rapport
+	 */
+	public int getMaxReportQueueDepth() {
+		return report.getMaxQueueDepth();
+	}
+
 	private void launchAnalyze(String dir) throws IOException, XMLStreamException {
 		analyzeDirectory(dir, null);
 		if (isPublicIndexationStep()) {
@@ -151,6 +255,20 @@ public class DeadCodeDetector {
 		}
 	}
 
+	private void analyzeViewFiles(File tmpDirectory) throws IOException {
+		final long start = startTrace();
+		final Set<String> allMethods = result.getAllMethods();
+		final Map<String, Pattern> patternsByMethod = new ConcurrentHashMap<>();
+		for (final String method : allMethods) {
+			// regex to search with word boundaries, for less false negatives in view files
+			final String regex = ".*\\b" + DcdHelper.getMethodName(method) + "\\b.*";
+			final Pattern pattern = Pattern.compile(regex, Pattern.DOTALL);
+			patternsByMethod.put(method, pattern);
+		}
+		analyzeViewFiles(tmpDirectory, patternsByMethod);
+		trace("viewFiles", tmpDirectory.getPath(), start);
+	}
+
 	private void analyzeViewFiles(File dir, Map<String, Pattern> patternsByMethod)
 			throws IOException {
 		for (final File file : DcdHelper.listFiles(dir)) {
@@ -160,16 +278,22 @@ public class DeadCodeDetector {
 			if (file.isDirectory()) {
 				analyzeViewFiles(file, patternsByMethod);
 			} else if (DcdHelper.isViewFile(file.getName())) {
+				final Object viewFileEvent = FlightRecorderEvents
+						.begin(FlightRecorderEvents.Type.VIEW_FILE);
 				final byte[] bytes = Files.readAllBytes(file.toPath());
 				final String string = new String(bytes, StandardCharsets.UTF_8);
+				int calledMethodCount = 0;
 				for (final Map.Entry<String, Pattern> entry : patternsByMethod.entrySet()) {
 					final Pattern pattern = entry.getValue();
 					if (pattern.matcher(string).matches()) {
 						final String method = entry.getKey();
 						result.methodCalled(method);
 						patternsByMethod.remove(method);
+						calledMethodCount++;
 					}
 				}
+				FlightRecorderEvents.commit(viewFileEvent, file.getPath(), bytes.length,
+						calledMethodCount);
 			}
 		}
 	}
@@ -177,15 +301,40 @@ public class DeadCodeDetector {
 	private void analyzeDirectory(String dir, String packageName)
 			throws IOException, XMLStreamException {
 		final Set<String> classNameList = listClassesAndAnalyzeSubDirectories(dir, packageName);
+		// numéro du package dans le parcours, identique dans tous les workers
+		packageOrder++;
+		if (!parameters.isPackageInShard(packageName)) {
+			// en mode worker, ce package est analysé par un autre worker
+			return;
+		}
+		if (parameters.isShardWorker()) {
+			// le reducer transmet les résultats des workers dans l'ordre des packages
+			report.setFindingOrder(packageOrder);
+		}
+		final String checkpointKey = getCheckpointKey(packageName);
+		if (checkpointKey != null && checkpoint.isPackageDone(currentStep.name(), checkpointKey)) {
+			// package analysé avant l'interruption : compteurs et contexte d'analyse sont restaurés
+			// depuis le point de reprise, on compte la progression et on passe au suivant
+			addProgressSize(packageName == null ? new File(dir) : new File(
+					dir + File.separatorChar + packageName.replace('.', File.separatorChar)), 1);
+			return;
+		}
+		if (engineMetrics != null) {
+			engineMetrics.packageStarted(packageName);
+		}
+		final Object packageEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.PACKAGE);
+		final long start = startTrace();
+		final long parsedClassCountBefore = parsedClassCount;
+		final long parsedBytesBefore = parsedBytes;
+		final int suspectCountBefore = suspectCount;
+		final int analyzedClassCountBefore = analyzedClassCount;
 
 		switch (currentStep) {
 		case PRIVATE_INDEXATION_AND_ANALYSIS:
 			if (parameters.isPackageExcluded(packageName)) {
-				final long tmp = this.progressSize;
-				// package exclu, on compte la progression et on passe au suivant
-				addProgressSize(dir, packageName);
-				// on ajoute la progression une 2ème fois comme si indexation puis analyse
-				this.progressSize += this.progressSize - tmp;
+				// package exclu, on compte la progression et on passe au suivant,
+				// 2 fois comme si indexation puis analyse
+				addProgressSize(dir, packageName, 2);
 				break;
 			}
 
@@ -202,7 +351,7 @@ public class DeadCodeDetector {
 		case INIT_ANALYSIS:
 			if (parameters.isPackageExcluded(packageName)) {
 				// package exclu, on compte la progression et on passe au suivant
-				addProgressSize(dir, packageName);
+				addProgressSize(dir, packageName, 1);
 				break;
 			}
 			analyzeClassesForUselessInit(dir, classNameList);
@@ -210,13 +359,14 @@ public class DeadCodeDetector {
 		case LOCAL_ANALYSIS:
 			if (parameters.isPackageExcluded(packageName)) {
 				// package exclu, on compte la progression et on passe au suivant
-				addProgressSize(dir, packageName);
+				addProgressSize(dir, packageName, 1);
 				break;
 			}
 			analyzeClassesForLocalDeadCode(dir, classNameList);
 			break;
 		case PUBLIC_INDEXATION:
 			indexClasses(dir, classNameList);
+			spillIfMemoryBudgetExceeded();
 			break;
 		case PUBLIC_ANALYSIS:
 			analyzeClasses(dir, classNameList);
@@ -225,6 +375,41 @@ public class DeadCodeDetector {
 			break;
 		}
 		countAnalyzedClassesIfNeeded(classNameList.size());
+		FlightRecorderEvents.commit(packageEvent, currentStep.name(), packageName,
+				parsedClassCount - parsedClassCountBefore, parsedBytes - parsedBytesBefore);
+		trace("package", packageName != null ? packageName : "(default package)", start);
+		if (checkpointKey != null && !isInterrupted()) {
+			checkpoint.packageDone(currentStep.name(), checkpointKey,
+					suspectCount - suspectCountBefore,
+					analyzedClassCount - analyzedClassCountBefore, report.getPositions());
+		}
+	}
+
+	private String getCheckpointKey(String packageName) {
+		if (checkpoint == null) {
+			return null;
+		}
+		// fichier d'origine et non répertoire d'analyse, car les jars et wars sont décompressés
+		// dans un nouveau répertoire temporaire à la reprise
+		return currentFile.getPath() + '|' + (packageName != null ? packageName : "");
+	}
+
+	private void spillIfMemoryBudgetExceeded() throws IOException {
+		if (heapPressureMonitor != null && heapPressureMonitor.isBudgetExceeded()) {
+			if (spilledEntryCount == 0) {
+				// le budget est appliqué à chaque pool heap, on indique le pool qui l'a dépassé
+				final MemoryNotificationInfo exceededPoolInfo = heapPressureMonitor
+						.getExceededPoolInfo();
+				report.log("Memory budget of " + heapPressureMonitor.getMemoryBudget() / 1024 / 1024
+						+ " MB exceeded in heap pool " + exceededPoolInfo.getPoolName() + " ("
+						+ exceededPoolInfo.getUsage().getUsed() / 1024 / 1024
+						+ " MB used after gc), spilling indexes to disk ...");
+			}
+			// les index en mémoire sont déchargés dans un fichier mappé en mémoire,
+			// et les prochains packages seront déchargés aussi tant que la heap reste au-delà du budget
+			spilledEntryCount += result.spill();
+			heapPressureMonitor.reset();
+		}
 	}
 
 	private void countAnalyzedClassesIfNeeded(int classCount) {
@@ -249,7 +434,10 @@ public class DeadCodeDetector {
 		} else {
 			directory = dir + File.separatorChar + packageName.replace('.', File.separatorChar);
 		}
-		for (final File file : DcdHelper.listFiles(new File(directory))) {
+		final long start = startTrace();
+		final File[] files = DcdHelper.listFiles(new File(directory));
+		trace("walk", directory, start);
+		for (final File file : files) {
 			if (isInterrupted()) {
 				break;
 			}
@@ -264,32 +452,89 @@ public class DeadCodeDetector {
 		return classNameList;
 	}
 
+	private static File getClassFile(String dir, String className) {
+		return new File(dir + File.separatorChar + className.replace('.', File.separatorChar)
+				+ ".class");
+	}
+
 	private ClassReader createClassReader(String dir, String className) throws IOException {
-		final String fileName = dir + File.separatorChar
-				+ className.replace('.', File.separatorChar) + ".class";
-		final File file = new File(fileName);
-		addProgressSize(file);
-		return Factory.createClassReader(file);
+		final File file = getClassFile(dir, className);
+		final long start = engineMetrics != null || classProfile != null ? System.nanoTime() : 0;
+		final ClassReader classReader = Factory.createClassReader(file);
+		if (progressMonitor != null) {
+			// simples compteurs : les listeners sont appelés par le timer du ProgressMonitor
+			progressMonitor.classProcessed(classReader.b.length);
+		}
+		if (engineMetrics != null) {
+			engineMetrics.classParsed(classReader.b.length, System.nanoTime() - start);
+		}
+		profile(ClassProfile.PARSE, className, start);
+		parsedClassCount++;
+		parsedBytes += classReader.b.length;
+		return classReader;
 	}
 
-	private void addProgressSize(String dir, String packageName) {
+	private ClassNode createClassNode(ClassReader classReader, String className,
+			int parsingOptions) {
+		final long start = engineMetrics != null || classProfile != null ? System.nanoTime() : 0;
+		final ClassNode classNode = new ClassNode();
+		classReader.accept(classNode, parsingOptions);
+		if (engineMetrics != null) {
+			engineMetrics.nodeParsed(System.nanoTime() - start);
+		}
+		profile(ClassProfile.PARSE, className, start);
+		return classNode;
+	}
+
+	/**
+	 * @param dir Répertoire
+	 * @param className Nom de la classe
+	 * @param fact Fait recherché, par exemple {@link ClassFacts#CALLS}
+	 * @return Faits de la classe gardés par la session, ou null s'il faut lire la classe
+	 */
+	private ClassFacts getClassFacts(String dir, String className, int fact) {
+		if (session == null) {
+			return null;
+		}
+		final ClassFacts classFacts = session.getClassFacts(getClassFile(dir, className), fact);
+		if (classFacts != null && progressMonitor != null) {
+			// la classe n'est pas relue mais elle est analysée
+			progressMonitor.classProcessed(classFacts.getLength());
+		}
+		return classFacts;
+	}
+
+	private long startTrace() {
+		return traceWriter != null ? TraceWriter.start() : 0;
+	}
+
+	private void trace(String category, String name, long start) throws IOException {
+		if (traceWriter != null) {
+			traceWriter.span(category, name, start);
+		}
+	}
+
+	private long startProfiling() {
+		return classProfile != null ? System.nanoTime() : 0;
+	}
+
+	private void profile(String category, String className, long start) {
+		if (classProfile != null) {
+			// les classes internes des analyses locales sont nommées comme dans le bytecode
+			classProfile.add(category, className.replace('/', '.'), System.nanoTime() - start);
+		}
+	}
+
+	private void addProgressSize(String dir, String packageName, int times) {
 		final File packageFile = new File(
 				dir + File.separatorChar + packageName.replace('.', File.separatorChar));
-		addProgressSize(packageFile);
+		addProgressSize(packageFile, times);
 	}
 
-	private void addProgressSize(File file) {
-		if (getProgressListener() != null) {
-			if (file.isDirectory()) {
-				// c'est un package ignoré, on ajoute sa taille à la progression sans être récursif
-				progressSize += DcdHelper.getClassTotalSize(file, false);
-			} else {
-				progressSize += file.length();
-			}
-			if (lastPercentOfProgress + 2 < 100 * progressSize / totalSize) {
-				lastPercentOfProgress = (int) (100 * progressSize / totalSize);
-				getProgressListener().onProgress(Math.min(lastPercentOfProgress, 100));
-			}
+	private void addProgressSize(File directory, int times) {
+		if (progressMonitor != null) {
+			// c'est un package ignoré, on ajoute sa taille à la progression sans être récursif
+			progressMonitor.addProcessedBytes(times * DcdHelper.getClassTotalSize(directory, false));
 		}
 	}
 
@@ -298,8 +543,14 @@ public class DeadCodeDetector {
 			if (isInterrupted()) {
 				break;
 			}
+			if (session != null) {
+				indexClassFacts(className, getMemberFacts(dir, className));
+				continue;
+			}
+			final Object classEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.CLASS);
 			final ClassReader classReader = createClassReader(dir, className);
-			registerHierarchyOfClass(classReader);
+			registerHierarchyOfClass(classReader.getClassName(), classReader.getSuperName(),
+					classReader.getInterfaces());
 			if (parameters.isClassExcluded(className)) {
 				continue;
 			}
@@ -309,19 +560,78 @@ public class DeadCodeDetector {
 					isPublicIndexationStep());
 			classReader.accept(classVisitor,
 					ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			FlightRecorderEvents.commit(classEvent, className, "CalledClassVisitor",
+					classReader.b.length);
 
 			if (isPublicIndexationStep() && !methods.isEmpty()) {
-				result.excludeJavaMethods(classReader, methods);
+				result.excludeJavaMethods(classReader.getSuperName(),
+						classReader.getInterfaces(), methods);
 			}
 
 			excludeFilteredMethods(methods);
 			excludeFilteredMethods(fields);
 
+			if (report.isMemberInfosNeeded()) {
+				// visibilité et taille du bytecode pour les rapports structurés
+				result.registerMemberInfos(classReader.getClassName(),
+						MemberInfos.read(classReader, methods, fields));
+			}
 			result.registerMethods(classReader.getClassName(), methods);
 			result.registerFields(classReader.getClassName(), fields);
 		}
 	}
 
+	private ClassFacts getMemberFacts(String dir, String className) throws IOException {
+		final boolean publicIndexation = isPublicIndexationStep();
+		final ClassFacts cachedFacts = getClassFacts(dir, className,
+				publicIndexation ? ClassFacts.PUBLIC_MEMBERS : ClassFacts.PRIVATE_MEMBERS);
+		if (cachedFacts != null) {
+			return cachedFacts;
+		}
+		final Object classEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.CLASS);
+		final ClassReader classReader = createClassReader(dir, className);
+		final File file = getClassFile(dir, className);
+		final ClassFacts classFacts = session.getOrCreateClassFacts(file, classReader);
+		// membres candidats avant les filtres, qui sont appliqués à chaque analyse
+		final Set<String> methods = new LinkedHashSet<>();
+		final Set<String> fields = new LinkedHashSet<>();
+		classReader.accept(Factory.createCalledClassVisitor(methods, fields, publicIndexation),
+				ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		FlightRecorderEvents.commit(classEvent, className, "CalledClassVisitor",
+				classReader.b.length);
+		classFacts.setMembers(publicIndexation, methods, fields,
+				MemberInfos.read(classReader, methods, fields));
+		session.classFactsUpdated(file);
+		return classFacts;
+	}
+
+	private void indexClassFacts(String className, ClassFacts classFacts) {
+		registerHierarchyOfClass(classFacts.getClassName(), classFacts.getSuperName(),
+				classFacts.getInterfaces());
+		if (parameters.isClassExcluded(className)) {
+			return;
+		}
+		final boolean publicIndexation = isPublicIndexationStep();
+		final Set<String> methods = new LinkedHashSet<>(
+				Arrays.asList(classFacts.getMethods(publicIndexation)));
+		final Set<String> fields = new LinkedHashSet<>(
+				Arrays.asList(classFacts.getFields(publicIndexation)));
+		if (publicIndexation && !methods.isEmpty()) {
+			result.excludeJavaMethods(classFacts.getSuperName(), classFacts.getInterfaces(),
+					methods);
+		}
+
+		excludeFilteredMethods(methods);
+		excludeFilteredMethods(fields);
+
+		if (report.isMemberInfosNeeded()) {
+			result.registerMemberInfos(classFacts.getClassName(),
+					classFacts.getMemberInfos(methods, fields));
+		}
+		result.registerMethods(classFacts.getClassName(), methods);
+		result.registerFields(classFacts.getClassName(), fields);
+	}
+
 	private void excludeFilteredMethods(Set<String> methods) {
 		if (!methods.isEmpty() && !parameters.getExcludedMethods().isEmpty()) {
 			for (final Iterator<String> it = methods.iterator(); it.hasNext();) {
@@ -333,15 +643,14 @@ public class DeadCodeDetector {
 		}
 	}
 
-	private void registerHierarchyOfClass(ClassReader classReader) {
-		final String asmClassName = classReader.getClassName();
-		final String asmSuperClassName = classReader.getSuperName();
+	private void registerHierarchyOfClass(String asmClassName, String asmSuperClassName,
+			String[] asmInterfaceNames) {
 		if (isPublicIndexationStep() || !DcdHelper.isJavaClass(asmSuperClassName)) {
 			// les classes java et javax ne sont pas auditées
 			result.registerSuperClass(asmSuperClassName, asmClassName);
 			result.registerSubClass(asmSuperClassName, asmClassName);
 			if (isPublicIndexationStep()) {
-				for (final String asmInterfaceName : classReader.getInterfaces()) {
+				for (final String asmInterfaceName : asmInterfaceNames) {
 					result.registerSubClass(asmInterfaceName, asmClassName);
 				}
 			}
@@ -349,14 +658,36 @@ public class DeadCodeDetector {
 	}
 
 	private void analyzeClasses(String dir, Set<String> classesToVisit) throws IOException {
-		final ClassVisitor classVisitor = Factory
-				.createCallersClassVisitor(result.createCallersMethodVisitor());
+		// avec une session, les appels sont aussi gardés pour les analyses suivantes
+		final Set<String> methodCallKeys = session != null ? new LinkedHashSet<String>() : null;
+		final Set<String> fieldCallKeys = session != null ? new LinkedHashSet<String>() : null;
+		final ClassVisitor classVisitor = Factory.createCallersClassVisitor(
+				result.createCallersMethodVisitor(methodCallKeys, fieldCallKeys));
 		for (final String className : classesToVisit) {
 			if (isInterrupted()) {
 				break;
 			}
+			final ClassFacts cachedFacts = getClassFacts(dir, className, ClassFacts.CALLS);
+			if (cachedFacts != null) {
+				result.methodsCalled(cachedFacts.getMethodCalls());
+				result.fieldsCalled(cachedFacts.getFieldCalls());
+				continue;
+			}
+			final Object classEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.CLASS);
 			final ClassReader classReader = createClassReader(dir, className);
+			final long start = startProfiling();
 			classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			profile("CallersClassVisitor", className, start);
+			FlightRecorderEvents.commit(classEvent, className, "CallersClassVisitor",
+					classReader.b.length);
+			if (session != null) {
+				final File file = getClassFile(dir, className);
+				session.getOrCreateClassFacts(file, classReader).setCalls(methodCallKeys,
+						fieldCallKeys);
+				session.classFactsUpdated(file);
+				methodCallKeys.clear();
+				fieldCallKeys.clear();
+			}
 		}
 	}
 
@@ -368,10 +699,15 @@ public class DeadCodeDetector {
 			if (isInterrupted()) {
 				break;
 			}
-			final ClassReader classReader = createClassReader(dir, className);
-			classReader.accept(uselessInitClassVisitor,
-					ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-			final Set<String> positiveFields = uselessInitClassVisitor.positiveFields;
+			final Set<String> positiveFields;
+			final ClassFacts cachedFacts = getClassFacts(dir, className,
+					ClassFacts.USELESS_INIT_FIELDS);
+			if (cachedFacts != null) {
+				positiveFields = new LinkedHashSet<>(
+						Arrays.asList(cachedFacts.getUselessInitFields()));
+			} else {
+				positiveFields = readUselessInitFields(dir, className, uselessInitClassVisitor);
+			}
 			if (!positiveFields.isEmpty()) {
 				// les classes *ServiceLocator générées par Apache Axis
 				// contiennent une initialisation "ports" inutile,
@@ -380,13 +716,30 @@ public class DeadCodeDetector {
 						&& positiveFields.contains("ports")) {
 					continue;
 				}
-				report.reportUselessInitializations(className, positiveFields);
-				suspectCount += positiveFields.size();
+				suspectCount += report.reportUselessInitializations(className, positiveFields);
 			}
 		}
 	}
 
-	@SuppressWarnings("unchecked")
+	private Set<String> readUselessInitFields(String dir, String className,
+			UselessInitClassVisitor uselessInitClassVisitor) throws IOException {
+		final Object classEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.CLASS);
+		final ClassReader classReader = createClassReader(dir, className);
+		final long start = startProfiling();
+		classReader.accept(uselessInitClassVisitor,
+				ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		profile("UselessInitClassVisitor", className, start);
+		FlightRecorderEvents.commit(classEvent, className, "UselessInitClassVisitor",
+				classReader.b.length);
+		final Set<String> positiveFields = uselessInitClassVisitor.positiveFields;
+		if (session != null) {
+			final File file = getClassFile(dir, className);
+			session.getOrCreateClassFacts(file, classReader).setUselessInitFields(positiveFields);
+			session.classFactsUpdated(file);
+		}
+		return positiveFields;
+	}
+
 	private void analyzeClassesForLocalDeadCode(String dir, Set<String> classesToVisit)
 			throws IOException, XMLStreamException {
 		for (final String className : classesToVisit) {
@@ -397,39 +750,126 @@ public class DeadCodeDetector {
 			// contiennent beaucoup des variables locales non utilisées,
 			// mais il est inutile de le signaler puisque c'est généré par Axis
 			if (!className.endsWith("SoapBindingStub")) {
-				final ClassNode classNode = new ClassNode();
-				final ClassReader classReader = createClassReader(dir, className);
-				classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
-
-				for (final MethodNode methodNode : (List<MethodNode>) classNode.methods) {
-					analyzeMethodForLocalDeadCode(dir, className, classNode, methodNode);
-					analyzeMethodForSelfAssignments(className, methodNode);
-					if (Factory.createStringToStringAnalyzer(methodNode).analyze()) {
-						report.reportStringToString(className, methodNode);
-						suspectCount++;
-					}
+				final ClassFacts cachedFacts = getClassFacts(dir, className,
+						ClassFacts.LOCAL_FINDINGS);
+				final List<Finding> findings;
+				if (cachedFacts != null) {
+					findings = cachedFacts.getLocalFindings();
+				} else {
+					findings = readLocalFindings(dir, className);
+				}
+				for (final Finding finding : findings) {
+					reportLocalFinding(finding);
 				}
 			}
 		}
 	}
 
 	@SuppressWarnings("unchecked")
+	private List<Finding> readLocalFindings(String dir, String className) throws IOException {
+		final Object classEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.CLASS);
+		final long parsedBytesBefore = parsedBytes;
+		final ClassReader classReader = createClassReader(dir, className);
+		final ClassNode classNode = createClassNode(classReader, className,
+				ClassReader.EXPAND_FRAMES);
+		final List<Finding> findings = new ArrayList<>();
+
+		// classes internes lues à la première méthode ayant des variables non utilisées
+		innerClassesByOuterMethod = null;
+		for (final MethodNode methodNode : (List<MethodNode>) classNode.methods) {
+			analyzeMethodForLocalDeadCode(dir, className, classNode, methodNode, findings);
+			analyzeMethodForSelfAssignments(className, methodNode, findings);
+			final long start = startProfiling();
+			final boolean stringToString = Factory.createStringToStringAnalyzer(methodNode)
+					.analyze();
+			profile("StringToStringAnalyzer", className, start);
+			if (stringToString) {
+				findings.add(Report.createStringToString(className, methodNode));
+			}
+		}
+		innerClassesByOuterMethod = null;
+		// taille de la classe et de ses classes internes lues
+		FlightRecorderEvents.commit(classEvent, className, "ClassNode",
+				parsedBytes - parsedBytesBefore);
+		if (session != null) {
+			final File file = getClassFile(dir, className);
+			session.getOrCreateClassFacts(file, classReader).setLocalFindings(findings);
+			session.classFactsUpdated(file);
+		}
+		return findings;
+	}
+
+	private void reportLocalFinding(Finding finding) throws XMLStreamException {
+		if (finding.getKind() != Finding.Kind.DEAD_LOCAL_VARIABLE
+				|| parameters.getExcludedMethods().isEmpty()) {
+			suspectCount += report.reportFinding(finding);
+			return;
+		}
+		// on exclue éventuellement les variables avec les mêmes filtres que les méthodes
+		final List<Finding.Member> members = new ArrayList<>(finding.getMembers().size());
+		for (final Finding.Member member : finding.getMembers()) {
+			if (!parameters.isMethodExcluded(member.getName())) {
+				members.add(member);
+			}
+		}
+		if (members.size() == finding.getMembers().size()) {
+			suspectCount += report.reportFinding(finding);
+		} else if (!members.isEmpty()) {
+			suspectCount += report.reportFinding(new Finding(finding.getKind(),
+					finding.getClassName(), finding.getMethod(),
+					Collections.unmodifiableList(members)));
+		}
+	}
+
 	private void analyzeMethodForLocalDeadCode(String dir, String className, ClassNode classNode,
-			MethodNode methodNode) throws IOException, XMLStreamException {
+			MethodNode methodNode, List<Finding> findings) throws IOException {
+		long start = startProfiling();
 		final LocalVariablesAnalyzer localVariablesAnalyzer = Factory
 				.createLocalVariablesAnalyzer(methodNode);
 		final Set<LocalVariableNode> localVariables = localVariablesAnalyzer.analyzeMethod();
+		profile(LOCAL_VARIABLES_ANALYZER, className, start);
 		if (localVariables.isEmpty()) {
 			return;
 		}
-		// on exclue éventuellement les variables avec les mêmes filtres que les méthodes
-		for (final Iterator<LocalVariableNode> it = localVariables.iterator(); it.hasNext();) {
-			final LocalVariableNode localVariable = it.next();
-			if (parameters.isMethodExcluded(localVariable.name)) {
-				it.remove();
+		if (session == null) {
+			// on exclue éventuellement les variables avec les mêmes filtres que les méthodes,
+			// avant de lire les classes internes (sinon, le filtre est appliqué au résultat
+			// gardé par la session, dans reportLocalFinding)
+			for (final Iterator<LocalVariableNode> it = localVariables.iterator(); it.hasNext();) {
+				final LocalVariableNode localVariable = it.next();
+				if (parameters.isMethodExcluded(localVariable.name)) {
+					it.remove();
+				}
 			}
 		}
 		// s'il reste des variables on regarde s'il y a des classes internes à la méthode
+		if (!localVariables.isEmpty() && !classNode.innerClasses.isEmpty()) {
+			if (innerClassesByOuterMethod == null) {
+				innerClassesByOuterMethod = readInnerClasses(dir, classNode);
+			}
+			final List<ClassNode> innerClasses = innerClassesByOuterMethod
+					.get(DcdHelper.getMethodKey(methodNode.name, methodNode.desc));
+			if (innerClasses != null) {
+				start = startProfiling();
+				for (final ClassNode innerClass : innerClasses) {
+					localVariablesAnalyzer.analyzeInnerClass(innerClass);
+					if (localVariables.isEmpty()) {
+						// si toutes les variables ont été utilisées, inutile de continuer à lire les classes internes
+						break;
+					}
+				}
+				profile(LOCAL_VARIABLES_ANALYZER, className, start);
+			}
+		}
+		if (!localVariables.isEmpty()) {
+			findings.add(Report.createDeadLocalVariables(className, methodNode, localVariables));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, List<ClassNode>> readInnerClasses(String dir, ClassNode classNode)
+			throws IOException {
+		final Map<String, List<ClassNode>> result = new HashMap<>();
 		for (final InnerClassNode innerClassNode : (List<InnerClassNode>) classNode.innerClasses) {
 			if (innerClassNode.outerName != null
 					&& !innerClassNode.outerName.equals(classNode.name)) {
@@ -437,31 +877,74 @@ public class DeadCodeDetector {
 				// (on ignore car la classe interne n'est alors pas forcément dans le même répertoire)
 				continue;
 			}
-			final ClassNode innerClass = new ClassNode();
-			final ClassReader innerClassReader = createClassReader(dir, innerClassNode.name);
-			innerClassReader.accept(innerClass, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-			localVariablesAnalyzer.analyzeInnerClass(innerClass);
-			if (localVariables.isEmpty()) {
-				// si toutes les variables ont été utilisées, inutile de continuer à lire les classes internes
-				break;
+			final ClassNode innerClass = createClassNode(
+					createClassReader(dir, innerClassNode.name), innerClassNode.name,
+					ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			// seules les classes internes créées dans une méthode peuvent utiliser ses variables
+			if (innerClass.outerMethod != null) {
+				final String outerMethod = DcdHelper.getMethodKey(innerClass.outerMethod,
+						innerClass.outerMethodDesc);
+				List<ClassNode> innerClasses = result.get(outerMethod);
+				if (innerClasses == null) {
+					innerClasses = new ArrayList<>(1);
+					result.put(outerMethod, innerClasses);
+				}
+				innerClasses.add(innerClass);
 			}
 		}
-		if (!localVariables.isEmpty()) {
-			report.reportDeadLocalVariables(className, methodNode, localVariables);
-			suspectCount += localVariables.size();
-		}
+		return result;
 	}
 
-	private void analyzeMethodForSelfAssignments(String className, MethodNode methodNode)
-			throws XMLStreamException {
+	private void analyzeMethodForSelfAssignments(String className, MethodNode methodNode,
+			List<Finding> findings) {
+		final long start = startProfiling();
 		final Set<String> selfAssignments = Factory.createSelfAssignmentAnalyzer(methodNode)
 				.analyze();
+		profile("SelfAssignmentAnalyzer", className, start);
 		if (!selfAssignments.isEmpty()) {
-			report.reportSelfAssignments(className, methodNode, selfAssignments);
-			suspectCount += selfAssignments.size();
+			findings.add(Report.createSelfAssignments(className, methodNode, selfAssignments));
 		}
 	}
 
+	/**
+	 * Variante de run pour utiliser l'analyse depuis du code java : les résultats sont écrits
+	 * dans les rapports comme avec run et sont aussi retournés.
+	 * @return Résultats, compteurs et durées de l'analyse
+	 * @throws IOException e
+	 * @throws XMLStreamException e
+	 */
+	public AnalysisResult analyze() throws IOException, XMLStreamException {
+		return analyze(null);
+	}
+
+	/**
+	 * Variante de run pour utiliser l'analyse depuis du code java : les résultats sont écrits
+	 * dans les rapports comme avec run, transmis au fil de l'analyse à findingListener
+	 * et aussi retournés.
+	 * <br/>Après une reprise depuis le paramètre checkpointFile, seuls les résultats trouvés
+	 * depuis la reprise sont transmis et retournés (voir {@link AnalysisResult#isFindingsComplete()}).
+	 * @param findingListener Interface recevant chaque résultat dès qu'il est trouvé, ou null
+	 * @return Résultats, compteurs et durées de l'analyse
+	 * @throws IOException e
+	 * @throws XMLStreamException e
+	 */
+	public AnalysisResult analyze(FindingListener findingListener)
+			throws IOException, XMLStreamException {
+		final InMemoryReportSink inMemoryReportSink = new InMemoryReportSink();
+		addReportSink(inMemoryReportSink);
+		if (findingListener != null) {
+			addReportSink(new FindingListenerReportSink(findingListener));
+		}
+		run();
+		// les suspects restaurés d'un point de reprise sont dans les rapports mais pas en mémoire
+		final int restoredSuspectCount = checkpoint != null
+				&& checkpoint.getDonePackageCount() > 0 ? checkpoint.getRestoredSuspectCount() : 0;
+		return new AnalysisResult(inMemoryReportSink.getFindings(),
+				inMemoryReportSink.getSuspectCount(), inMemoryReportSink.getAnalyzedClassCount(),
+				inMemoryReportSink.getDurationMillis(), stepDurationsMillis, isInterrupted(),
+				restoredSuspectCount);
+	}
+
 	/**
 	 * Méthode exécutée pour lancer l'audit.
 	 * @throws IOException e
@@ -469,87 +952,319 @@ public class DeadCodeDetector {
 	 */
 	public void run() throws IOException, XMLStreamException {
 		final long start = System.currentTimeMillis();
+		boolean completed = false;
+		PartialIndex partialIndex = null;
+		if (checkpoint != null && checkpoint.getDonePackageCount() > 0) {
+			suspectCount = checkpoint.getRestoredSuspectCount();
+			analyzedClassCount = checkpoint.getRestoredAnalyzedClassCount();
+			report.log("Resuming from checkpoint " + parameters.getCheckpointFile().getPath() + ", "
+					+ checkpoint.getDonePackageCount() + " packages already analyzed");
+		}
+		if (parameters.getMemoryBudget() > 0) {
+			heapPressureMonitor = new HeapPressureMonitor(parameters.getMemoryBudget());
+			heapPressureMonitor.start();
+		}
+		if (parameters.getTraceFile() != null) {
+			final String processName;
+			if (parameters.isShardWorker()) {
+				processName = "dcd shard " + parameters.getShardIndex();
+			} else {
+				processName = parameters.isShardReducer() ? "dcd reducer" : "dcd";
+			}
+			traceWriter = new TraceWriter(parameters.getTraceFile(), processName);
+			report.setTraceWriter(traceWriter);
+		}
+		if (parameters.getProfileTopCount() > 0) {
+			classProfile = new ClassProfile(parameters.getProfileTopCount());
+		}
+		if (parameters.isJmxEnabled()) {
+			result.enableMetrics();
+			report.enableMetrics();
+			engineMetrics = new EngineMetrics(result, report, session);
+			registerEngineMetrics();
+		}
+		if (getProgressListener() != null || progressEventListener != null) {
+			progressMonitor = new ProgressMonitor(getProgressListener(), progressEventListener,
+					report);
+			progressMonitor.start(progressEventListener != null ? progressPeriodMillis
+					: DEFAULT_PROGRESS_PERIOD_MILLIS);
+		}
 		try {
-			totalSize = 0;
-			progressSize = 0;
-			lastPercentOfProgress = -1;
-			for (final File file : parameters.getDirectories()) {
-				if (isInterrupted()) {
-					break;
-				}
-				if (DcdHelper.isJarOrWarFile(file)) {
-					// décompression du fichier jar ou war
+			if (parameters.isShardReducer()) {
+				// les workers décompressent et analysent eux-mêmes leurs parts du classpath
+				launchShardReduction();
+			} else {
+				uncompressJarOrWarFiles();
 
-					// TODO Si le JRE utilisé est en v7, on pourrait peut-être éviter de décompresser les jars
-					// en utilisant un In-memory filesystem (shrinkwrap nio2 par exemple),
-					// http://exitcondition.alrubinger.com/2012/08/17/shrinkwrap-nio2/
-					//					final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "myArchive.jar");
-					//					final FileSystem fileSystem = ShrinkWrapFileSystems.newFileSystem(archive);
+				// c'est parti
+				launchStepAnalyses();
 
-					log("Uncompressing " + file.getPath() + " ...");
-					final File tmpDirectory = DcdHelper.unzipIntoTempDirectory(file);
-					totalSize += getProgressListener() != null
-							? DcdHelper.getClassTotalSize(tmpDirectory, true)
-							: 0;
-					tmpDirectoriesByJarOrWar.put(file, tmpDirectory);
-				} else {
-					totalSize += getProgressListener() != null
-							? DcdHelper.getClassTotalSize(file, true)
-							: 0;
+				if (parameters.isShardWorker() && !isInterrupted()) {
+					// l'index partiel de ce worker est écrit pour le reducer après le rapport
+					partialIndex = result.createPartialIndex(analyzedClassCount);
 				}
 			}
-			// les classes étant analysées à chaque étape (2 fois si mode public ou private),
-			// hors filtres que l'on ignore et classes internes analysées plusieurs fois si local également,
-			// on multiplie totalSize par les étapes
-			totalSize *= parameters.getSizeMultiplier();
-
-			// c'est parti
-			launchStepAnalyses();
+			completed = !isInterrupted();
 		} finally {
 			if (isInterrupted()) {
-				log("Interrupted");
+				report.log("Interrupted");
 			}
 			// après l'analyse on supprime les données inutiles
 			// pour économiser la mémoire même s'il y a une exception
-			result.clear();
+			if (partialIndex == null) {
+				result.clear();
+			}
+			if (heapPressureMonitor != null) {
+				heapPressureMonitor.stop();
+				heapPressureMonitor = null;
+				if (spilledEntryCount > 0) {
+					report.log(spilledEntryCount + " index entries spilled to disk");
+				}
+			}
+			if (progressMonitor != null) {
+				progressMonitor.stop();
+				progressMonitor = null;
+			}
+			if (engineMetrics != null) {
+				unregisterEngineMetrics();
+				engineMetrics = null;
+			}
 
-			// on supprime les répertoires temporaires
+			// on supprime les répertoires temporaires, sauf ceux gardés pour la session
 			if (!tmpDirectoriesByJarOrWar.isEmpty()) {
-				log("Deleting temporary directories");
+				if (session == null) {
+					report.log("Deleting temporary directories");
+				}
 				for (final File tmpDirectory : tmpDirectoriesByJarOrWar.values()) {
-					DcdHelper.rmdir(tmpDirectory);
+					if (session == null || !session.isUncompressedDirectory(tmpDirectory)) {
+						DcdHelper.rmdir(tmpDirectory);
+					}
 				}
 				tmpDirectoriesByJarOrWar.clear();
 			}
 
+			if (checkpoint != null) {
+				if (completed) {
+					// analyse terminée, le point de reprise est inutile
+					checkpoint.delete();
+				} else {
+					checkpoint.close();
+				}
+			}
+
+			if (classProfile != null) {
+				classProfile.log(report);
+				classProfile = null;
+			}
+
 			// et on termine le rapport (résumé et fermeture flux xml)
 			final long end = System.currentTimeMillis();
-			report.close(end - start, suspectCount, analyzedClassCount,
-					parameters.getXmlReportFile());
+			try {
+				report.close(end - start, suspectCount, analyzedClassCount,
+						parameters.isShardWorker() ? null : parameters.getXmlReportFile());
+				if (partialIndex != null) {
+					// l'index partiel est écrit après le rapport binaire du worker,
+					// car le reducer lit ce rapport dès que l'index partiel existe
+					partialIndex.write(PartialIndex.getFile(parameters.getShardDirectory(),
+							parameters.getShardIndex()));
+				}
+			} finally {
+				result.clear();
+				if (traceWriter != null) {
+					traceWriter.close();
+					traceWriter = null;
+				}
+			}
 		}
 	}
 
+	private void registerEngineMetrics() {
+		try {
+			engineMetrics.register();
+		} catch (final JMException e) {
+			// l'analyse n'a pas besoin du MBean
+			report.log("MBean not registered: " + e);
+		}
+	}
+
+	private void unregisterEngineMetrics() {
+		try {
+			engineMetrics.unregister();
+		} catch (final JMException e) {
+			report.log("MBean not unregistered: " + e);
+		}
+	}
+
+	private void uncompressJarOrWarFiles() throws IOException {
+		for (final File file : parameters.getDirectories()) {
+			if (isInterrupted()) {
+				break;
+			}
+			if (DcdHelper.isJarOrWarFile(file)) {
+				// décompression du fichier jar ou war
+
+				// TODO Si le JRE utilisé est en v7, on pourrait peut-être éviter de décompresser les jars
+				// en utilisant un In-memory filesystem (shrinkwrap nio2 par exemple),
+				// http://exitcondition.alrubinger.com/2012/08/17/shrinkwrap-nio2/
+				//					final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "myArchive.jar");
+				//					final FileSystem fileSystem = ShrinkWrapFileSystems.newFileSystem(archive);
+
+				File tmpDirectory = session != null ? session.getUncompressedDirectory(file) : null;
+				if (tmpDirectory == null) {
+					report.log("Uncompressing " + file.getPath() + " ...");
+					final long start = startTrace();
+					tmpDirectory = DcdHelper.unzipIntoTempDirectory(file);
+					trace("unzip", file.getPath(), start);
+					if (session != null) {
+						// le répertoire temporaire est supprimé à la fin de la session
+						session.putUncompressedDirectory(file, tmpDirectory);
+					}
+				}
+				if (progressMonitor != null) {
+					progressMonitor.addTotalBytes(DcdHelper.getClassTotalSize(tmpDirectory, true));
+				}
+				tmpDirectoriesByJarOrWar.put(file, tmpDirectory);
+			} else if (progressMonitor != null) {
+				progressMonitor.addTotalBytes(DcdHelper.getClassTotalSize(file, true));
+			}
+		}
+		if (progressMonitor != null) {
+			// les classes étant analysées à chaque étape (2 fois si mode public ou private),
+			// hors filtres que l'on ignore et classes internes analysées plusieurs fois si local
+			// également, on multiplie la taille totale par les étapes
+			progressMonitor.multiplyTotalBytes(parameters.getSizeMultiplier());
+		}
+	}
+
+	private void launchShardReduction() throws IOException, XMLStreamException {
+		final File shardDirectory = parameters.getShardDirectory();
+		if (parameters.isShardLaunchWorkers()) {
+			report.log("Launching " + parameters.getShardCount() + " shard workers ...");
+			ShardLauncher.launchWorkers(parameters);
+		}
+		result.recordCalls();
+		final List<File> binaryReportFiles = new ArrayList<>(parameters.getShardCount());
+		for (int i = 0; i < parameters.getShardCount() && !isInterrupted(); i++) {
+			final File file = PartialIndex.getFile(shardDirectory, i);
+			if (!file.exists()) {
+				throw new IOException("Partial index of shard " + i + " not found: " + file);
+			}
+			report.log("Merging " + file.getPath() + " ...");
+			final PartialIndex partialIndex = PartialIndex.read(file);
+			result.mergePartialIndex(partialIndex);
+			analyzedClassCount += partialIndex.getAnalyzedClassCount();
+			binaryReportFiles.add(PartialIndex.getReportFile(shardDirectory, i));
+			spillIfMemoryBudgetExceeded();
+		}
+		if (!isInterrupted()) {
+			// les résultats init, local et private des workers sont transmis aux sorties
+			// du rapport, dans l'ordre d'une analyse sans shard
+			suspectCount += report.reportShardFindings(binaryReportFiles);
+		}
+		if (isInterrupted() || !parameters.isPublicDeadCode()) {
+			return;
+		}
+		currentStep = Step.PUBLIC_ANALYSIS;
+		// les méthodes java sont filtrées avec la hiérarchie complète
+		// et les appels enregistrés par les workers sont résolus avec cette hiérarchie
+		result.filterJavaMethods();
+		result.resolveRecordedCalls();
+		if (parameters.includesViewFiles()) {
+			for (final File file : parameters.getDirectories()) {
+				if (file.getName().endsWith(".war") && !isInterrupted()) {
+					report.log("Uncompressing " + file.getPath() + " ...");
+					final long start = startTrace();
+					final File tmpDirectory = DcdHelper.unzipIntoTempDirectory(file);
+					trace("unzip", file.getPath(), start);
+					tmpDirectoriesByJarOrWar.put(file, tmpDirectory);
+					analyzeViewFiles(tmpDirectory);
+				}
+			}
+		}
+		report.log("");
+		suspectCount += result.reportDeadCode(true);
+	}
+
 	private void launchStepAnalyses() throws IOException, XMLStreamException {
 		if (parameters.isInitDeadCode()) {
 			currentStep = Step.INIT_ANALYSIS;
-			launchAllAnalyses();
+			launchCheckpointedAnalyses();
 		}
 		if (parameters.isLocalDeadCode()) {
 			currentStep = Step.LOCAL_ANALYSIS;
-			launchAllAnalyses();
+			launchCheckpointedAnalyses();
 		}
 		if (parameters.isPrivateDeadCode()) {
 			currentStep = Step.PRIVATE_INDEXATION_AND_ANALYSIS;
-			launchAllAnalyses();
+			launchCheckpointedAnalyses();
 		}
 		if (parameters.isPublicDeadCode()) {
 			currentStep = Step.PUBLIC_INDEXATION;
-			launchAllAnalyses();
+			launchCheckpointedAnalyses();
 			currentStep = Step.PUBLIC_ANALYSIS;
+			if (parameters.isShardWorker()) {
+				// en mode worker, les appels sont résolus par le reducer
+				result.recordCalls();
+			}
+			launchCheckpointedAnalyses();
+			if (!parameters.isShardWorker()) {
+				// si mode public, rapport à la fin de l'analyse du domaine
+				report.log("");
+				suspectCount += result.reportDeadCode(true);
+			}
+		}
+	}
+
+	private void launchCheckpointedAnalyses() throws IOException, XMLStreamException {
+		final long start = System.currentTimeMillis();
+		if (progressMonitor != null) {
+			progressMonitor.setStep(currentStep.name());
+		}
+		if (engineMetrics != null) {
+			engineMetrics.stepStarted(currentStep.name());
+		}
+		final Object stepEvent = FlightRecorderEvents.begin(FlightRecorderEvents.Type.STEP);
+		final long traceStart = startTrace();
+		final long parsedClassCountBefore = parsedClassCount;
+		final long parsedBytesBefore = parsedBytes;
+		try {
+			launchCheckpointedStepAnalyses();
+		} finally {
+			if (engineMetrics != null) {
+				engineMetrics.stepEnded();
+			}
+			FlightRecorderEvents.commit(stepEvent, currentStep.name(),
+					parsedClassCount - parsedClassCountBefore, parsedBytes - parsedBytesBefore);
+			trace("step", currentStep.name(), traceStart);
+			final Long previous = stepDurationsMillis.get(currentStep.name());
+			stepDurationsMillis.put(currentStep.name(), System.currentTimeMillis() - start
+					+ (previous != null ? previous : 0));
+		}
+	}
+
+	private void launchCheckpointedStepAnalyses() throws IOException, XMLStreamException {
+		if (checkpoint == null) {
 			launchAllAnalyses();
-			// si mode public, rapport à la fin de l'analyse du domaine
-			log("");
-			suspectCount += result.reportDeadCode(true);
+			return;
+		}
+		final String step = currentStep.name();
+		final boolean publicStep = currentStep == Step.PUBLIC_INDEXATION
+				|| currentStep == Step.PUBLIC_ANALYSIS;
+		if (publicStep) {
+			// le contexte d'analyse public des packages déjà analysés est reconstruit depuis le journal,
+			// puis les modifications des packages suivants y sont journalisées
+			checkpoint.replay(step, result);
+			result.setCheckpoint(checkpoint);
+		}
+		try {
+			if (!checkpoint.isStepDone(step)) {
+				launchAllAnalyses();
+				if (!isInterrupted()) {
+					checkpoint.stepDone(step);
+				}
+			}
+		} finally {
+			result.setCheckpoint(null);
 		}
 	}
 
@@ -558,7 +1273,8 @@ public class DeadCodeDetector {
 			if (isInterrupted()) {
 				break;
 			}
-			log(currentStep.getMessage(file));
+			currentFile = file;
+			report.log(currentStep.getMessage(file));
 			if (DcdHelper.isJarOrWarFile(file)) {
 				// analyse du fichier jar ou war
 				final File tmpDirectory = tmpDirectoriesByJarOrWar.get(file);
@@ -569,17 +1285,10 @@ public class DeadCodeDetector {
 						// analyse des classes du répertoire WEB-INF/classes du war
 						launchAnalyze(tmpDirectory.getPath() + webInfClasses);
 					}
-					if (parameters.includesViewFiles() && currentStep == Step.PUBLIC_ANALYSIS) {
-						final Set<String> allMethods = result.getAllMethods();
-						final Map<String, Pattern> patternsByMethod = new ConcurrentHashMap<>();
-						for (final String method : allMethods) {
-							// regex to search with word boundaries, for less false negatives in view files
-							final String regex = ".*\\b" + DcdHelper.getMethodName(method)
-									+ "\\b.*";
-							final Pattern pattern = Pattern.compile(regex, Pattern.DOTALL);
-							patternsByMethod.put(method, pattern);
-						}
-						analyzeViewFiles(tmpDirectory, patternsByMethod);
+					if (parameters.includesViewFiles() && currentStep == Step.PUBLIC_ANALYSIS
+							&& !parameters.isShardWorker()) {
+						// en mode shard, les fichiers de vues sont analysés par le reducer
+						launchViewFilesAnalysis(tmpDirectory);
 					}
 				} else {
 					// analyse des classes du jar
@@ -592,6 +1301,19 @@ public class DeadCodeDetector {
 		}
 	}
 
+	private void launchViewFilesAnalysis(File tmpDirectory) throws IOException, XMLStreamException {
+		final String checkpointKey = checkpoint != null ? currentFile.getPath() + "|views" : null;
+		if (checkpointKey != null && checkpoint.isPackageDone(currentStep.name(), checkpointKey)) {
+			// fichiers de vues analysés avant l'interruption
+			return;
+		}
+		analyzeViewFiles(tmpDirectory);
+		if (checkpointKey != null && !isInterrupted()) {
+			checkpoint.packageDone(currentStep.name(), checkpointKey, 0, 0,
+					report.getPositions());
+		}
+	}
+
 	private boolean isPublicIndexationStep() {
 		return currentStep == Step.PUBLIC_INDEXATION;
 	}
@@ -637,6 +1359,18 @@ public class DeadCodeDetector {
 				log("localDeadCode = [optional] detect also dead local variables (and self assignments and toString on String, false by default)");
 				log("initDeadCode = [optional] detect also useless initializations (false by default)");
 				log("xmlReportFile = [optional] report to a file in xml format and not to standard output (standard output and no xml by default)");
+				log("shardCount = [optional] number of worker processes sharing the analysis, merged by a reducer process (0 by default)");
+				log("shardIndex = [optional] index of the worker for this process, from 0 to shardCount - 1 (reducer process if not set)");
+				log("shardDirectory = [optional] directory, possibly shared between build agents, for the partial indexes and binary reports of workers, merged by the reducer into its reports");
+				log("shardLaunchWorkers = [optional] reducer launches the workers as local processes (true by default)");
+				log("memoryBudget = [optional] size (ex : 2g) used after gc in any heap pool, such as the old generation, above which indexes are spilled to disk (no limit by default)");
+				log("jsonReportFile = [optional] report also to a file in JSON Lines format, one record per suspect (no json by default)");
+				log("binaryReportFile = [optional] report also to a file in a compact binary format, gzipped if the name ends with .gz, to compare with dcd.ReportDiff (no binary by default)");
+				log("checkpointFile = [optional] file to resume an interrupted analysis from its last analyzed package (no resume by default)");
+				log("baselineFile = [optional] file of already known suspects not to report, one per line as written by dcd.Baseline (no baseline by default)");
+				log("profileTopCount = [optional] list in the report the given number of classes taking the most time to parse and to analyze by each analyzer (no profile by default)");
+				log("traceFile = [optional] write a timeline of the analysis (steps, packages, unzip, report writing) by thread, in the Chrome trace-event format (no trace by default)");
+				log("jmxEnabled = [optional] expose the metrics of the running analysis in the MBean dcd:type=DeadCodeDetector (false by default)");
 				return;
 			}
 			parameters = Parameters.createFromPropertiesFile(new File(args[0]));
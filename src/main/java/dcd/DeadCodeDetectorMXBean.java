@@ -0,0 +1,89 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.Map;
+
+/**
+ * Interface du MBean exposant les métriques d'une analyse en cours, enregistré sous le nom
+ * dcd:type=DeadCodeDetector si le paramètre jmxEnabled est true
+ * (pour suivre une analyse longue avec jconsole, VisualVM ou un autre outil jmx).
+ * @author evernat
+ */
+public interface DeadCodeDetectorMXBean {
+	/**
+	 * @return Etape en cours, ou null avant la première étape
+	 */
+	String getCurrentStep();
+
+	/**
+	 * @return Package en cours d'analyse, ou null
+	 */
+	String getCurrentPackage();
+
+	/**
+	 * @return Nombre de classes lues par étape
+	 */
+	Map<String, Long> getClassesParsedByStep();
+
+	/**
+	 * @return Nombre de classes lues, toutes étapes confondues
+	 */
+	long getClassesParsed();
+
+	/**
+	 * @return Taille des fichiers class lus, toutes étapes confondues
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return Durée de lecture des fichiers class (ClassReader et ClassNode) en millisecondes
+	 */
+	long getParseTimeMillis();
+
+	/**
+	 * @return Durée des étapes hors lecture des fichiers class en millisecondes
+	 */
+	long getAnalysisTimeMillis();
+
+	/**
+	 * @return Durée écoulée depuis le début de l'analyse en millisecondes
+	 */
+	long getElapsedTimeMillis();
+
+	/**
+	 * @return Taux de succès du cache des faits des classes de la session depuis son ouverture
+	 * (0 si pas de session)
+	 */
+	double getSessionCacheHitRate();
+
+	/**
+	 * @return Taux de succès du cache des méthodes des classes java
+	 */
+	double getJavaMethodsCacheHitRate();
+
+	/**
+	 * @return Nombre d'entrées de chaque map du contexte d'analyse
+	 */
+	Map<String, Integer> getResultMapSizes();
+
+	/**
+	 * @return Nombre de suspects reportés par type de résultat
+	 */
+	Map<String, Integer> getFindingCountsByType();
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métriques d'une analyse, exposées par le MBean {@link DeadCodeDetectorMXBean}.
+ * <br/>Les compteurs sont écrits par le seul thread d'analyse et lus par les threads jmx.
+ * @author evernat
+ */
+class EngineMetrics implements DeadCodeDetectorMXBean {
+	private static final String OBJECT_NAME = "dcd:type=DeadCodeDetector";
+	private final Result result;
+	private final Report report;
+	private final AnalysisSession session;
+	private final long startNanos = System.nanoTime();
+	// dans l'ordre des étapes, protégée par elle-même
+	private final Map<String, AtomicLong> classCountsByStep = Collections
+			.synchronizedMap(new LinkedHashMap<String, AtomicLong>());
+	private AtomicLong stepClassCount = new AtomicLong();
+	private volatile String step;
+	private volatile String packageName;
+	private volatile long bytesRead;
+	private volatile long parseNanos;
+	private volatile long finishedStepsNanos;
+	private volatile long stepStartNanos;
+	private ObjectName objectName;
+
+	EngineMetrics(Result result, Report report, AnalysisSession session) {
+		super();
+		this.result = result;
+		this.report = report;
+		this.session = session;
+	}
+
+	void register() throws JMException {
+		final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		try {
+			mBeanServer.registerMBean(this, name);
+		} catch (final InstanceAlreadyExistsException e) {
+			// une autre analyse est en cours dans cette jvm
+			name = new ObjectName(OBJECT_NAME + ",id=" + System.identityHashCode(this));
+			mBeanServer.registerMBean(this, name);
+		}
+		objectName = name;
+	}
+
+	void unregister() throws JMException {
+		if (objectName != null) {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			objectName = null;
+		}
+	}
+
+	void stepStarted(String stepName) {
+		AtomicLong count = classCountsByStep.get(stepName);
+		if (count == null) {
+			count = new AtomicLong();
+			classCountsByStep.put(stepName, count);
+		}
+		stepClassCount = count;
+		step = stepName;
+		stepStartNanos = System.nanoTime();
+	}
+
+	void stepEnded() {
+		finishedStepsNanos += System.nanoTime() - stepStartNanos;
+		stepStartNanos = 0;
+	}
+
+	void packageStarted(String name) {
+		packageName = name;
+	}
+
+	void classParsed(long bytes, long nanos) {
+		stepClassCount.incrementAndGet();
+		bytesRead += bytes;
+		parseNanos += nanos;
+	}
+
+	void nodeParsed(long nanos) {
+		parseNanos += nanos;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getCurrentStep() {
+		return step;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getCurrentPackage() {
+		return packageName;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Map<String, Long> getClassesParsedByStep() {
+		final Map<String, Long> counts = new LinkedHashMap<>();
+		synchronized (classCountsByStep) {
+			for (final Map.Entry<String, AtomicLong> entry : classCountsByStep.entrySet()) {
+				counts.put(entry.getKey(), entry.getValue().get());
+			}
+		}
+		return counts;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getClassesParsed() {
+		long count = 0;
+		for (final Long stepCount : getClassesParsedByStep().values()) {
+			count += stepCount;
+		}
+		return count;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getParseTimeMillis() {
+		return parseNanos / 1000000;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getAnalysisTimeMillis() {
+		final long start = stepStartNanos;
+		final long stepsNanos = finishedStepsNanos + (start != 0 ? System.nanoTime() - start : 0);
+		return Math.max(0, stepsNanos - parseNanos) / 1000000;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getElapsedTimeMillis() {
+		return (System.nanoTime() - startNanos) / 1000000;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getSessionCacheHitRate() {
+		if (session == null) {
+			return 0;
+		}
+		return getRate(session.getHitCount(), session.getMissCount());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public double getJavaMethodsCacheHitRate() {
+		return getRate(result.getJavaMethodsHitCount(), result.getJavaMethodsMissCount());
+	}
+
+	private static double getRate(long hitCount, long missCount) {
+		final long count = hitCount + missCount;
+		return count == 0 ? 0 : (double) hitCount / count;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Map<String, Integer> getResultMapSizes() {
+		return result.getMapSizes();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Map<String, Integer> getFindingCountsByType() {
+		final Map<String, Integer> counts = new LinkedHashMap<>();
+		for (final Finding.Kind kind : Finding.Kind.values()) {
+			counts.put(kind.getName(), report.getReportedSuspectCount(kind));
+		}
+		return counts;
+	}
+}
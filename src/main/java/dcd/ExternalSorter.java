@@ -0,0 +1,194 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Tri de chaînes en mémoire bornée : au-delà d'une taille de run, les chaînes sont triées
+ * par runs écrits dans des fichiers temporaires, puis les runs sont fusionnés à la lecture.
+ * <br/>Utilisé pour trier par nom de classe les suspects à la fin de l'analyse,
+ * sans copier les maps des suspects dans des TreeMap.
+ * @author evernat
+ */
+class ExternalSorter {
+	private final int runSize;
+	private String[] run;
+	private int runLength;
+	private final List<File> runFiles = new ArrayList<>();
+	private final List<DataInputStream> inputs = new ArrayList<>();
+	private PriorityQueue<RunReader> queue;
+	private int position;
+
+	/**
+	 * Lecteur d'un run trié, ordonné par sa chaîne courante pour la fusion.
+	 */
+	private static class RunReader implements Comparable<RunReader> {
+		private final DataInputStream input;
+		private String current;
+
+		RunReader(DataInputStream input) {
+			super();
+			this.input = input;
+		}
+
+		boolean next() throws IOException {
+			try {
+				current = input.readUTF();
+				return true;
+			} catch (final EOFException e) {
+				current = null;
+				return false;
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int compareTo(RunReader other) {
+			return current.compareTo(other.current);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean equals(Object obj) {
+			return this == obj;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+	}
+
+	ExternalSorter(int runSize) {
+		super();
+		this.runSize = runSize;
+		this.run = new String[Math.min(runSize, 1024)];
+	}
+
+	void add(String string) throws IOException {
+		if (runLength == runSize) {
+			writeRun();
+		}
+		if (runLength == run.length) {
+			run = Arrays.copyOf(run, Math.min(runSize, run.length * 2));
+		}
+		run[runLength] = string;
+		runLength++;
+	}
+
+	private void writeRun() throws IOException {
+		Arrays.sort(run, 0, runLength);
+		final File file = File.createTempFile("dcd-sort", ".tmp");
+		runFiles.add(file);
+		final DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+		try {
+			for (int i = 0; i < runLength; i++) {
+				output.writeUTF(run[i]);
+				run[i] = null;
+			}
+		} finally {
+			output.close();
+		}
+		runLength = 0;
+	}
+
+	/**
+	 * Termine les ajouts et prépare la lecture dans l'ordre.
+	 * @throws IOException e
+	 */
+	void sort() throws IOException {
+		if (runFiles.isEmpty()) {
+			// tout tient dans un seul run : tri en mémoire, sans fichier
+			Arrays.sort(run, 0, runLength);
+			position = 0;
+			return;
+		}
+		if (runLength > 0) {
+			writeRun();
+		}
+		run = null;
+		queue = new PriorityQueue<>(runFiles.size());
+		for (final File file : runFiles) {
+			final DataInputStream input = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+			inputs.add(input);
+			final RunReader runReader = new RunReader(input);
+			if (runReader.next()) {
+				queue.add(runReader);
+			}
+		}
+	}
+
+	/**
+	 * @return Chaîne suivante dans l'ordre, ou null à la fin
+	 * @throws IOException e
+	 */
+	String next() throws IOException {
+		if (queue == null) {
+			if (position < runLength) {
+				final String result = run[position];
+				run[position] = null;
+				position++;
+				return result;
+			}
+			return null;
+		}
+		final RunReader runReader = queue.poll();
+		if (runReader == null) {
+			return null;
+		}
+		final String result = runReader.current;
+		if (runReader.next()) {
+			queue.add(runReader);
+		}
+		return result;
+	}
+
+	void close() throws IOException {
+		try {
+			for (final DataInputStream input : inputs) {
+				input.close();
+			}
+		} finally {
+			inputs.clear();
+			for (final File file : runFiles) {
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+			runFiles.clear();
+			run = null;
+			queue = null;
+		}
+	}
+}
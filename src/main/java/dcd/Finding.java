@@ -0,0 +1,186 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.List;
+
+/**
+ * Résultat d'analyse transmis aux {@link ReportSink} : type de résultat, classe, méthode
+ * éventuelle et méthodes, champs ou variables suspects.
+ * <br/>Les messages lisibles ne sont construits que par les sorties qui en ont besoin (console, xml).
+ * @author evernat
+ */
+public final class Finding {
+	private final Kind kind;
+	private final String className;
+	private final String method;
+	private final List<Member> members;
+
+	/**
+	 * Type de résultat, avec le nom utilisé dans les rapports et l'analyse l'ayant produit.
+	 */
+	public enum Kind {
+		/** Méthodes ou champs non utilisés hors de leur classe. */
+		PUBLIC_DEAD_CODE("publicDeadCode", "public"),
+		/** Méthodes ou champs privés non utilisés. */
+		PRIVATE_DEAD_CODE("privateDeadCode", "private"),
+		/** Initialisations inutiles de champs dans les constructeurs. */
+		USELESS_INITIALIZATION("uselessInitialization", "init"),
+		/** Variables locales non utilisées. */
+		DEAD_LOCAL_VARIABLE("deadLocalVariable", "local"),
+		/** Affectations d'une variable à elle-même. */
+		SELF_ASSIGNMENT("selfAssignment", "local"),
+		/** Appels de toString() sur un String. */
+		STRING_TO_STRING("stringToString", "local");
+
+		private final String name;
+		private final String analyzer;
+
+		Kind(String name, String analyzer) {
+			this.name = name;
+			this.analyzer = analyzer;
+		}
+
+		/**
+		 * @return Nom du type de résultat dans les rapports (élément xml, champ type en json)
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return public, private, init ou local, selon l'analyse ayant produit le résultat
+		 */
+		public String getAnalyzer() {
+			return analyzer;
+		}
+	}
+
+	/**
+	 * Méthode, champ ou variable locale d'un résultat.
+	 */
+	public static final class Member {
+		private final String name;
+		private final String descriptor;
+		private final String visibility;
+		private final int bytecodeSize;
+
+		Member(String name, String descriptor, String visibility, int bytecodeSize) {
+			super();
+			this.name = name;
+			this.descriptor = descriptor;
+			this.visibility = visibility;
+			this.bytecodeSize = bytecodeSize;
+		}
+
+		/**
+		 * @return Nom de la méthode, du champ ou de la variable
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Descripteur jvm, ou null si inconnu
+		 */
+		public String getDescriptor() {
+			return descriptor;
+		}
+
+		/**
+		 * @return public, protected, package ou private, ou null si inconnue
+		 */
+		public String getVisibility() {
+			return visibility;
+		}
+
+		/**
+		 * @return Taille du bytecode, ou -1 si inconnue ou sans objet (champ, variable locale)
+		 */
+		public int getBytecodeSize() {
+			return bytecodeSize;
+		}
+
+		/**
+		 * @return Description lisible : nom pour un champ ou une variable, signature java
+		 * pour une méthode (ex : "String toString()")
+		 */
+		public String getDescription() {
+			if (isMethod()) {
+				return DcdHelper.getMethodDescription(DcdHelper.getMethodKey(name, descriptor));
+			}
+			return name;
+		}
+
+		/**
+		 * @return true s'il s'agit d'une méthode (descripteur de méthode)
+		 */
+		public boolean isMethod() {
+			return descriptor != null && descriptor.startsWith("(");
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return descriptor != null ? name + ' ' + descriptor : name;
+		}
+	}
+
+	Finding(Kind kind, String className, String method, List<Member> members) {
+		super();
+		this.kind = kind;
+		this.className = className;
+		this.method = method;
+		this.members = members;
+	}
+
+	/**
+	 * @return Type de résultat
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return Nom de la classe (avec package)
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * @return Méthode contenant les variables locales ou les instructions, null sinon
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return Méthodes, champs ou variables suspects (non modifiable)
+	 */
+	public List<Member> getMembers() {
+		return members;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + '[' + kind.getName() + ", " + className + ", "
+				+ members + ']';
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Messages lisibles des résultats, pour les sorties console et xml.
+ * @author evernat
+ */
+final class FindingFormatter {
+	private FindingFormatter() {
+		super();
+	}
+
+	static String getMessage(Finding finding) {
+		final String className = finding.getClassName();
+		switch (finding.getKind()) {
+		case PUBLIC_DEAD_CODE:
+			return "Public suspects in class " + className + ':';
+		case PRIVATE_DEAD_CODE:
+			return "Private suspects in class " + className + ':';
+		case USELESS_INITIALIZATION:
+			return "Useless initializations in class " + className + ':';
+		case DEAD_LOCAL_VARIABLE:
+			return "Local suspects in class " + className + " in method " + finding.getMethod()
+					+ ':';
+		case SELF_ASSIGNMENT:
+			return "Self assignments in class " + className + " in method " + finding.getMethod()
+					+ ':';
+		case STRING_TO_STRING:
+			return "Call of toString() on String in class " + className + " in method "
+					+ finding.getMethod();
+		default:
+			throw new IllegalArgumentException(String.valueOf(finding.getKind()));
+		}
+	}
+
+	/**
+	 * @param finding Finding
+	 * @return Liste des suspects au format "\t[a, b]", ou null s'il n'y a pas de détail
+	 */
+	static String getDetails(Finding finding) {
+		if (finding.getKind() == Finding.Kind.STRING_TO_STRING) {
+			return null;
+		}
+		final StringBuilder details = new StringBuilder();
+		details.append("\t[");
+		if (finding.getKind() == Finding.Kind.PUBLIC_DEAD_CODE
+				|| finding.getKind() == Finding.Kind.PRIVATE_DEAD_CODE) {
+			// les descriptions des méthodes et champs d'une classe sont uniques
+			boolean first = true;
+			for (final Finding.Member member : finding.getMembers()) {
+				if (!first) {
+					details.append(", ");
+				}
+				details.append(member.getDescription());
+				first = false;
+			}
+		} else {
+			// plusieurs variables locales d'une méthode peuvent avoir le même nom
+			final Set<String> names = new LinkedHashSet<>(finding.getMembers().size());
+			for (final Finding.Member member : finding.getMembers()) {
+				names.add(member.getName());
+			}
+			boolean first = true;
+			for (final String name : names) {
+				if (!first) {
+					details.append(", ");
+				}
+				details.append(name);
+				first = false;
+			}
+		}
+		details.append(']');
+		return details.toString();
+	}
+}
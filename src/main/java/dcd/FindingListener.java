@@ -0,0 +1,32 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+/**
+ * Interface de réception des résultats au fil de l'analyse,
+ * voir {@link DeadCodeDetector#analyze(FindingListener)}.
+ * @author evernat
+ */
+public interface FindingListener {
+	/**
+	 * Appelée pour chaque résultat, dans l'ordre de l'analyse, par le thread d'écriture
+	 * du rapport et non par celui de l'analyse : un traitement long retarde les résultats suivants.
+	 * @param finding Finding
+	 */
+	void onFinding(Finding finding);
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+/**
+ * Sortie du rapport transmettant les résultats à un {@link FindingListener}.
+ * @author evernat
+ */
+class FindingListenerReportSink implements ReportSink {
+	private final FindingListener findingListener;
+
+	FindingListenerReportSink(FindingListener findingListener) {
+		super();
+		assert findingListener != null;
+		this.findingListener = findingListener;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void report(Finding finding) {
+		findingListener.onFinding(finding);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void log(String message) {
+		// les messages de log ne sont pas transmis
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void flush() {
+		// rien à écrire
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close(long durationMillis, int suspectCount, int analyzedClassCount) {
+		// rien à fermer
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evènements Java Flight Recorder de l'analyse (étapes, packages, classes lues, fichiers de vue,
+ * écritures du rapport), avec durée, nombres et tailles.
+ * <br/>Le code est compilé et exécuté en java 7 : les types d'évènements sont donc créés
+ * par réflexion avec jdk.jfr.EventFactory (java 11 ou plus), au premier évènement pendant
+ * un enregistrement. Un FlightRecorderListener indique si un enregistrement est en cours :
+ * sans JFR ou sans enregistrement, {@link #begin(Type)} ne fait que lire un booléen et
+ * retourne null, sans réflexion. Si l'évènement n'est pas activé dans l'enregistrement en cours,
+ * {@link #begin(Type)} retourne aussi null et rien n'est fait.
+ * @author evernat
+ */
+final class FlightRecorderEvents {
+	private static final String CATEGORY = "Dead Code Detector";
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+	// true si un enregistrement JFR est en cours, mis à jour par RecordingListener
+	private static volatile boolean recording;
+
+	static {
+		RecordingListener.register();
+	}
+
+	/**
+	 * Types d'évènements, avec leurs champs String puis long dans l'ordre des paramètres de commit.
+	 */
+	enum Type {
+		/** Etape de l'analyse. */
+		STEP("dcd.Step", "Step", new String[] { "step" },
+				new String[] { "classCount", "bytes" }),
+		/** Package analysé pendant une étape. */
+		PACKAGE("dcd.Package", "Package Analyzed", new String[] { "step", "packageName" },
+				new String[] { "classCount", "bytes" }),
+		/** Classe lue puis parcourue par un visiteur. */
+		CLASS("dcd.Class", "Class Parsed", new String[] { "className", "visitor" },
+				new String[] { "bytes" }),
+		/** Fichier de vue (jsp, xhtml...) recherché. */
+		VIEW_FILE("dcd.ViewFile", "View File Scanned", new String[] { "path" },
+				new String[] { "bytes", "calledMethodCount" }),
+		/** Ecriture des résultats en attente dans les sorties du rapport. */
+		REPORT_FLUSH("dcd.ReportFlush", "Report Flush", new String[0],
+				new String[] { "elementCount", "sinkCount" });
+
+		private final String name;
+		private final String label;
+		private final String[] stringFields;
+		private final String[] longFields;
+
+		Type(String name, String label, String[] stringFields, String[] longFields) {
+			this.name = name;
+			this.label = label;
+			this.stringFields = stringFields;
+			this.longFields = longFields;
+		}
+	}
+
+	/**
+	 * Implémentation par réflexion de jdk.jfr.FlightRecorderListener, pour savoir si
+	 * un enregistrement est en cours sans initialiser JFR.
+	 */
+	private static final class RecordingListener implements InvocationHandler {
+		private final Set<Object> runningRecordings = Collections
+				.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		private final Method getRecordings;
+		private final Method getState;
+
+		private RecordingListener() throws Exception { // NOPMD
+			super();
+			getRecordings = Class.forName("jdk.jfr.FlightRecorder").getMethod("getRecordings");
+			getState = Class.forName("jdk.jfr.Recording").getMethod("getState");
+		}
+
+		static void register() {
+			try {
+				final Class<?> flightRecorderClass = Class.forName("jdk.jfr.FlightRecorder");
+				final Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+				final Object listener = Proxy.newProxyInstance(listenerClass.getClassLoader(),
+						new Class<?>[] { listenerClass }, new RecordingListener());
+				// recorderInitialized est appelée tout de suite si JFR est déjà initialisé
+				flightRecorderClass.getMethod("addListener", listenerClass).invoke(null,
+						listener);
+			} catch (final Exception e) { // NOPMD
+				// java 10 ou moins, ou module jdk.jfr absent : pas d'évènements
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+			final String name = method.getName();
+			try {
+				if ("recorderInitialized".equals(name)) {
+					// enregistrements commencés avant l'ajout du listener
+					for (final Object flightRecording : (List<?>) getRecordings.invoke(args[0])) {
+						recordingStateChanged(flightRecording);
+					}
+				} else if ("recordingStateChanged".equals(name)) {
+					recordingStateChanged(args[0]);
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				} else if ("toString".equals(name)) {
+					return getClass().getName();
+				}
+			} catch (final Exception e) { // NOPMD
+				// les évènements ne doivent pas perturber JFR ni l'analyse
+			}
+			return null;
+		}
+
+		private void recordingStateChanged(Object flightRecording) throws Exception { // NOPMD
+			if ("RUNNING".equals(String.valueOf(getState.invoke(flightRecording)))) {
+				runningRecordings.add(flightRecording);
+			} else {
+				runningRecordings.remove(flightRecording);
+			}
+			recording = !runningRecordings.isEmpty();
+		}
+	}
+
+	/**
+	 * Types d'évènements JFR créés par réflexion, chargés au premier évènement pendant
+	 * un enregistrement.
+	 */
+	private static final class EventFactories {
+		// null si JFR n'est pas disponible
+		private static final Object[] FACTORIES;
+		// EventType de chaque factory
+		private static final Object[] EVENT_TYPES;
+		private static final Method NEW_EVENT;
+		private static final Method IS_ENABLED;
+		private static final Method BEGIN;
+		private static final Method SET;
+		private static final Method COMMIT;
+
+		static {
+			Object[] factories = null;
+			Object[] eventTypes = null;
+			Method newEvent = null;
+			Method isEnabled = null;
+			Method begin = null;
+			Method set = null;
+			Method commit = null;
+			try {
+				final Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+				final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+				newEvent = eventFactoryClass.getMethod("newEvent");
+				final Method getEventType = eventFactoryClass.getMethod("getEventType");
+				isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+				begin = eventClass.getMethod("begin");
+				set = eventClass.getMethod("set", int.class, Object.class);
+				commit = eventClass.getMethod("commit");
+				factories = new Object[Type.values().length];
+				eventTypes = new Object[factories.length];
+				for (final Type type : Type.values()) {
+					factories[type.ordinal()] = createFactory(eventFactoryClass, type);
+					eventTypes[type.ordinal()] = getEventType.invoke(factories[type.ordinal()]);
+				}
+			} catch (final Exception e) {
+				// java 10 ou moins, ou module jdk.jfr absent : pas d'évènements
+				factories = null;
+			}
+			FACTORIES = factories;
+			EVENT_TYPES = eventTypes;
+			NEW_EVENT = newEvent;
+			IS_ENABLED = isEnabled;
+			BEGIN = begin;
+			SET = set;
+			COMMIT = commit;
+		}
+
+		private EventFactories() {
+			super();
+		}
+
+		private static Object createFactory(Class<?> eventFactoryClass, Type type)
+				throws Exception { // NOPMD
+			final Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+			final Constructor<?> annotationElementConstructor = annotationElementClass
+					.getConstructor(Class.class, Object.class);
+			final Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			final Constructor<?> valueDescriptorConstructor = valueDescriptorClass
+					.getConstructor(Class.class, String.class);
+			final List<Object> annotations = Arrays.asList(
+					annotationElementConstructor.newInstance(getAnnotationClass("Name"), type.name),
+					annotationElementConstructor.newInstance(getAnnotationClass("Label"),
+							type.label),
+					annotationElementConstructor.newInstance(getAnnotationClass("Category"),
+							new String[] { CATEGORY }),
+					// la pile d'appels n'apporterait que les frames de la réflexion
+					annotationElementConstructor.newInstance(getAnnotationClass("StackTrace"),
+							Boolean.FALSE));
+			final List<Object> fields = new ArrayList<>();
+			for (final String field : type.stringFields) {
+				fields.add(valueDescriptorConstructor.newInstance(String.class, field));
+			}
+			for (final String field : type.longFields) {
+				fields.add(valueDescriptorConstructor.newInstance(long.class, field));
+			}
+			return eventFactoryClass.getMethod("create", List.class, List.class).invoke(null,
+					annotations, fields);
+		}
+
+		private static Class<?> getAnnotationClass(String name) throws ClassNotFoundException {
+			return Class.forName("jdk.jfr." + name).asSubclass(Annotation.class);
+		}
+	}
+
+	private FlightRecorderEvents() {
+		super();
+	}
+
+	/**
+	 * Commence un évènement, pour mesurer sa durée jusqu'à l'appel d'une méthode commit.
+	 * @param type Type d'évènement
+	 * @return Evènement commencé, ou null si JFR n'est pas disponible, s'il n'y a pas
+	 * d'enregistrement en cours ou si ce type d'évènement n'y est pas activé
+	 */
+	static Object begin(Type type) {
+		if (!recording) {
+			return null;
+		}
+		final Object[] factories = EventFactories.FACTORIES;
+		if (factories == null) {
+			return null;
+		}
+		try {
+			if (!(Boolean) EventFactories.IS_ENABLED
+					.invoke(EventFactories.EVENT_TYPES[type.ordinal()], NO_ARGUMENTS)) {
+				return null;
+			}
+			final Object event = EventFactories.NEW_EVENT.invoke(factories[type.ordinal()],
+					NO_ARGUMENTS);
+			EventFactories.BEGIN.invoke(event, NO_ARGUMENTS);
+			return event;
+		} catch (final Exception e) {
+			// les évènements ne doivent pas perturber l'analyse
+			return null;
+		}
+	}
+
+	/**
+	 * Termine et enregistre un évènement STEP ou VIEW_FILE.
+	 * @param event Evènement retourné par {@link #begin(Type)}, ou null
+	 * @param string Valeur du champ String
+	 * @param long1 Valeur du 1er champ long
+	 * @param long2 Valeur du 2ème champ long
+	 */
+	static void commit(Object event, String string, long long1, long long2) {
+		if (event != null) {
+			commitValues(event, string, long1, long2);
+		}
+	}
+
+	/**
+	 * Termine et enregistre un évènement PACKAGE.
+	 * @param event Evènement retourné par {@link #begin(Type)}, ou null
+	 * @param string1 Valeur du 1er champ String
+	 * @param string2 Valeur du 2ème champ String
+	 * @param long1 Valeur du 1er champ long
+	 * @param long2 Valeur du 2ème champ long
+	 */
+	static void commit(Object event, String string1, String string2, long long1, long long2) {
+		if (event != null) {
+			commitValues(event, string1, string2, long1, long2);
+		}
+	}
+
+	/**
+	 * Termine et enregistre un évènement CLASS.
+	 * @param event Evènement retourné par {@link #begin(Type)}, ou null
+	 * @param string1 Valeur du 1er champ String
+	 * @param string2 Valeur du 2ème champ String
+	 * @param long1 Valeur du champ long
+	 */
+	static void commit(Object event, String string1, String string2, long long1) {
+		if (event != null) {
+			commitValues(event, string1, string2, long1);
+		}
+	}
+
+	/**
+	 * Termine et enregistre un évènement REPORT_FLUSH.
+	 * @param event Evènement retourné par {@link #begin(Type)}, ou null
+	 * @param long1 Valeur du 1er champ long
+	 * @param long2 Valeur du 2ème champ long
+	 */
+	static void commit(Object event, long long1, long long2) {
+		if (event != null) {
+			commitValues(event, long1, long2);
+		}
+	}
+
+	// les valeurs ne sont allouées que si l'évènement est enregistré
+	private static void commitValues(Object event, Object... values) {
+		try {
+			for (int i = 0; i < values.length; i++) {
+				EventFactories.SET.invoke(event, i, values[i]);
+			}
+			EventFactories.COMMIT.invoke(event, NO_ARGUMENTS);
+		} catch (final Exception e) { // NOPMD
+			// les évènements ne doivent pas perturber l'analyse
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Surveillance de la mémoire heap par rapport au budget mémoire défini en paramètre.
+ * <br/>Le seuil est défini sur l'usage mémoire après garbage collection des pools heap,
+ * ce qui évite de réagir à des objets temporaires déjà inaccessibles.
+ * Le budget s'applique à chaque pool séparément (la old generation en pratique, qui contient
+ * l'essentiel des index) et non à la somme des pools : un pool pas encore collecté n'a pas
+ * d'usage après garbage collection.
+ * Le moteur teste {@link #isBudgetExceeded()} entre deux packages pour décharger les index sur disque.
+ * @author evernat
+ */
+class HeapPressureMonitor implements NotificationListener {
+	private final long memoryBudget;
+	private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+	// pool ayant dépassé le budget et son usage après gc, null si budget non dépassé
+	private volatile MemoryNotificationInfo exceededPoolInfo;
+
+	HeapPressureMonitor(long memoryBudget) {
+		super();
+		this.memoryBudget = memoryBudget;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+				heapPools.add(pool);
+			}
+		}
+	}
+
+	void start() {
+		for (final MemoryPoolMXBean pool : heapPools) {
+			// le budget est appliqué à chaque pool, l'essentiel des index étant dans la old generation
+			pool.setCollectionUsageThreshold(getThreshold(pool));
+		}
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this,
+				null, null);
+	}
+
+	void stop() {
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+					.removeNotificationListener(this);
+		} catch (final ListenerNotFoundException e) {
+			// pas démarré
+			return;
+		}
+		for (final MemoryPoolMXBean pool : heapPools) {
+			pool.setCollectionUsageThreshold(0);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED
+				.equals(notification.getType())) {
+			exceededPoolInfo = MemoryNotificationInfo
+					.from((CompositeData) notification.getUserData());
+		}
+	}
+
+	boolean isBudgetExceeded() {
+		if (exceededPoolInfo != null) {
+			return true;
+		}
+		// si la notification n'est pas encore arrivée,
+		// on compare tout de même l'usage de chaque pool après la dernière garbage collection
+		for (final MemoryPoolMXBean pool : heapPools) {
+			final MemoryUsage collectionUsage = pool.getCollectionUsage();
+			if (collectionUsage != null && collectionUsage.getUsed() >= getThreshold(pool)) {
+				exceededPoolInfo = new MemoryNotificationInfo(pool.getName(), collectionUsage,
+						pool.getCollectionUsageThresholdCount());
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void reset() {
+		exceededPoolInfo = null;
+	}
+
+	long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @return Nom et usage après gc du pool ayant dépassé le budget, null si budget non dépassé
+	 */
+	MemoryNotificationInfo getExceededPoolInfo() {
+		return exceededPoolInfo;
+	}
+
+	private long getThreshold(MemoryPoolMXBean pool) {
+		final long max = pool.getUsage().getMax();
+		return max > 0 ? Math.min(memoryBudget, max) : memoryBudget;
+	}
+}
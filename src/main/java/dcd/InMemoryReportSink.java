@@ -0,0 +1,104 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sortie conservant les résultats en mémoire, pour utiliser l'analyse depuis du code java
+ * (IHM, intégration dans un autre outil) sans relire un rapport.
+ * @author evernat
+ */
+public class InMemoryReportSink implements ReportSink {
+	// findings, closed et les compteurs sont protégés par this
+	private final List<Finding> findings = new ArrayList<>();
+	private boolean closed;
+	private long durationMillis;
+	private int suspectCount;
+	private int analyzedClassCount;
+
+	/**
+	 * Constructeur.
+	 */
+	public InMemoryReportSink() {
+		super();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void report(Finding finding) {
+		findings.add(finding);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void log(String message) {
+		// les messages de log ne sont pas conservés
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void flush() {
+		// rien à écrire
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized void close(long duration, int suspects, int analyzedClasses) {
+		this.durationMillis = duration;
+		this.suspectCount = suspects;
+		this.analyzedClassCount = analyzedClasses;
+		this.closed = true;
+	}
+
+	/**
+	 * @return Copie des résultats reçus jusqu'à maintenant, dans l'ordre de l'analyse
+	 */
+	public synchronized List<Finding> getFindings() {
+		return new ArrayList<>(findings);
+	}
+
+	/**
+	 * @return true si l'analyse est terminée
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return Durée de l'analyse en millisecondes (0 si elle n'est pas terminée)
+	 */
+	public synchronized long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return Nombre de méthodes, champs ou variables suspects (0 si l'analyse n'est pas terminée)
+	 */
+	public synchronized int getSuspectCount() {
+		return suspectCount;
+	}
+
+	/**
+	 * @return Nombre de classes analysées (0 si l'analyse n'est pas terminée)
+	 */
+	public synchronized int getAnalyzedClassCount() {
+		return analyzedClassCount;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Export des résultats au format JSON Lines (http://jsonlines.org) :
+ * un enregistrement JSON par ligne et par méthode, champ ou variable suspect,
+ * pour les outils qui consomment le rapport pendant l'analyse.
+ * @author evernat
+ */
+class JsonLinesReportSink implements ReportSink {
+	private final FileOutputStream fileOutput;
+	private final Writer writer;
+	private final StringBuilder line = new StringBuilder();
+
+	JsonLinesReportSink(File jsonReportFile, long resumePosition) throws IOException {
+		super();
+		if (jsonReportFile.getParentFile() != null && !jsonReportFile.getParentFile().mkdirs()
+				&& !jsonReportFile.getParentFile().exists()) {
+			throw new IOException("Parent directory of jsonReportFile can't be created: "
+					+ jsonReportFile.getPath());
+		}
+		if (resumePosition >= 0) {
+			// les enregistrements écrits avant l'interruption sont conservés
+			fileOutput = new FileOutputStream(jsonReportFile, true);
+			fileOutput.getChannel().truncate(resumePosition);
+		} else {
+			fileOutput = new FileOutputStream(jsonReportFile);
+		}
+		writer = new BufferedWriter(new OutputStreamWriter(fileOutput, StandardCharsets.UTF_8),
+				64 * 1024);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void report(Finding finding) throws IOException {
+		for (final Finding.Member member : finding.getMembers()) {
+			line.setLength(0);
+			line.append('{');
+			appendString("type", finding.getKind().getName());
+			line.append(',');
+			appendString("class", finding.getClassName());
+			line.append(',');
+			if (finding.getMethod() != null) {
+				appendString("method", finding.getMethod());
+				line.append(',');
+			}
+			appendString("member", member.getName());
+			line.append(',');
+			appendString("descriptor", member.getDescriptor());
+			line.append(',');
+			appendString("visibility", member.getVisibility());
+			line.append(',');
+			appendString("analyzer", finding.getKind().getAnalyzer());
+			line.append(",\"bytecodeSize\":");
+			if (member.getBytecodeSize() >= 0) {
+				line.append(member.getBytecodeSize());
+			} else {
+				line.append("null");
+			}
+			line.append("}\n");
+			writer.append(line);
+		}
+	}
+
+	private void appendString(String key, String value) {
+		line.append('"').append(key).append("\":");
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		DcdHelper.appendJsonString(line, value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void log(String message) {
+		// les messages de log ne sont pas dans le rapport
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void flush() throws IOException {
+		// enregistrements visibles au fil de l'analyse pour les outils en aval
+		writer.flush();
+	}
+
+	long getPosition() throws IOException {
+		writer.flush();
+		return fileOutput.getChannel().position();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close(long durationMillis, int suspectCount, int analyzedClassCount)
+			throws IOException {
+		writer.close();
+	}
+}
@@ -17,12 +17,11 @@
  */
 package dcd;
 
+import java.util.AbstractSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.objectweb.asm.Opcodes;
@@ -39,35 +38,101 @@ import org.objectweb.asm.tree.VarInsnNode;
 
 /**
  * Classe utilisée pour l'analyse des variables locales dans les méthodes.
+ * <br/>Les variables non encore utilisées sont indexées par leur index de variable locale (slot)
+ * dans un tableau : la lecture d'une variable est un accès direct au tableau, sans allocation
+ * par instruction, y compris pour les méthodes ayant des centaines de variables locales
+ * (jsp compilées, parseurs générés).
  * @author evernat
  */
 class LocalVariablesAnalyzer {
 	private static final String UNCHECKED = "unchecked";
+	private static final LocalVariableNode[] NO_VARIABLES = {};
 	private final MethodNode methodNode;
+	// variables non utilisées par slot (au plus une par slot), null si utilisée ou sans variable
+	private final LocalVariableNode[] variablesBySlot;
+	// variables candidates dans l'ordre de la table des variables locales, pour le rapport
+	private final LocalVariableNode[] variables;
+	private int variableCount;
 	private final Set<LocalVariableNode> localVariables;
-	private final Map<Object, VarInsnNode> varInstructionsByConstantesMap;
+	// table à adressage ouvert : constante écrite dans une variable -> slot de la dernière écriture
+	private Object[] constants;
+	private int[] constantSlots;
+	private int constantCount;
+
+	/**
+	 * Vue des variables non utilisées, dans l'ordre de la table des variables locales.
+	 * <br/>La suppression par l'itérateur (variables exclues par les filtres des méthodes)
+	 * est répercutée dans l'analyse.
+	 */
+	private class LocalVariablesSet extends AbstractSet<LocalVariableNode> {
+		LocalVariablesSet() {
+			super();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Iterator<LocalVariableNode> iterator() {
+			return new Iterator<LocalVariableNode>() {
+				private int nextIndex = findNext(0);
+				private int lastIndex = -1;
+
+				/** {@inheritDoc} */
+				@Override
+				public boolean hasNext() {
+					return nextIndex < variables.length;
+				}
+
+				/** {@inheritDoc} */
+				@Override
+				public LocalVariableNode next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					lastIndex = nextIndex;
+					nextIndex = findNext(nextIndex + 1);
+					return variables[lastIndex];
+				}
+
+				/** {@inheritDoc} */
+				@Override
+				public void remove() {
+					if (lastIndex == -1 || !isUnused(variables[lastIndex])) {
+						throw new IllegalStateException();
+					}
+					removeLocalVariable(variables[lastIndex].index);
+				}
+			};
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int size() {
+			return variableCount;
+		}
+	}
 
 	LocalVariablesAnalyzer(MethodNode methodNode) {
 		super();
 		this.methodNode = methodNode;
-		this.localVariables = extractLocalVariables();
-		filterCatchVariables();
-		filterDuplicates();
-		this.varInstructionsByConstantesMap = this.localVariables.isEmpty() ? null
-				: new HashMap<Object, VarInsnNode>();
+		final LocalVariableNode[] candidates = extractLocalVariables();
+		filterCatchVariables(candidates);
+		this.variablesBySlot = filterDuplicates(candidates);
+		this.variables = getUnusedVariables(candidates);
+		this.variableCount = variables.length;
+		this.localVariables = new LocalVariablesSet();
 	}
 
-	@SuppressWarnings(UNCHECKED)
 	Set<LocalVariableNode> analyzeMethod() {
 		// si seulement 1 variable locale ("this") ou si seulement des "variables locales" pour les paramètres et pour "this",
 		// alors on passe à la méthode suivante
-		if (localVariables.isEmpty()) {
+		if (variableCount == 0) {
 			return Collections.emptySet();
 		}
-		for (final Iterator<AbstractInsnNode> it = methodNode.instructions.iterator(); it
-				.hasNext();) {
-			analyzeInstruction(it.next());
-			if (localVariables.isEmpty()) {
+		// parcours par les liens entre instructions, sans itérateur
+		for (AbstractInsnNode instruction = methodNode.instructions
+				.getFirst(); instruction != null; instruction = instruction.getNext()) {
+			analyzeInstruction(instruction);
+			if (variableCount == 0) {
 				// si toutes les variables ont été utilisées, inutile de continuer à lire les instructions
 				return Collections.emptySet();
 			}
@@ -77,20 +142,17 @@ class LocalVariablesAnalyzer {
 
 	@SuppressWarnings(UNCHECKED)
 	void analyzeInnerClass(ClassNode innerClass) {
-		if (methodNode.name.equals(innerClass.outerMethod)
+		if (variableCount > 0 && methodNode.name.equals(innerClass.outerMethod)
 				&& methodNode.desc.equals(innerClass.outerMethodDesc)) {
 			// s'il y a une classe interne créée dans cette méthode
 			// utilisant éventuellement une variable finale de cette méthode,
 			// alors on cherche les constantes de variables (et uniquement celles-ci) dans toutes ses méthodes
 			// (si ce n'est pas une constante, alors elle serait déjà détectée utilisée dans la méthode)
 			for (final MethodNode innerMethodNode : (List<MethodNode>) innerClass.methods) {
-				for (final Iterator<AbstractInsnNode> it = innerMethodNode.instructions
-						.iterator(); it.hasNext();) {
-					// CHECKSTYLE:OFF
-					final AbstractInsnNode instruction = it.next();
-					// CHECKSTYLE:ON
+				for (AbstractInsnNode instruction = innerMethodNode.instructions
+						.getFirst(); instruction != null; instruction = instruction.getNext()) {
 					analyzeConstantInstruction(instruction);
-					if (localVariables.isEmpty()) {
+					if (variableCount == 0) {
 						// si toutes les variables ont été utilisées, inutile de continuer à lire les instructions
 						return;
 					}
@@ -101,44 +163,50 @@ class LocalVariablesAnalyzer {
 	}
 
 	@SuppressWarnings(UNCHECKED)
-	private Set<LocalVariableNode> extractLocalVariables() {
+	private LocalVariableNode[] extractLocalVariables() {
 		if ((methodNode.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_SYNTHETIC)) != 0) {
-			return Collections.emptySet();
+			return NO_VARIABLES;
 		}
 		final int oneIfThisExists = (methodNode.access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
-		if (methodNode.localVariables.size() <= oneIfThisExists || methodNode.localVariables
-				.size() <= Type.getArgumentTypes(methodNode.desc).length + oneIfThisExists) {
-			return Collections.emptySet();
+		final int nbParameters = Type.getArgumentTypes(methodNode.desc).length + oneIfThisExists;
+		final List<LocalVariableNode> methodLocalVariables = methodNode.localVariables;
+		if (methodLocalVariables.size() <= nbParameters) {
+			return NO_VARIABLES;
 		}
-		final Set<LocalVariableNode> variables = new LinkedHashSet<>(methodNode.localVariables);
 		// on ignore les variables locales "this" et celles des paramètres
 		// (attention les variables ne sont pas forcément dans l'ordre des index, en eclipse 3.1 ou 3.2 ?)
-		final int nbParameters = Type.getArgumentTypes(methodNode.desc).length + oneIfThisExists;
-		for (final Iterator<LocalVariableNode> it = variables.iterator(); it.hasNext();) {
-			final int index = it.next().index;
-			if (index < nbParameters) {
-				it.remove();
+		int count = 0;
+		for (final LocalVariableNode localVariable : methodLocalVariables) {
+			if (localVariable.index >= nbParameters) {
+				count++;
+			}
+		}
+		final LocalVariableNode[] candidates = new LocalVariableNode[count];
+		count = 0;
+		for (final LocalVariableNode localVariable : methodLocalVariables) {
+			if (localVariable.index >= nbParameters) {
+				candidates[count] = localVariable;
+				count++;
 			}
 		}
-		return variables;
+		return candidates;
 	}
 
 	@SuppressWarnings(UNCHECKED)
-	private void filterCatchVariables() {
+	private void filterCatchVariables(LocalVariableNode[] candidates) {
 		// on supprime les variables des blocs catchs (comme eclipse, etc...),
 		// avant de supprimer les doublons car les blocs catchs provoquent parfois des variables de même index
+		if (candidates.length == 0) {
+			return;
+		}
 		for (final TryCatchBlockNode tryCatchBlock : (List<TryCatchBlockNode>) methodNode.tryCatchBlocks) {
 			// TODO est-ce qu'il y a un meilleur moyen d'identifier la variable de l'exception autrement que par son type ?
 			final String type = tryCatchBlock.type;
 			// type est null si finally
 			if (type != null) {
-				for (final Iterator<LocalVariableNode> it = localVariables.iterator(); it
-						.hasNext();) {
-					final LocalVariableNode localVariable = it.next();
-					final Type typeLocalVariable = Type.getType(localVariable.desc);
-					if (typeLocalVariable.getSort() == Type.OBJECT
-							&& type.equals(typeLocalVariable.getInternalName())) {
-						it.remove();
+				for (int i = 0; i < candidates.length; i++) {
+					if (candidates[i] != null && isObjectType(candidates[i].desc, type)) {
+						candidates[i] = null;
 						break;
 					}
 				}
@@ -146,75 +214,165 @@ class LocalVariablesAnalyzer {
 		}
 	}
 
-	private void filterDuplicates() {
+	// équivalent à Type.getType(desc).getSort() == Type.OBJECT
+	// && internalName.equals(Type.getType(desc).getInternalName()), sans allocation
+	private static boolean isObjectType(String desc, String internalName) {
+		return desc.length() == internalName.length() + 2 && desc.charAt(0) == 'L'
+				&& desc.charAt(desc.length() - 1) == ';'
+				&& desc.regionMatches(1, internalName, 0, internalName.length());
+	}
+
+	private static LocalVariableNode[] filterDuplicates(LocalVariableNode[] candidates) {
 		// et on supprime les doublons,
 		// qui arrivent avec le code suivant : final String s; if (b) s = "t"; else s = "f";,
 		// Rq: du coup on peut avoir des faux négatifs avec le code suivant, mais tant pis :
 		// if (b) { Object o = new Object(); test(o); } else { Object o = new Object(); }
 		// (attention les variables ne sont pas forcément dans l'ordre des index, en eclipse 3.1 ou 3.2 ?)
-		for (final Iterator<LocalVariableNode> it = localVariables.iterator(); it.hasNext();) {
-			final LocalVariableNode localVariable = it.next();
-			for (final LocalVariableNode localVariable2 : localVariables) {
-				if (localVariable.index == localVariable2.index
-						&& !localVariable.equals(localVariable2)) {
-					it.remove();
-					break;
-				}
+		// seule la dernière variable de chaque index est gardée, en temps linéaire
+		int slotCount = 0;
+		for (final LocalVariableNode candidate : candidates) {
+			if (candidate != null) {
+				slotCount = Math.max(slotCount, candidate.index + 1);
 			}
 		}
+		final LocalVariableNode[] variablesBySlot = new LocalVariableNode[slotCount];
+		for (final LocalVariableNode candidate : candidates) {
+			if (candidate != null) {
+				variablesBySlot[candidate.index] = candidate;
+			}
+		}
+		return variablesBySlot;
 	}
 
-	private void analyzeInstruction(Object instructionObject) {
-		// CHECKSTYLE:OFF
-		final AbstractInsnNode instruction = (AbstractInsnNode) instructionObject;
-		// CHECKSTYLE:ON
+	private LocalVariableNode[] getUnusedVariables(LocalVariableNode[] candidates) {
+		int count = 0;
+		for (final LocalVariableNode candidate : candidates) {
+			if (candidate != null && isUnused(candidate)) {
+				count++;
+			}
+		}
+		if (count == 0) {
+			return NO_VARIABLES;
+		}
+		final LocalVariableNode[] result = new LocalVariableNode[count];
+		count = 0;
+		for (final LocalVariableNode candidate : candidates) {
+			if (candidate != null && isUnused(candidate)) {
+				result[count] = candidate;
+				count++;
+			}
+		}
+		return result;
+	}
+
+	private boolean isUnused(LocalVariableNode localVariable) {
+		return variablesBySlot[localVariable.index] == localVariable;
+	}
+
+	private int findNext(int fromIndex) {
+		int index = fromIndex;
+		while (index < variables.length && !isUnused(variables[index])) {
+			index++;
+		}
+		return index;
+	}
+
+	private void analyzeInstruction(AbstractInsnNode instruction) {
 		// rq : on ne considère pas une instruction d'incrémentation (opcode IINC, type
 		// IincInsnNode) comme une instruction de lecture car elle ne lit pas elle-même la variable,
 		// IINC équivaut à une écriture par incrémentation (store) de la variable
-		if (isRead(instruction.getOpcode())) {
+		final int opcode = instruction.getOpcode();
+		if (isRead(opcode)) {
 			// si c'est une lecture de variable, alors la variable est utilisée
 			// (une instruction d'opcode xLOAD est forcément de type VarInsnNode)
-			removeLocalVariable((VarInsnNode) instruction);
-		} else if (isStore(instruction.getOpcode())) {
+			removeLocalVariable(((VarInsnNode) instruction).var);
+		} else if (isStore(opcode)) {
+			final int slot = ((VarInsnNode) instruction).var;
 			if (instruction.getPrevious().getOpcode() == Opcodes.LDC) {
 				// si c'est une écriture de variable avec une constante de méthode
 				// alors la variable est utilisée si la même constante est lue ensuite
 				// (une instruction d'opcode xSTORE est forcément de type VarInsnNode,
 				// une instruction d'opcode LDC est forcément de type LdcInsnNode)
-				varInstructionsByConstantesMap.put(((LdcInsnNode) instruction.getPrevious()).cst,
-						(VarInsnNode) instruction);
+				putConstant(((LdcInsnNode) instruction.getPrevious()).cst, slot);
 			} else if (isSimpleConstant(instruction.getPrevious())) {
 				// si c'est une écriture de variable avec une constante telle false, 0 ou 57
 				// alors la variable est considérée comme utilisée
-				removeLocalVariable((VarInsnNode) instruction);
+				removeLocalVariable(slot);
 			}
 		} else {
 			analyzeConstantInstruction(instruction);
 		}
 	}
 
-	private void analyzeConstantInstruction(Object instructionObject) {
-		// CHECKSTYLE:OFF
-		final AbstractInsnNode instruction = (AbstractInsnNode) instructionObject;
-		// CHECKSTYLE:ON
-		if (instruction.getOpcode() == Opcodes.LDC) {
+	private void analyzeConstantInstruction(AbstractInsnNode instruction) {
+		if (instruction.getOpcode() == Opcodes.LDC && constantCount > 0) {
 			// une instruction d'opcode LDC est forcément de type LdcInsnNode
-			final VarInsnNode varInstruction = varInstructionsByConstantesMap
-					.get(((LdcInsnNode) instruction).cst);
-			// varInstruction peut être null si cette constante n'est pas dans une variable
-			if (varInstruction != null) {
-				removeLocalVariable(varInstruction);
+			final int slot = getConstantSlot(((LdcInsnNode) instruction).cst);
+			// slot vaut -1 si cette constante n'est pas dans une variable
+			if (slot != -1) {
+				removeLocalVariable(slot);
+			}
+		}
+	}
+
+	private boolean isUnusedSlot(int slot) {
+		return slot < variablesBySlot.length && variablesBySlot[slot] != null;
+	}
+
+	private void removeLocalVariable(int slot) {
+		if (isUnusedSlot(slot)) {
+			variablesBySlot[slot] = null;
+			variableCount--;
+		}
+	}
+
+	// la constante est associée au slot de sa dernière écriture, comme dans une HashMap
+	private void putConstant(Object constant, int slot) {
+		if (constants == null || 2 * (constantCount + 1) > constants.length) {
+			resizeConstants();
+		}
+		final int mask = constants.length - 1;
+		int index = constant.hashCode() & mask;
+		while (constants[index] != null) {
+			if (constants[index].equals(constant)) {
+				constantSlots[index] = slot;
+				return;
 			}
+			index = index + 1 & mask;
 		}
+		constants[index] = constant;
+		constantSlots[index] = slot;
+		constantCount++;
 	}
 
-	private void removeLocalVariable(VarInsnNode varInstruction) {
-		final int localVariableIndex = varInstruction.var;
-		for (final Iterator<LocalVariableNode> it = localVariables.iterator(); it.hasNext();) {
-			final LocalVariableNode localVariable = it.next();
-			if (localVariable.index == localVariableIndex) {
-				it.remove();
-				break;
+	private int getConstantSlot(Object constant) {
+		final int mask = constants.length - 1;
+		int index = constant.hashCode() & mask;
+		while (constants[index] != null) {
+			if (constants[index].equals(constant)) {
+				return constantSlots[index];
+			}
+			index = index + 1 & mask;
+		}
+		return -1;
+	}
+
+	private void resizeConstants() {
+		final Object[] oldConstants = constants;
+		final int[] oldConstantSlots = constantSlots;
+		// taille initiale selon le nombre de variables, puis doublée : pas d'allocation par instruction
+		int capacity = 16;
+		while (capacity < 4 * Math.max(variables.length, constantCount + 1)) {
+			capacity *= 2;
+		}
+		constants = new Object[capacity];
+		constantSlots = new int[capacity];
+		constantCount = 0;
+		if (oldConstants != null) {
+			for (int i = 0; i < oldConstants.length; i++) {
+				if (oldConstants[i] != null) {
+					putConstant(oldConstants[i], oldConstantSlots[i]);
+				}
 			}
 		}
 	}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Informations sur les méthodes et champs suspects pour les rapports structurés :
+ * modificateurs d'accès et taille du bytecode, codés dans un long par membre.
+ * <br/>Elles sont lues directement dans la structure du fichier class, sans visiteur,
+ * car l'indexation ne parcourt pas le code (SKIP_CODE).
+ * @author evernat
+ */
+final class MemberInfos {
+	private static final long UNKNOWN = -1L;
+
+	private MemberInfos() {
+		super();
+	}
+
+	/**
+	 * Lit les informations des méthodes et champs indexés d'une classe.
+	 * @param classReader ClassReader
+	 * @param methods Méthodes indexées
+	 * @param fields Champs indexés
+	 * @return Map des informations par clé de méthode ou de champ (vide si aucun membre indexé)
+	 */
+	static Map<String, Long> read(ClassReader classReader, Set<String> methods,
+			Set<String> fields) {
+		if (methods.isEmpty() && fields.isEmpty()) {
+			return new HashMap<>(0);
+		}
+		final Map<String, Long> infos = new HashMap<>(methods.size() + fields.size());
+		final char[] buffer = new char[classReader.getMaxStringLength()];
+		// access, this, super puis interfaces
+		int u = classReader.header + 8 + 2 * classReader.readUnsignedShort(classReader.header + 6);
+		int count = classReader.readUnsignedShort(u);
+		u += 2;
+		for (int i = 0; i < count; i++) {
+			final int access = classReader.readUnsignedShort(u);
+			final String key = DcdHelper.getMethodKey(classReader.readUTF8(u + 2, buffer),
+					classReader.readUTF8(u + 4, buffer));
+			u = skipAttributes(classReader, u + 6);
+			if (fields.contains(key)) {
+				infos.put(key, encode(access, -1));
+			}
+		}
+		count = classReader.readUnsignedShort(u);
+		u += 2;
+		for (int i = 0; i < count; i++) {
+			final int access = classReader.readUnsignedShort(u);
+			final String key = DcdHelper.getMethodKey(classReader.readUTF8(u + 2, buffer),
+					classReader.readUTF8(u + 4, buffer));
+			int codeLength = -1;
+			int attributeCount = classReader.readUnsignedShort(u + 6);
+			u += 8;
+			while (attributeCount > 0) {
+				// attribut Code : nom, longueur, max_stack, max_locals puis code_length
+				if ("Code".equals(classReader.readUTF8(u, buffer))) {
+					codeLength = classReader.readInt(u + 10);
+				}
+				u += 6 + classReader.readInt(u + 2);
+				attributeCount--;
+			}
+			if (methods.contains(key)) {
+				infos.put(key, encode(access, codeLength));
+			}
+		}
+		return infos;
+	}
+
+	private static int skipAttributes(ClassReader classReader, int offset) {
+		int u = offset;
+		int attributeCount = classReader.readUnsignedShort(u);
+		u += 2;
+		while (attributeCount > 0) {
+			u += 6 + classReader.readInt(u + 2);
+			attributeCount--;
+		}
+		return u;
+	}
+
+	private static long encode(int access, int bytecodeSize) {
+		return (long) access << 32 | bytecodeSize & 0xFFFFFFFFL;
+	}
+
+	static long getUnknown() {
+		return UNKNOWN;
+	}
+
+	static int getBytecodeSize(long info) {
+		return info == UNKNOWN ? -1 : (int) info;
+	}
+
+	static String getVisibility(long info) {
+		if (info == UNKNOWN) {
+			return null;
+		}
+		return getAccessVisibility((int) (info >>> 32));
+	}
+
+	static String getAccessVisibility(int access) {
+		if ((access & Opcodes.ACC_PUBLIC) != 0) {
+			return "public";
+		} else if ((access & Opcodes.ACC_PROTECTED) != 0) {
+			return "protected";
+		} else if ((access & Opcodes.ACC_PRIVATE) != 0) {
+			return "private";
+		}
+		return "package";
+	}
+}
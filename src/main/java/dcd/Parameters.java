@@ -25,7 +25,10 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import java.util.regex.Pattern;
@@ -48,6 +51,18 @@ public class Parameters {
 	private static final String INIT_DEAD_CODE_KEY = "initDeadCode";
 	private static final String XML_REPORT_FILE_KEY = "xmlReportFile";
 	private static final String INCLUDE_VIEW_FILES_KEY = "includeViewFiles";
+	private static final String SHARD_COUNT_KEY = "shardCount";
+	private static final String SHARD_INDEX_KEY = "shardIndex";
+	private static final String SHARD_DIRECTORY_KEY = "shardDirectory";
+	private static final String SHARD_LAUNCH_WORKERS_KEY = "shardLaunchWorkers";
+	private static final String MEMORY_BUDGET_KEY = "memoryBudget";
+	private static final String CHECKPOINT_FILE_KEY = "checkpointFile";
+	private static final String JSON_REPORT_FILE_KEY = "jsonReportFile";
+	private static final String BINARY_REPORT_FILE_KEY = "binaryReportFile";
+	private static final String BASELINE_FILE_KEY = "baselineFile";
+	private static final String JMX_ENABLED_KEY = "jmxEnabled";
+	private static final String PROFILE_TOP_COUNT_KEY = "profileTopCount";
+	private static final String TRACE_FILE_KEY = "traceFile";
 	private static final String SEPARATORS = "[;,]";
 	private final List<File> directories;
 	private final List<Pattern> excludedClasses;
@@ -58,6 +73,18 @@ public class Parameters {
 	private final boolean initDeadCode;
 	private File xmlReportFile; // can be null
 	private final boolean includeViewFiles;
+	private int shardCount;
+	private int shardIndex = -1;
+	private File shardDirectory; // can be null
+	private boolean shardLaunchWorkers = true;
+	private long memoryBudget;
+	private File checkpointFile; // can be null
+	private File jsonReportFile; // can be null
+	private File binaryReportFile; // can be null
+	private File baselineFile; // can be null
+	private boolean jmxEnabled;
+	private int profileTopCount;
+	private File traceFile; // can be null
 
 	/**
 	 * Constructeur.
@@ -88,6 +115,32 @@ public class Parameters {
 						: new File(properties.getProperty(XML_REPORT_FILE_KEY));
 		includeViewFiles = Boolean.valueOf(properties.getProperty(INCLUDE_VIEW_FILES_KEY,
 				System.getProperty(INCLUDE_VIEW_FILES_KEY)));
+		shardCount = extractInt(properties, SHARD_COUNT_KEY, 0);
+		shardIndex = extractInt(properties, SHARD_INDEX_KEY, -1);
+		shardDirectory = properties.getProperty(SHARD_DIRECTORY_KEY) == null
+				|| properties.getProperty(SHARD_DIRECTORY_KEY).trim().isEmpty() ? null
+						: new File(properties.getProperty(SHARD_DIRECTORY_KEY));
+		shardLaunchWorkers = !"false"
+				.equalsIgnoreCase(properties.getProperty(SHARD_LAUNCH_WORKERS_KEY));
+		checkShards();
+		memoryBudget = extractSize(properties, MEMORY_BUDGET_KEY);
+		checkpointFile = properties.getProperty(CHECKPOINT_FILE_KEY) == null
+				|| properties.getProperty(CHECKPOINT_FILE_KEY).trim().isEmpty() ? null
+						: new File(properties.getProperty(CHECKPOINT_FILE_KEY));
+		jsonReportFile = properties.getProperty(JSON_REPORT_FILE_KEY) == null
+				|| properties.getProperty(JSON_REPORT_FILE_KEY).trim().isEmpty() ? null
+						: new File(properties.getProperty(JSON_REPORT_FILE_KEY));
+		binaryReportFile = properties.getProperty(BINARY_REPORT_FILE_KEY) == null
+				|| properties.getProperty(BINARY_REPORT_FILE_KEY).trim().isEmpty() ? null
+						: new File(properties.getProperty(BINARY_REPORT_FILE_KEY));
+		baselineFile = properties.getProperty(BASELINE_FILE_KEY) == null
+				|| properties.getProperty(BASELINE_FILE_KEY).trim().isEmpty() ? null
+						: new File(properties.getProperty(BASELINE_FILE_KEY));
+		jmxEnabled = Boolean.valueOf(properties.getProperty(JMX_ENABLED_KEY));
+		profileTopCount = extractInt(properties, PROFILE_TOP_COUNT_KEY, 0);
+		traceFile = properties.getProperty(TRACE_FILE_KEY) == null
+				|| properties.getProperty(TRACE_FILE_KEY).trim().isEmpty() ? null
+						: new File(properties.getProperty(TRACE_FILE_KEY));
 	}
 
 	/**
@@ -128,18 +181,38 @@ public class Parameters {
 	 */
 	public static Parameters createFromSystemProperties() {
 		final Properties properties = new Properties();
-		properties.put(DIRECTORIES_KEY, System.getProperty(DIRECTORIES_KEY));
-		properties.put(EXCLUDED_CLASSES_KEY, System.getProperty(EXCLUDED_CLASSES_KEY));
-		properties.put(EXCLUDED_METHODS_KEY, System.getProperty(EXCLUDED_METHODS_KEY));
-		properties.put(PRIVATE_DEAD_CODE_KEY, System.getProperty(PRIVATE_DEAD_CODE_KEY));
-		properties.put(PUBLIC_DEAD_CODE_KEY, System.getProperty(PUBLIC_DEAD_CODE_KEY));
-		properties.put(LOCAL_DEAD_CODE_KEY, System.getProperty(LOCAL_DEAD_CODE_KEY));
-		properties.put(INIT_DEAD_CODE_KEY, System.getProperty(INIT_DEAD_CODE_KEY));
-		properties.put(XML_REPORT_FILE_KEY, System.getProperty(XML_REPORT_FILE_KEY));
-		properties.put(INCLUDE_VIEW_FILES_KEY, System.getProperty(INCLUDE_VIEW_FILES_KEY));
+		putSystemProperty(properties, DIRECTORIES_KEY);
+		putSystemProperty(properties, EXCLUDED_CLASSES_KEY);
+		putSystemProperty(properties, EXCLUDED_METHODS_KEY);
+		putSystemProperty(properties, PRIVATE_DEAD_CODE_KEY);
+		putSystemProperty(properties, PUBLIC_DEAD_CODE_KEY);
+		putSystemProperty(properties, LOCAL_DEAD_CODE_KEY);
+		putSystemProperty(properties, INIT_DEAD_CODE_KEY);
+		putSystemProperty(properties, XML_REPORT_FILE_KEY);
+		putSystemProperty(properties, INCLUDE_VIEW_FILES_KEY);
+		putSystemProperty(properties, SHARD_COUNT_KEY);
+		putSystemProperty(properties, SHARD_INDEX_KEY);
+		putSystemProperty(properties, SHARD_DIRECTORY_KEY);
+		putSystemProperty(properties, SHARD_LAUNCH_WORKERS_KEY);
+		putSystemProperty(properties, MEMORY_BUDGET_KEY);
+		putSystemProperty(properties, CHECKPOINT_FILE_KEY);
+		putSystemProperty(properties, JSON_REPORT_FILE_KEY);
+		putSystemProperty(properties, BINARY_REPORT_FILE_KEY);
+		putSystemProperty(properties, BASELINE_FILE_KEY);
+		putSystemProperty(properties, JMX_ENABLED_KEY);
+		putSystemProperty(properties, PROFILE_TOP_COUNT_KEY);
+		putSystemProperty(properties, TRACE_FILE_KEY);
 		return new Parameters(properties);
 	}
 
+	private static void putSystemProperty(Properties properties, String key) {
+		// Properties n'accepte pas les valeurs null
+		final String value = System.getProperty(key);
+		if (value != null) {
+			properties.put(key, value);
+		}
+	}
+
 	/**
 	 * Charge les paramètres depuis un fichier de configuration au format properties.
 	 * @param propertiesFile Fichier
@@ -219,6 +292,124 @@ public class Parameters {
 		prefs.flush();
 	}
 
+	/**
+	 * Retourne les paramètres au format properties, par exemple pour lancer un worker
+	 * dans un autre processus.
+	 * @return Properties
+	 */
+	Properties toProperties() {
+		final Properties properties = new Properties();
+		final StringBuilder dirs = new StringBuilder();
+		for (final File directory : directories) {
+			if (dirs.length() != 0) {
+				dirs.append(',');
+			}
+			dirs.append(directory.getPath());
+		}
+		properties.put(DIRECTORIES_KEY, dirs.toString());
+		properties.put(EXCLUDED_CLASSES_KEY, joinPatterns(excludedClasses));
+		properties.put(EXCLUDED_METHODS_KEY, joinPatterns(excludedMethods));
+		properties.put(PUBLIC_DEAD_CODE_KEY, Boolean.toString(publicDeadCode));
+		properties.put(PRIVATE_DEAD_CODE_KEY, Boolean.toString(privateDeadCode));
+		properties.put(LOCAL_DEAD_CODE_KEY, Boolean.toString(localDeadCode));
+		properties.put(INIT_DEAD_CODE_KEY, Boolean.toString(initDeadCode));
+		properties.put(XML_REPORT_FILE_KEY, xmlReportFile == null ? "" : xmlReportFile.getPath());
+		properties.put(INCLUDE_VIEW_FILES_KEY, Boolean.toString(includeViewFiles));
+		properties.put(SHARD_COUNT_KEY, String.valueOf(shardCount));
+		properties.put(SHARD_INDEX_KEY, String.valueOf(shardIndex));
+		properties.put(SHARD_DIRECTORY_KEY,
+				shardDirectory == null ? "" : shardDirectory.getPath());
+		properties.put(SHARD_LAUNCH_WORKERS_KEY, Boolean.toString(shardLaunchWorkers));
+		properties.put(MEMORY_BUDGET_KEY, String.valueOf(memoryBudget));
+		properties.put(CHECKPOINT_FILE_KEY,
+				checkpointFile == null ? "" : checkpointFile.getPath());
+		properties.put(JSON_REPORT_FILE_KEY,
+				jsonReportFile == null ? "" : jsonReportFile.getPath());
+		properties.put(BINARY_REPORT_FILE_KEY,
+				binaryReportFile == null ? "" : binaryReportFile.getPath());
+		properties.put(BASELINE_FILE_KEY, baselineFile == null ? "" : baselineFile.getPath());
+		properties.put(JMX_ENABLED_KEY, Boolean.toString(jmxEnabled));
+		properties.put(PROFILE_TOP_COUNT_KEY, String.valueOf(profileTopCount));
+		properties.put(TRACE_FILE_KEY, traceFile == null ? "" : traceFile.getPath());
+		return properties;
+	}
+
+	String getCheckpointFingerprint() {
+		// paramètres qui changent les résultats de l'analyse, dans un ordre stable :
+		// le budget mémoire et le suivi (jmx, profil, trace) peuvent changer entre l'analyse
+		// interrompue et la reprise
+		final Map<Object, Object> properties = new TreeMap<>(toProperties());
+		properties.remove(MEMORY_BUDGET_KEY);
+		properties.remove(CHECKPOINT_FILE_KEY);
+		properties.remove(JMX_ENABLED_KEY);
+		properties.remove(PROFILE_TOP_COUNT_KEY);
+		properties.remove(TRACE_FILE_KEY);
+		final StringBuilder sb = new StringBuilder();
+		for (final Map.Entry<Object, Object> entry : properties.entrySet()) {
+			sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static String joinPatterns(List<Pattern> patterns) {
+		final StringBuilder sb = new StringBuilder();
+		for (final Pattern pattern : patterns) {
+			if (sb.length() != 0) {
+				sb.append(',');
+			}
+			sb.append(pattern.pattern());
+		}
+		return sb.toString();
+	}
+
+	private static int extractInt(Properties properties, String key, int defaultValue) {
+		final String value = properties.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException(key + " must be an integer: " + value, e);
+		}
+	}
+
+	private static long extractSize(Properties properties, String key) {
+		// taille en octets, ou avec un suffixe k, m ou g comme pour -Xmx (ex : 2g)
+		final String value = properties.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return 0;
+		}
+		final String size = value.trim().toLowerCase(Locale.ENGLISH);
+		final char unit = size.charAt(size.length() - 1);
+		final long multiplier;
+		if (unit == 'k') {
+			multiplier = 1024L;
+		} else if (unit == 'm') {
+			multiplier = 1024L * 1024;
+		} else if (unit == 'g') {
+			multiplier = 1024L * 1024 * 1024;
+		} else {
+			multiplier = 1;
+		}
+		try {
+			return multiplier * Long.parseLong(
+					multiplier == 1 ? size : size.substring(0, size.length() - 1).trim());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException(key + " must be a size (ex : 2g): " + value, e);
+		}
+	}
+
+	private void checkShards() {
+		if (shardCount < 0) {
+			throw new IllegalArgumentException(SHARD_COUNT_KEY + " must be positive");
+		}
+		if (shardIndex >= shardCount || shardIndex < -1) {
+			throw new IllegalArgumentException(
+					SHARD_INDEX_KEY + " must be between 0 and " + SHARD_COUNT_KEY + " - 1");
+		}
+	}
+
 	private static List<Pattern> extractPatterns(Properties properties, String string) {
 		final List<Pattern> result = new ArrayList<>();
 		if (properties.containsKey(string) && !properties.getProperty(string).isEmpty()) {
@@ -326,6 +517,204 @@ public class Parameters {
 		return includeViewFiles;
 	}
 
+	/**
+	 * @return Nombre de processus workers se partageant l'analyse (0 si pas de découpage)
+	 */
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * @return Index du worker de ce processus, ou -1 si ce processus n'est pas un worker
+	 */
+	public int getShardIndex() {
+		return shardIndex;
+	}
+
+	/**
+	 * @param shardCount Nombre de processus workers se partageant l'analyse (0 si pas de découpage)
+	 * @param shardIndex Index du worker de ce processus, ou -1 si ce processus est le reducer
+	 */
+	public void setShards(int shardCount, int shardIndex) {
+		this.shardCount = shardCount;
+		this.shardIndex = shardIndex;
+		checkShards();
+	}
+
+	/**
+	 * @return Répertoire partagé des index partiels des workers
+	 * (répertoire temporaire "dcd-shards" par défaut)
+	 */
+	public File getShardDirectory() {
+		if (shardDirectory == null) {
+			return new File(System.getProperty("java.io.tmpdir"), "dcd-shards");
+		}
+		return shardDirectory;
+	}
+
+	/**
+	 * @param shardDirectory Répertoire partagé des index partiels des workers
+	 */
+	public void setShardDirectory(File shardDirectory) {
+		this.shardDirectory = shardDirectory;
+	}
+
+	/**
+	 * @return Booléen selon que le reducer lance lui-même les workers en local
+	 * (sinon les index partiels sont supposés déjà produits, par exemple par plusieurs agents de build)
+	 */
+	public boolean isShardLaunchWorkers() {
+		return shardLaunchWorkers;
+	}
+
+	/**
+	 * @param shardLaunchWorkers Booléen selon que le reducer lance lui-même les workers en local
+	 */
+	public void setShardLaunchWorkers(boolean shardLaunchWorkers) {
+		this.shardLaunchWorkers = shardLaunchWorkers;
+	}
+
+	/**
+	 * @return Budget mémoire en octets au-delà duquel les index sont déchargés sur disque
+	 * (0 si pas de budget)
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @param memoryBudget Budget mémoire en octets au-delà duquel les index sont déchargés sur disque
+	 * (0 si pas de budget), comparé à l'usage après garbage collection de chaque pool heap
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * @return Fichier de point de reprise de l'analyse (null si pas de reprise possible)
+	 */
+	public File getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	/**
+	 * @param checkpointFile Fichier de point de reprise de l'analyse (null si pas de reprise possible)
+	 */
+	public void setCheckpointFile(File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+
+	/**
+	 * @return Fichier pour export au format JSON Lines (null si pas d'export)
+	 */
+	public File getJsonReportFile() {
+		return jsonReportFile;
+	}
+
+	/**
+	 * @param jsonReportFile Fichier pour export au format JSON Lines (null si pas d'export)
+	 */
+	public void setJsonReportFile(File jsonReportFile) {
+		this.jsonReportFile = jsonReportFile;
+	}
+
+	/**
+	 * @return Fichier pour export au format binaire, compressé en gzip si son nom finit par .gz
+	 * (null si pas d'export)
+	 */
+	public File getBinaryReportFile() {
+		return binaryReportFile;
+	}
+
+	/**
+	 * @param binaryReportFile Fichier pour export au format binaire,
+	 * compressé en gzip si son nom finit par .gz (null si pas d'export)
+	 */
+	public void setBinaryReportFile(File binaryReportFile) {
+		this.binaryReportFile = binaryReportFile;
+	}
+
+	/**
+	 * @return Fichier des suspects déjà connus, non reportés (null si pas de baseline),
+	 * voir {@link Baseline}
+	 */
+	public File getBaselineFile() {
+		return baselineFile;
+	}
+
+	/**
+	 * @param baselineFile Fichier des suspects déjà connus, non reportés (null si pas de baseline)
+	 */
+	public void setBaselineFile(File baselineFile) {
+		this.baselineFile = baselineFile;
+	}
+
+	/**
+	 * @return Booléen selon que les métriques de l'analyse sont exposées par un MBean
+	 * dcd:type=DeadCodeDetector pendant l'analyse, voir {@link DeadCodeDetectorMXBean}
+	 */
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	/**
+	 * @param jmxEnabled Booléen selon que les métriques de l'analyse sont exposées par un MBean
+	 * pendant l'analyse
+	 */
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+	/**
+	 * @return Nombre de classes listées dans le profil du rapport pour la lecture des fichiers class
+	 * et pour chaque analyse, par durée décroissante (0 si pas de profil)
+	 */
+	public int getProfileTopCount() {
+		return profileTopCount;
+	}
+
+	/**
+	 * @param profileTopCount Nombre de classes listées dans le profil du rapport pour la lecture
+	 * des fichiers class et pour chaque analyse (0 si pas de profil)
+	 */
+	public void setProfileTopCount(int profileTopCount) {
+		this.profileTopCount = profileTopCount;
+	}
+
+	/**
+	 * @return Fichier de trace de l'analyse au format "Trace Event" de Chrome
+	 * (null si pas de trace)
+	 */
+	public File getTraceFile() {
+		return traceFile;
+	}
+
+	/**
+	 * @param traceFile Fichier de trace de l'analyse au format "Trace Event" de Chrome
+	 * (null si pas de trace)
+	 */
+	public void setTraceFile(File traceFile) {
+		this.traceFile = traceFile;
+	}
+
+	boolean isShardWorker() {
+		return shardIndex >= 0;
+	}
+
+	boolean isShardReducer() {
+		return shardCount > 0 && shardIndex < 0;
+	}
+
+	boolean isPackageInShard(String packageName) {
+		if (!isShardWorker()) {
+			return true;
+		}
+		// découpage par package car l'analyse private se fait package par package,
+		// et String.hashCode est spécifié donc identique dans tous les processus
+		final String name = packageName != null ? packageName : "";
+		return (name.hashCode() & Integer.MAX_VALUE) % shardCount == shardIndex;
+	}
+
 	/**
 	 * @param xmlReportFileName Nom du fichier pour export xml ou null sinon
 	 */
@@ -372,6 +761,10 @@ public class Parameters {
 		sb.append("excludedClasses=").append(excludedClasses).append(", ");
 		sb.append("excludedMethods=").append(excludedMethods).append(", ");
 		sb.append("xmlReportFile=").append(xmlReportFile == null ? null : xmlReportFile.getPath());
+		if (shardCount > 0) {
+			sb.append(", shardCount=").append(shardCount);
+			sb.append(", shardIndex=").append(shardIndex);
+		}
 		sb.append(']');
 		return sb.toString();
 	}
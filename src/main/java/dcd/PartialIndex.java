@@ -0,0 +1,158 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Index partiel produit par un worker en mode shard : méthodes et champs candidats déclarés,
+ * héritage et membres référencés par les classes de la part du classpath analysée par ce worker.
+ * Le reducer fusionne les index partiels de tous les workers pour calculer le code mort public.
+ * @author evernat
+ */
+class PartialIndex implements Serializable {
+	private static final long serialVersionUID = 3L;
+	private static final char CALL_SEPARATOR = ' ';
+	private final Map<String, Set<String>> methodsByClassMap;
+	private final Map<String, Set<String>> fieldsByClassMap;
+	private final Map<String, String> superClassByClassMap;
+	private final Map<String, Set<String>> subClassListByClassMap;
+	private final Map<String, Map<String, Long>> memberInfosByClassMap;
+	private final Set<String> methodCalls;
+	private final Set<String> fieldCalls;
+	private final int analyzedClassCount;
+
+	// CHECKSTYLE:OFF
+	PartialIndex(Map<String, Set<String>> methodsByClassMap,
+			Map<String, Set<String>> fieldsByClassMap, Map<String, String> superClassByClassMap,
+			Map<String, Set<String>> subClassListByClassMap,
+			Map<String, Map<String, Long>> memberInfosByClassMap, Set<String> methodCalls,
+			Set<String> fieldCalls, int analyzedClassCount) {
+		// CHECKSTYLE:ON
+		super();
+		this.methodsByClassMap = methodsByClassMap;
+		this.fieldsByClassMap = fieldsByClassMap;
+		this.superClassByClassMap = superClassByClassMap;
+		this.subClassListByClassMap = subClassListByClassMap;
+		this.memberInfosByClassMap = memberInfosByClassMap;
+		this.methodCalls = methodCalls;
+		this.fieldCalls = fieldCalls;
+		this.analyzedClassCount = analyzedClassCount;
+	}
+
+	static File getFile(File shardDirectory, int shardIndex) {
+		return new File(shardDirectory, "shard-" + shardIndex + ".idx");
+	}
+
+	/**
+	 * @param shardDirectory Répertoire des index partiels
+	 * @param shardIndex Index du worker
+	 * @return Rapport binaire des résultats init, local et private du worker, lu par le reducer
+	 */
+	static File getReportFile(File shardDirectory, int shardIndex) {
+		return new File(shardDirectory, "shard-" + shardIndex + ".dcdb");
+	}
+
+	static String getCallKey(String asmClassName, String name, String desc) {
+		return asmClassName + CALL_SEPARATOR + DcdHelper.getMethodKey(name, desc);
+	}
+
+	static String getCallClassName(String callKey) {
+		return callKey.substring(0, callKey.indexOf(CALL_SEPARATOR));
+	}
+
+	static String getCallMethodKey(String callKey) {
+		return callKey.substring(callKey.indexOf(CALL_SEPARATOR) + 1);
+	}
+
+	static PartialIndex read(File file) throws IOException {
+		final ObjectInputStream input = new ObjectInputStream(new GZIPInputStream(
+				new BufferedInputStream(new FileInputStream(file), 64 * 1024)));
+		try {
+			return (PartialIndex) input.readObject();
+		} catch (final ClassNotFoundException e) {
+			throw new IOException("Invalid partial index: " + file.getPath(), e);
+		} finally {
+			input.close();
+		}
+	}
+
+	void write(File file) throws IOException {
+		if (file.getParentFile() != null && !file.getParentFile().mkdirs()
+				&& !file.getParentFile().exists()) {
+			throw new IOException("Shard directory can't be created: " + file.getParent());
+		}
+		// écriture dans un fichier temporaire puis renommage,
+		// pour que le reducer ne lise jamais un index partiel incomplet
+		final File tmpFile = new File(file.getPath() + ".tmp");
+		final ObjectOutputStream output = new ObjectOutputStream(new GZIPOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024)));
+		try {
+			output.writeObject(this);
+		} finally {
+			output.close();
+		}
+		if (file.exists() && !file.delete() || !tmpFile.renameTo(file)) {
+			throw new IOException("Partial index can't be written: " + file.getPath());
+		}
+	}
+
+	Map<String, Set<String>> getMethodsByClassMap() {
+		return methodsByClassMap;
+	}
+
+	Map<String, Set<String>> getFieldsByClassMap() {
+		return fieldsByClassMap;
+	}
+
+	Map<String, String> getSuperClassByClassMap() {
+		return superClassByClassMap;
+	}
+
+	Map<String, Set<String>> getSubClassListByClassMap() {
+		return subClassListByClassMap;
+	}
+
+	Map<String, Map<String, Long>> getMemberInfosByClassMap() {
+		return memberInfosByClassMap;
+	}
+
+	Set<String> getMethodCalls() {
+		return methodCalls;
+	}
+
+	Set<String> getFieldCalls() {
+		return fieldCalls;
+	}
+
+	int getAnalyzedClassCount() {
+		return analyzedClassCount;
+	}
+}
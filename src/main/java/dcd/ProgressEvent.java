@@ -0,0 +1,131 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+/**
+ * Evènement d'avancement de l'analyse, publié à fréquence fixe,
+ * voir {@link DeadCodeDetector#setProgressEventListener(ProgressEventListener, long)}.
+ * @author evernat
+ */
+public final class ProgressEvent {
+	private final String step;
+	private final long classCount;
+	private final long processedBytes;
+	private final long totalBytes;
+	private final long elapsedMillis;
+	private final int findingCount;
+
+	// CHECKSTYLE:OFF
+	ProgressEvent(String step, long classCount, long processedBytes, long totalBytes,
+			long elapsedMillis, int findingCount) {
+		// CHECKSTYLE:ON
+		super();
+		this.step = step;
+		this.classCount = classCount;
+		this.processedBytes = processedBytes;
+		this.totalBytes = totalBytes;
+		this.elapsedMillis = elapsedMillis;
+		this.findingCount = findingCount;
+	}
+
+	/**
+	 * @return Etape en cours (INIT_ANALYSIS, LOCAL_ANALYSIS, PRIVATE_INDEXATION_AND_ANALYSIS,
+	 * PUBLIC_INDEXATION, PUBLIC_ANALYSIS), ou null avant la première étape
+	 */
+	public String getStep() {
+		return step;
+	}
+
+	/**
+	 * @return Nombre de classes lues depuis le début, toutes étapes confondues
+	 */
+	public long getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * @return Taille des classes traitées depuis le début, toutes étapes confondues
+	 */
+	public long getProcessedBytes() {
+		return processedBytes;
+	}
+
+	/**
+	 * @return Taille estimée des classes à traiter pour toutes les étapes
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return Durée écoulée depuis le début de l'analyse en millisecondes
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return Nombre de suspects reportés depuis le début
+	 */
+	public int getFindingCount() {
+		return findingCount;
+	}
+
+	/**
+	 * @return Pourcentage d'avancement, de 0 à 100
+	 */
+	public int getPercentOfProgress() {
+		if (totalBytes <= 0) {
+			return 0;
+		}
+		return (int) Math.min(100, 100 * processedBytes / totalBytes);
+	}
+
+	/**
+	 * @return Débit en octets de classes par seconde (0 si inconnu)
+	 */
+	public long getBytesPerSecond() {
+		return elapsedMillis > 0 ? processedBytes * 1000 / elapsedMillis : 0;
+	}
+
+	/**
+	 * @return Débit en classes par seconde (0 si inconnu)
+	 */
+	public long getClassesPerSecond() {
+		return elapsedMillis > 0 ? classCount * 1000 / elapsedMillis : 0;
+	}
+
+	/**
+	 * @return Durée restante estimée en millisecondes d'après le débit moyen, ou -1 si inconnue
+	 */
+	public long getEtaMillis() {
+		if (processedBytes <= 0 || totalBytes <= 0) {
+			return -1;
+		}
+		return Math.max(0, totalBytes - processedBytes) * elapsedMillis / processedBytes;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + '[' + step + ", " + getPercentOfProgress() + "%, "
+				+ classCount + " classes, " + processedBytes + '/' + totalBytes + " bytes, "
+				+ getBytesPerSecond() + " bytes/s, eta " + getEtaMillis() + "ms, " + findingCount
+				+ " findings]";
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+/**
+ * Interface de réception des évènements d'avancement détaillés (étape, classes, octets, débit,
+ * durée restante estimée et suspects), appelée à fréquence fixe par un timer et non pour chaque
+ * classe analysée.
+ * @author evernat
+ */
+public interface ProgressEventListener {
+	/**
+	 * Méthode appelée à chaque période, et une dernière fois à la fin de l'analyse.
+	 * Elle est appelée par le thread du timer : elle doit être rapide.
+	 * @param event ProgressEvent
+	 */
+	void onProgress(ProgressEvent event);
+}
@@ -26,7 +26,7 @@ package dcd;
  */
 public interface ProgressListener {
 	/**
-	 * Méthode appelée sur un évènement de progression.
+	 * Méthode appelée sur un évènement de progression, par un timer lorsque le pourcentage change.
 	 * @param percentOfProgress int
 	 */
 	void onProgress(int percentOfProgress);
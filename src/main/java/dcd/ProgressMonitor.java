@@ -0,0 +1,103 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Compteurs d'avancement de l'analyse, publiés à fréquence fixe par un timer.
+ * <br/>Le thread d'analyse ne fait que mettre à jour les compteurs (un seul thread écrit) :
+ * les listeners ne sont pas appelés pour chaque classe.
+ * @author evernat
+ */
+class ProgressMonitor {
+	private final ProgressListener progressListener;
+	private final ProgressEventListener progressEventListener;
+	private final Report report;
+	private final long startMillis = System.currentTimeMillis();
+	private volatile long totalBytes;
+	private volatile long processedBytes;
+	private volatile long classCount;
+	private volatile String step;
+	private int lastPercentOfProgress = -1;
+	private Timer timer;
+
+	ProgressMonitor(ProgressListener progressListener,
+			ProgressEventListener progressEventListener, Report report) {
+		super();
+		this.progressListener = progressListener;
+		this.progressEventListener = progressEventListener;
+		this.report = report;
+	}
+
+	void start(long periodMillis) {
+		timer = new Timer("dcd-progress", true);
+		timer.scheduleAtFixedRate(new TimerTask() {
+			/** {@inheritDoc} */
+			@Override
+			public void run() {
+				publish();
+			}
+		}, periodMillis, periodMillis);
+	}
+
+	void stop() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+		// évènement final, avec les compteurs de fin d'analyse
+		publish();
+	}
+
+	// appelée par le timer, puis par le thread d'analyse après l'arrêt du timer
+	synchronized void publish() {
+		final ProgressEvent event = new ProgressEvent(step, classCount, processedBytes,
+				totalBytes, System.currentTimeMillis() - startMillis,
+				report.getReportedSuspectCount());
+		if (progressListener != null && event.getPercentOfProgress() != lastPercentOfProgress) {
+			lastPercentOfProgress = event.getPercentOfProgress();
+			progressListener.onProgress(lastPercentOfProgress);
+		}
+		if (progressEventListener != null) {
+			progressEventListener.onProgress(event);
+		}
+	}
+
+	void addTotalBytes(long bytes) {
+		totalBytes += bytes;
+	}
+
+	void multiplyTotalBytes(int multiplier) {
+		totalBytes *= multiplier;
+	}
+
+	void classProcessed(long bytes) {
+		classCount++;
+		processedBytes += bytes;
+	}
+
+	void addProcessedBytes(long bytes) {
+		processedBytes += bytes;
+	}
+
+	void setStep(String step) {
+		this.step = step;
+	}
+}
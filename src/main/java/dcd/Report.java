@@ -17,174 +17,659 @@
  */
 package dcd;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
 
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.LocalVariableNode;
 import org.objectweb.asm.tree.MethodNode;
 
 /**
- * Affichage et export xml des résultats d'analyses.
+ * Transmission des résultats d'analyses et des messages de log aux sorties du rapport
+ * (console, xml, JSON Lines, binaire et sorties ajoutées, voir {@link ReportSink}).
+ * <br/>Les résultats et les messages de log sont écrits par un thread dédié, alimenté par une file
+ * bornée, pour que l'analyse ne soit pas bloquée par les entrées/sorties disque ou console.
  * @author evernat
  */
 class Report {
-	private static final String XML_INDENT = "  ";
-	// retour à la ligne xml normalisé (http://www.w3.org/TR/xml11/#sec-line-ends)
-	private static final String XML_END_OF_LINE = "\n";
-	private final OutputStream output;
-	private final XMLStreamWriter xmlStreamWriter;
+	private static final int QUEUE_CAPACITY = 4096;
+	private static final Object END_OF_REPORT = new Object();
+	// la file contient des Finding, des String (messages de log)
+	// et des Integer (ordre des résultats suivants, voir setFindingOrder)
+	private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	// writtenCount, writerException et writerDead sont protégés par writtenLock
+	private final Object writtenLock = new Object();
+	private long submittedCount;
+	private long writtenCount;
+	private Throwable writerException;
+	// true si le thread d'écriture s'est arrêté avant la fin du rapport (Error d'une sortie)
+	private boolean writerDead;
+	private volatile int maxQueueDepth;
+	private Thread writerThread;
+	private final List<ReportSink> sinks = new ArrayList<>();
+	private final XmlReportSink xmlReportSink;
+	private final JsonLinesReportSink jsonLinesReportSink;
+	private final BinaryReportSink binaryReportSink;
+	private boolean memberInfosNeeded;
+	// lue par le thread du rapport
+	private volatile TraceWriter traceWriter;
+	private final Baseline baseline;
+	private int baselineMatchCount;
+	// lu par le timer d'avancement, écrit par le seul thread d'analyse
+	private volatile int reportedSuspectCount;
+	// suspects reportés par type de résultat, seulement pour le MBean (null sinon)
+	private volatile AtomicIntegerArray reportedCountsByKind;
 
 	Report(File xmlReportFileIfNeeded) throws XMLStreamException, IOException {
+		this(xmlReportFileIfNeeded, null, null, null, null, true);
+	}
+
+	/**
+	 * Constructeur.
+	 * @param xmlReportFileIfNeeded Fichier du rapport xml ou null
+	 * @param jsonReportFileIfNeeded Fichier du rapport JSON Lines ou null
+	 * @param binaryReportFileIfNeeded Fichier du rapport binaire ou null
+	 * @param resumePositions Positions des rapports xml, json et binaire pour une reprise,
+	 * ou null si pas de reprise (voir getPositions)
+	 * @param baseline Suspects déjà connus à ne pas reporter, ou null
+	 * @param findingsInConsole false si les résultats ne sont pas affichés dans la console
+	 * même sans rapport xml (worker en mode shard, le reducer les affichant)
+	 * @throws XMLStreamException e
+	 * @throws IOException e
+	 */
+	Report(File xmlReportFileIfNeeded, File jsonReportFileIfNeeded,
+			File binaryReportFileIfNeeded, long[] resumePositions, Baseline baseline,
+			boolean findingsInConsole) throws XMLStreamException, IOException {
 		super();
-		if (xmlReportFileIfNeeded == null) {
-			output = null;
-			xmlStreamWriter = null;
-		} else {
-			if (xmlReportFileIfNeeded.getParentFile() != null
-					&& !xmlReportFileIfNeeded.getParentFile().mkdirs()
-					&& !xmlReportFileIfNeeded.getParentFile().exists()) {
-				throw new IOException("Parent directory of xmlReportFile can't be created: "
-						+ xmlReportFileIfNeeded.getPath());
-			}
-			output = new BufferedOutputStream(new FileOutputStream(xmlReportFileIfNeeded),
-					64 * 1024);
-			final XMLOutputFactory factory = XMLOutputFactory.newInstance();
-			// Output destination can be specified with an OutputStream or Writer.
-			xmlStreamWriter = factory.createXMLStreamWriter(output);
-			//		String url = "http://url/";
-			//      xmlStreamWriter.setPrefix("date", url + "date");
-
-			xmlStreamWriter.writeStartDocument(); // writes XML declaration
-			xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
-			xmlStreamWriter
-					.writeComment(' ' + DcdHelper.APPLICATION_NAME + ", http://dcd.dev.java.net ");
-			xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
-			final String root = "dcd";
-			//        String doctype =
-			//            "<!DOCTYPE " + root + " SYSTEM \"" + url + "xml/cd.dtd\">";
-			//        xsm.writeDTD(doctype);
-			//        xsm.writeProcessingInstruction(
-			//            "xml-stylesheet", "type=\"text/xsl\" href=\"cd.xslt\"");
-			xmlStreamWriter.writeStartElement(root);
-			xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
-			//        xsm.writeDefaultNamespace(url + "music");
-			//        xsm.writeNamespace("date", url + "xml/date.xsd");
-			//        xsm.writeNamespace("xsi", "http://www.w3.org/1999/XMLSchema-instance");
-			//        xsm.writeAttribute("xsi:schemaLocation",
-			//            url + "music " + url + "xml/cd.xsd " +
-			//            url + "date " + url + "xml/date.xsd");
-			// xmlStreamWriter.writeAttribute("year", "2008");
+		this.baseline = baseline;
+		jsonLinesReportSink = jsonReportFileIfNeeded != null
+				? new JsonLinesReportSink(jsonReportFileIfNeeded,
+						resumePositions != null ? resumePositions[1] : -1)
+				: null;
+		binaryReportSink = binaryReportFileIfNeeded != null
+				? new BinaryReportSink(binaryReportFileIfNeeded,
+						resumePositions != null ? resumePositions[2] : -1)
+				: null;
+		xmlReportSink = xmlReportFileIfNeeded != null
+				? new XmlReportSink(xmlReportFileIfNeeded,
+						resumePositions != null ? resumePositions[0] : -1)
+				: null;
+		if (jsonLinesReportSink != null) {
+			sinks.add(jsonLinesReportSink);
+		}
+		if (binaryReportSink != null) {
+			sinks.add(binaryReportSink);
+		}
+		// les résultats sont affichés dans la console s'il n'y a pas de rapport xml
+		sinks.add(new ConsoleReportSink(System.out, findingsInConsole && xmlReportSink == null));
+		if (xmlReportSink != null) {
+			sinks.add(xmlReportSink);
+		}
+		// visibilité et taille du bytecode des membres pour les rapports structurés
+		memberInfosNeeded = jsonLinesReportSink != null || binaryReportSink != null;
+	}
+
+	/**
+	 * Ajoute une sortie au rapport, avant le premier résultat.
+	 * @param sink ReportSink
+	 */
+	void addSink(ReportSink sink) {
+		assert sink != null;
+		if (writerThread != null) {
+			throw new IllegalStateException("Report sinks must be added before the analysis");
+		}
+		sinks.add(sink);
+		// une sortie ajoutée peut utiliser toutes les informations des résultats
+		memberInfosNeeded = true;
+	}
+
+	/**
+	 * Thread d'écriture des résultats, jusqu'à la fin du rapport.
+	 */
+	private class ReportWriter implements Runnable {
+		ReportWriter() {
+			super();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void run() {
+			boolean endOfReport = false;
+			try {
+				Object element = queue.take();
+				long unflushedCount = 0;
+				long batchStart = 0;
+				while (element != END_OF_REPORT) {
+					try {
+						if (unflushedCount == 0 && traceWriter != null) {
+							batchStart = TraceWriter.start();
+						}
+						write(element);
+						unflushedCount++;
+						if (queue.isEmpty()) {
+							final Object flushEvent = FlightRecorderEvents
+									.begin(FlightRecorderEvents.Type.REPORT_FLUSH);
+							for (final ReportSink sink : sinks) {
+								sink.flush();
+							}
+							FlightRecorderEvents.commit(flushEvent, unflushedCount, sinks.size());
+							if (traceWriter != null) {
+								traceWriter.span("report", "write " + unflushedCount, batchStart);
+							}
+							unflushedCount = 0;
+						}
+					} catch (final IOException | RuntimeException e) {
+						// l'exception est relancée dans le thread d'analyse au prochain résultat
+						synchronized (writtenLock) {
+							if (writerException == null) {
+								writerException = e;
+							}
+						}
+					}
+					synchronized (writtenLock) {
+						writtenCount++;
+						writtenLock.notifyAll();
+					}
+					element = queue.take();
+				}
+				endOfReport = true;
+			} catch (final InterruptedException e) {
+				// arrêt du thread
+				Thread.currentThread().interrupt();
+			} catch (final Error e) {
+				// par exemple une AssertionError d'un FindingListener :
+				// l'erreur est relancée dans le thread d'analyse
+				synchronized (writtenLock) {
+					if (writerException != null) {
+						e.addSuppressed(writerException);
+					}
+					writerException = e;
+				}
+			} finally {
+				if (!endOfReport) {
+					// l'analyse ne doit plus attendre l'écriture des résultats
+					synchronized (writtenLock) {
+						writerDead = true;
+						writtenLock.notifyAll();
+					}
+				}
+			}
 		}
 	}
 
 	void close(long durationMillis, int suspectCount, int analyzedClassCount, File xmlReportFile)
 			throws IOException, XMLStreamException {
-		log("Duration: " + durationMillis + "ms");
-		log(suspectCount + " suspect methods (or fields or variables), " + analyzedClassCount
-				+ " analyzed classes");
-		if (xmlReportFile != null) {
-			log("Xml report written to " + xmlReportFile.getPath());
+		try {
+			// les résultats en attente sont écrits avant le résumé
+			stopWriter();
+			writeLog("Duration: " + durationMillis + "ms");
+			writeLog(suspectCount + " suspect methods (or fields or variables), "
+					+ analyzedClassCount + " analyzed classes");
+			if (baseline != null) {
+				writeLog(baselineMatchCount + " suspects not reported, out of " + baseline.size()
+						+ " in baselineFile");
+			}
+			if (xmlReportFile != null) {
+				writeLog("Xml report written to " + xmlReportFile.getPath());
+			}
+			writeLog("");
+		} catch (final Throwable e) {
+			// les sorties sont fermées pour libérer les fichiers, puis l'erreur est relancée
+			try {
+				closeSinks(durationMillis, suspectCount, analyzedClassCount);
+			} catch (final IOException | RuntimeException e2) {
+				e.addSuppressed(e2);
+			}
+			throw e;
 		}
-		log("");
+		closeSinks(durationMillis, suspectCount, analyzedClassCount);
+	}
 
-		if (xmlStreamWriter != null) {
-			try {
+	private void closeSinks(long durationMillis, int suspectCount, int analyzedClassCount)
+			throws IOException {
+		final long start = traceWriter != null ? TraceWriter.start() : 0;
+		IOException exception = null;
+		try {
+			for (final ReportSink sink : sinks) {
+				// chaque sortie est fermée même si la fermeture d'une autre a échoué
 				try {
-					xmlStreamWriter.writeCharacters(XML_INDENT);
-					xmlStreamWriter.writeStartElement("summary");
-					xmlStreamWriter.writeAttribute("durationMillis",
-							String.valueOf(durationMillis));
-					xmlStreamWriter.writeAttribute("suspectCount", String.valueOf(suspectCount));
-					xmlStreamWriter.writeAttribute("analyzedClassCount",
-							String.valueOf(analyzedClassCount));
-					xmlStreamWriter.writeEndElement();
-					xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
-
-					xmlStreamWriter.writeEndElement();
-					xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
-				} finally {
-					xmlStreamWriter.close();
+					sink.close(durationMillis, suspectCount, analyzedClassCount);
+				} catch (final IOException e) {
+					if (exception == null) {
+						exception = e;
+					} else {
+						exception.addSuppressed(e);
+					}
 				}
-			} finally {
-				output.close();
 			}
+		} finally {
+			if (traceWriter != null) {
+				traceWriter.span("report", "close", start);
+			}
+		}
+		if (exception != null) {
+			throw exception;
 		}
 	}
 
-	void reportDeadCodeSuspects(boolean publicDeadCode, String asmClassName, Set<String> descs)
-			throws XMLStreamException {
-		if (descs.isEmpty()) {
-			// analyzeViewFiles peut avoir laisser des listes vides
+	private void stopWriter() throws XMLStreamException {
+		if (writerThread == null) {
 			return;
 		}
-		final String type = publicDeadCode ? "publicDeadCode" : "privateDeadCode";
+		try {
+			flush();
+		} finally {
+			// le thread d'écriture est arrêté même si une écriture a échoué,
+			// avant la fermeture des sorties
+			put(END_OF_REPORT);
+			boolean interrupted = false;
+			try {
+				while (writerThread.isAlive()) {
+					try {
+						writerThread.join();
+					} catch (final InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			} finally {
+				writerThread = null;
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Attend que les résultats déjà transmis soient écrits.
+	 * @throws XMLStreamException e
+	 */
+	void flush() throws XMLStreamException {
+		boolean interrupted = false;
+		synchronized (writtenLock) {
+			while (writtenCount < submittedCount && !writerDead) {
+				try {
+					writtenLock.wait();
+				} catch (final InterruptedException e) {
+					// même si l'analyse est interrompue, les résultats transmis sont écrits
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		checkWriterException();
+	}
+
+	private void checkWriterException() throws XMLStreamException {
+		final Throwable exception;
+		final boolean dead;
+		synchronized (writtenLock) {
+			exception = writerException;
+			dead = writerDead;
+			if (!(exception instanceof Error)) {
+				// une Error est relancée à chaque appel, le thread d'écriture étant arrêté
+				writerException = null;
+			}
+		}
+		if (exception instanceof IOException) {
+			throw new XMLStreamException((IOException) exception);
+		} else if (exception instanceof RuntimeException) {
+			throw (RuntimeException) exception;
+		} else if (exception instanceof Error) {
+			throw (Error) exception;
+		} else if (dead) {
+			throw new IllegalStateException("Report writer thread stopped");
+		}
+	}
+
+	private boolean isWriterDead() {
+		synchronized (writtenLock) {
+			return writerDead;
+		}
+	}
+
+	int getQueueDepth() {
+		return queue.size();
+	}
+
+	int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * Définit la trace recevant les spans d'écriture du rapport, avant le premier résultat.
+	 * @param traceWriter TraceWriter ou null
+	 */
+	void setTraceWriter(TraceWriter traceWriter) {
+		this.traceWriter = traceWriter;
+	}
+
+	/**
+	 * Compte les suspects reportés par type de résultat pour le MBean, avant le premier résultat.
+	 */
+	void enableMetrics() {
+		reportedCountsByKind = new AtomicIntegerArray(Finding.Kind.values().length);
+	}
+
+	boolean isMemberInfosNeeded() {
+		return memberInfosNeeded;
+	}
+
+	/**
+	 * Positions actuelles des rapports xml, json et binaire (-1 si absent), pour une reprise.
+	 * @return long[]
+	 * @throws IOException e
+	 * @throws XMLStreamException e
+	 */
+	long[] getPositions() throws IOException, XMLStreamException {
+		flush();
+		final long[] positions = { -1, -1, -1 };
+		if (xmlReportSink != null) {
+			positions[0] = xmlReportSink.getPosition();
+		}
+		if (jsonLinesReportSink != null) {
+			positions[1] = jsonLinesReportSink.getPosition();
+		}
+		if (binaryReportSink != null) {
+			positions[2] = binaryReportSink.getPosition();
+		}
+		return positions;
+	}
+
+	int reportDeadCodeSuspects(boolean publicDeadCode, String asmClassName,
+			List<Finding.Member> members) throws XMLStreamException {
 		final String className = Type.getObjectType(asmClassName).getClassName();
-		final String msg = (publicDeadCode ? "Public suspects in class "
-				: "Private suspects in class ") + className + ':';
-		final String msg2 = '\t' + descs.toString();
-		reportWarning(type, className, msg, msg2);
+		return reportWarning(new Finding(publicDeadCode ? Finding.Kind.PUBLIC_DEAD_CODE
+				: Finding.Kind.PRIVATE_DEAD_CODE, className, null, members));
 	}
 
-	void reportUselessInitializations(String className, Set<String> fields)
+	int reportUselessInitializations(String className, Set<String> fields)
 			throws XMLStreamException {
-		final String msg = "Useless initializations in class " + className + ':';
-		final String msg2 = '\t' + fields.toString();
-		reportWarning("uselessInitialization", className, msg, msg2);
+		return reportWarning(new Finding(Finding.Kind.USELESS_INITIALIZATION, className, null,
+				createMembers(fields)));
+	}
+
+	/**
+	 * Transmet un résultat déjà créé, par exemple gardé par une {@link AnalysisSession}.
+	 * @param finding Finding
+	 * @return Nombre de suspects reportés
+	 * @throws XMLStreamException e
+	 */
+	int reportFinding(Finding finding) throws XMLStreamException {
+		return reportWarning(finding);
 	}
 
-	void reportDeadLocalVariables(String className, MethodNode methodNode,
-			Set<LocalVariableNode> localVariables) throws XMLStreamException {
-		final Set<String> names = new LinkedHashSet<>(localVariables.size());
+	static Finding createDeadLocalVariables(String className, MethodNode methodNode,
+			Set<LocalVariableNode> localVariables) {
+		final List<Finding.Member> members = new ArrayList<>(localVariables.size());
 		for (final LocalVariableNode localVariable : localVariables) {
-			names.add(localVariable.name);
+			members.add(new Finding.Member(localVariable.name, localVariable.desc, null, -1));
 		}
-		final String msg = "Local suspects in class " + className + " in method "
-				+ getMethodDescription(methodNode) + ':';
-		final String msg2 = '\t' + names.toString();
-		reportWarning("deadLocalVariable", className, msg, msg2);
+		return new Finding(Finding.Kind.DEAD_LOCAL_VARIABLE, className,
+				getMethodDescription(methodNode), Collections.unmodifiableList(members));
 	}
 
-	void reportSelfAssignments(String className, MethodNode methodNode, Set<String> selfAssignments)
-			throws XMLStreamException {
-		final String msg = "Self assignments in class " + className + " in method "
-				+ getMethodDescription(methodNode) + ':';
-		final String msg2 = '\t' + selfAssignments.toString();
-		reportWarning("selfAssignment", className, msg, msg2);
+	static Finding createSelfAssignments(String className, MethodNode methodNode,
+			Set<String> selfAssignments) {
+		return new Finding(Finding.Kind.SELF_ASSIGNMENT, className,
+				getMethodDescription(methodNode), createMembers(selfAssignments));
 	}
 
-	void reportStringToString(String className, MethodNode methodNode) throws XMLStreamException {
-		final String msg = "Call of toString() on String in class " + className + " in method "
-				+ getMethodDescription(methodNode);
-		reportWarning("stringToString", className, msg, null);
+	static Finding createStringToString(String className, MethodNode methodNode) {
+		return new Finding(Finding.Kind.STRING_TO_STRING, className,
+				getMethodDescription(methodNode),
+				Collections.singletonList(new Finding.Member(methodNode.name, methodNode.desc,
+						MemberInfos.getAccessVisibility(methodNode.access), -1)));
 	}
 
-	private void reportWarning(String type, String className, String msg, String msg2)
-			throws XMLStreamException {
-		if (xmlStreamWriter == null) {
-			log(msg);
-			if (msg2 != null) {
-				log(msg2);
+	/**
+	 * Enregistrement du rapport binaire d'un worker en mode shard.
+	 */
+	private static final class ShardRecord implements Comparable<ShardRecord> {
+		final String className;
+		final String type;
+		final String method;
+		final Finding.Member member;
+		private final int order;
+		private final int worker;
+		private final int sequence;
+
+		ShardRecord(BinaryReportReader reader, int worker) {
+			super();
+			this.className = reader.getField(BinaryReportReader.CLASS_FIELD);
+			this.type = reader.getField(BinaryReportReader.TYPE_FIELD);
+			this.method = reader.getField(BinaryReportReader.METHOD_FIELD);
+			this.member = new Finding.Member(reader.getField(BinaryReportReader.MEMBER_FIELD),
+					reader.getField(BinaryReportReader.DESCRIPTOR_FIELD),
+					reader.getField(BinaryReportReader.VISIBILITY_FIELD),
+					reader.getBytecodeSize());
+			this.order = reader.getOrder();
+			this.worker = worker;
+			this.sequence = reader.getSequence();
+		}
+
+		boolean isSameFinding(ShardRecord record) {
+			return className.equals(record.className) && type.equals(record.type)
+					&& (method == null ? record.method == null : method.equals(record.method));
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int compareTo(ShardRecord record) {
+			if (order != record.order) {
+				return Integer.compare(order, record.order);
+			} else if (worker != record.worker) {
+				return Integer.compare(worker, record.worker);
 			}
-		} else {
-			xmlStreamWriter.writeCharacters(XML_INDENT);
-			xmlStreamWriter.writeStartElement(type);
-			xmlStreamWriter.writeAttribute("className", className);
-			xmlStreamWriter.writeCharacters(msg);
-			if (msg2 != null) {
-				xmlStreamWriter.writeCharacters(msg2);
+			return Integer.compare(sequence, record.sequence);
+		}
+	}
+
+	/**
+	 * Transmet aux sorties les résultats des rapports binaires des workers en mode shard,
+	 * sans les suspects de la baseline.
+	 * <br/>Les résultats et leurs membres sont transmis dans l'ordre d'une analyse sans shard
+	 * (ordre des packages dans le parcours des répertoires, puis ordre de l'analyse de chaque
+	 * package), si les workers ont parcouru les répertoires dans le même ordre que cette analyse.
+	 * @param binaryReportFiles Rapports binaires écrits par les workers
+	 * @return Nombre de suspects reportés
+	 * @throws IOException e
+	 * @throws XMLStreamException e
+	 */
+	int reportShardFindings(List<File> binaryReportFiles) throws IOException, XMLStreamException {
+		// les rapports binaires sont triés par classe et membre : on reprend l'ordre de l'analyse
+		final List<ShardRecord> records = new ArrayList<>();
+		for (int i = 0; i < binaryReportFiles.size(); i++) {
+			final BinaryReportReader reader = new BinaryReportReader(binaryReportFiles.get(i));
+			try {
+				while (reader.next()) {
+					records.add(new ShardRecord(reader, i));
+				}
+			} finally {
+				reader.close();
 			}
-			xmlStreamWriter.writeEndElement();
-			xmlStreamWriter.writeCharacters(XML_END_OF_LINE); // retour à la ligne pour lisibilité
+		}
+		Collections.sort(records);
+		// les enregistrements consécutifs d'une même classe, type et méthode forment un résultat
+		int count = 0;
+		int start = 0;
+		for (int i = 1; i <= records.size(); i++) {
+			if (i == records.size() || !records.get(i).isSameFinding(records.get(start))) {
+				final ShardRecord record = records.get(start);
+				final List<Finding.Member> members = new ArrayList<>(i - start);
+				for (final ShardRecord memberRecord : records.subList(start, i)) {
+					members.add(memberRecord.member);
+				}
+				count += reportWarning(new Finding(getKind(record.type), record.className,
+						record.method, Collections.unmodifiableList(members)));
+				start = i;
+			}
+		}
+		return count;
+	}
+
+	private static Finding.Kind getKind(String name) throws XMLStreamException {
+		for (final Finding.Kind kind : Finding.Kind.values()) {
+			if (kind.getName().equals(name)) {
+				return kind;
+			}
+		}
+		throw new XMLStreamException("Unknown finding type in binary report: " + name);
+	}
+
+	private static List<Finding.Member> createMembers(Set<String> names) {
+		final List<Finding.Member> members = new ArrayList<>(names.size());
+		for (final String name : names) {
+			members.add(new Finding.Member(name, null, null, -1));
+		}
+		return Collections.unmodifiableList(members);
+	}
+
+	/**
+	 * Transmet un résultat aux sorties, sans les suspects de la baseline.
+	 * @param finding Finding
+	 * @return Nombre de suspects reportés
+	 * @throws XMLStreamException e
+	 */
+	private int reportWarning(Finding finding) throws XMLStreamException {
+		checkWriterException();
+		final Finding reportedFinding = baseline != null ? filterBaseline(finding) : finding;
+		if (reportedFinding == null) {
+			return 0;
+		}
+		submit(reportedFinding);
+		final int count = reportedFinding.getMembers().size();
+		reportedSuspectCount += count;
+		final AtomicIntegerArray countsByKind = reportedCountsByKind;
+		if (countsByKind != null) {
+			countsByKind.addAndGet(finding.getKind().ordinal(), count);
+		}
+		return count;
+	}
+
+	/**
+	 * @return Nombre de suspects reportés depuis le début de l'analyse
+	 */
+	int getReportedSuspectCount() {
+		return reportedSuspectCount;
+	}
+
+	/**
+	 * @param kind Type de résultat
+	 * @return Nombre de suspects de ce type reportés depuis le début de l'analyse
+	 */
+	int getReportedSuspectCount(Finding.Kind kind) {
+		final AtomicIntegerArray countsByKind = reportedCountsByKind;
+		return countsByKind != null ? countsByKind.get(kind.ordinal()) : 0;
+	}
+
+	// null si tous les suspects du résultat sont dans la baseline
+	private Finding filterBaseline(Finding finding) {
+		final List<Finding.Member> members = finding.getMembers();
+		List<Finding.Member> reportedMembers = null;
+		for (int i = 0; i < members.size(); i++) {
+			final Finding.Member member = members.get(i);
+			if (baseline.contains(finding.getKind().getName(), finding.getClassName(),
+					finding.getMethod(), member.getName(), member.getDescriptor())) {
+				if (reportedMembers == null) {
+					reportedMembers = new ArrayList<>(members.subList(0, i));
+				}
+				baselineMatchCount++;
+			} else if (reportedMembers != null) {
+				reportedMembers.add(member);
+			}
+		}
+		if (reportedMembers == null) {
+			return finding;
+		} else if (reportedMembers.isEmpty()) {
+			return null;
+		}
+		return new Finding(finding.getKind(), finding.getClassName(), finding.getMethod(),
+				Collections.unmodifiableList(reportedMembers));
+	}
+
+	/**
+	 * Définit l'ordre des résultats suivants dans le rapport binaire : numéro du package dans
+	 * le parcours des répertoires d'un worker en mode shard, identique dans tous les workers.
+	 * Le reducer transmet ainsi les résultats des workers dans l'ordre d'une analyse sans shard.
+	 * @param order Ordre du package
+	 */
+	void setFindingOrder(int order) {
+		if (binaryReportSink != null) {
+			// par la file, pour s'appliquer aux résultats suivants dans le thread d'écriture
+			submit(order);
+		}
+	}
+
+	void log(String msg) {
+		// les messages de log passent par la même file pour rester dans l'ordre des résultats
+		submit(msg);
+	}
+
+	private void submit(Object element) {
+		if (writerThread == null) {
+			writerThread = new Thread(new ReportWriter(), "dcd-report-writer");
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+		if (put(element)) {
+			submittedCount++;
+		}
+		final int queueDepth = queue.size();
+		if (queueDepth > maxQueueDepth) {
+			maxQueueDepth = queueDepth;
+		}
+	}
+
+	// retourne false si le thread d'écriture est arrêté, l'élément ne pouvant plus être écrit
+	private boolean put(Object element) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				if (isWriterDead()) {
+					return false;
+				}
+				try {
+					// attente limitée, la file pleine n'étant plus vidée si le thread s'arrête
+					if (queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				} catch (final InterruptedException e) {
+					// même si l'analyse est interrompue, le résultat est écrit
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// appelée dans le thread d'écriture
+	private void write(Object element) throws IOException {
+		if (element instanceof String) {
+			writeLog((String) element);
+			return;
+		} else if (element instanceof Integer) {
+			binaryReportSink.setOrder((Integer) element);
+			return;
+		}
+		final Finding finding = (Finding) element;
+		for (final ReportSink sink : sinks) {
+			sink.report(finding);
 		}
 	}
 
@@ -193,7 +678,9 @@ class Report {
 				.getMethodDescription(DcdHelper.getMethodKey(methodNode.name, methodNode.desc));
 	}
 
-	private static void log(String msg) {
-		DcdHelper.log(msg);
+	private void writeLog(String msg) throws IOException {
+		for (final ReportSink sink : sinks) {
+			sink.log(msg);
+		}
 	}
 }
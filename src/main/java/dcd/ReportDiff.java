@@ -0,0 +1,105 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Comparaison de deux rapports binaires (paramètre binaryReportFile) avec la méthode main :
+ * affiche les suspects ajoutés (+) et supprimés (-) entre l'ancien et le nouveau rapport.
+ * <br/>Les rapports étant triés, la comparaison est une fusion en temps linéaire,
+ * sans charger les enregistrements en mémoire.
+ * @author evernat
+ */
+public final class ReportDiff {
+	private int addedCount;
+	private int removedCount;
+
+	private ReportDiff() {
+		super();
+	}
+
+	private void diff(BinaryReportReader oldReader, BinaryReportReader newReader)
+			throws IOException {
+		boolean oldAvailable = oldReader.next();
+		boolean newAvailable = newReader.next();
+		while (oldAvailable || newAvailable) {
+			final int diff;
+			if (!oldAvailable) {
+				diff = 1;
+			} else if (!newAvailable) {
+				diff = -1;
+			} else {
+				diff = BinaryReportReader.compareCurrentRecords(oldReader, newReader);
+			}
+			if (diff < 0) {
+				log("- " + format(oldReader));
+				removedCount++;
+				oldAvailable = oldReader.next();
+			} else if (diff > 0) {
+				log("+ " + format(newReader));
+				addedCount++;
+				newAvailable = newReader.next();
+			} else {
+				oldAvailable = oldReader.next();
+				newAvailable = newReader.next();
+			}
+		}
+	}
+
+	private static String format(BinaryReportReader reader) {
+		return Baseline.getFingerprint(reader.getField(BinaryReportReader.TYPE_FIELD),
+				reader.getField(BinaryReportReader.CLASS_FIELD),
+				reader.getField(BinaryReportReader.METHOD_FIELD),
+				reader.getField(BinaryReportReader.MEMBER_FIELD),
+				reader.getField(BinaryReportReader.DESCRIPTOR_FIELD));
+	}
+
+	private static void log(String msg) {
+		DcdHelper.log(msg);
+	}
+
+	/**
+	 * Méthode exécutée pour comparer deux rapports binaires.
+	 * @param args Fichiers de l'ancien et du nouveau rapport
+	 * @throws IOException e
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			log("Arguments required: old and new binary report files (binaryReportFile parameter)");
+			return;
+		}
+		final BinaryReportReader oldReader = new BinaryReportReader(new File(args[0]));
+		try {
+			final BinaryReportReader newReader = new BinaryReportReader(new File(args[1]));
+			try {
+				final ReportDiff reportDiff = new ReportDiff();
+				reportDiff.diff(oldReader, newReader);
+				log(reportDiff.addedCount + " added suspects, " + reportDiff.removedCount
+						+ " removed suspects (" + oldReader.getRecordCount() + " in "
+						+ oldReader.getFile().getName() + ", " + newReader.getRecordCount()
+						+ " in " + newReader.getFile().getName() + ')');
+			} finally {
+				newReader.close();
+			}
+		} finally {
+			oldReader.close();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.IOException;
+
+/**
+ * Interface des sorties du rapport (console, xml, JSON Lines, binaire, mémoire ...),
+ * à ajouter avec {@link DeadCodeDetector#addReportSink(ReportSink)}.
+ * <br/>Les méthodes sont appelées par un seul thread, celui d'écriture du rapport, dans l'ordre
+ * des résultats de l'analyse.
+ * @author evernat
+ */
+public interface ReportSink {
+	/**
+	 * Ecrit un résultat d'analyse.
+	 * @param finding Finding
+	 * @throws IOException e
+	 */
+	void report(Finding finding) throws IOException;
+
+	/**
+	 * Ecrit un message de log de l'analyse (avancement, résumé), ignoré si la sortie n'en a pas
+	 * l'usage.
+	 * @param message String
+	 * @throws IOException e
+	 */
+	void log(String message) throws IOException;
+
+	/**
+	 * Rend visibles les résultats écrits, appelée quand aucun résultat n'est en attente.
+	 * @throws IOException e
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Termine la sortie à la fin de l'analyse.
+	 * @param durationMillis Durée de l'analyse en millisecondes
+	 * @param suspectCount Nombre de méthodes, champs ou variables suspects
+	 * @param analyzedClassCount Nombre de classes analysées
+	 * @throws IOException e
+	 */
+	void close(long durationMillis, int suspectCount, int analyzedClassCount) throws IOException;
+}
@@ -17,19 +17,20 @@
  */
 package dcd;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
 import javax.xml.stream.XMLStreamException;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -40,25 +41,45 @@ import org.objectweb.asm.Type;
  * @author evernat
  */
 class Result {
+	// nombre de classes triées en mémoire avant d'écrire des runs triés sur disque pour le rapport
+	private static final int REPORT_SORT_RUN_SIZE = 100000;
 	// ici, on utilise des Set, ordonnés ou non, car les contenus sont uniques et surtout
 	// car l'utilisation de (Linked)HashSet est ici légèrement plus rapide que ArrayList
 	// (Implementation Patterns p108 à 111)
-	private final Map<String, Set<String>> methodsByClassMap = new HashMap<>();
-	private final Map<String, Set<String>> fieldsByClassMap = new HashMap<>();
+	// (les maps les plus volumineuses peuvent être déchargées sur disque si le budget mémoire est dépassé)
+	private final SpillableSetMap methodsByClassMap = new SpillableSetMap();
+	private final SpillableSetMap fieldsByClassMap = new SpillableSetMap();
 	private final Map<String, String> superClassByClassMap = new HashMap<>();
-	private final Map<String, Set<String>> subClassListByClassMap = new HashMap<>();
+	private final SpillableSetMap subClassListByClassMap = new SpillableSetMap();
 	private final Map<String, Set<String>> javaMethodListByClassMap = new HashMap<>();
+	// succès et échecs du cache des méthodes des classes java, comptés seulement pour le MBean
+	private boolean metricsEnabled;
+	private volatile long javaMethodsHitCount;
+	private volatile long javaMethodsMissCount;
+	// accès et taille du bytecode des membres indexés, seulement pour les rapports structurés
+	private final Map<String, Map<String, Long>> memberInfosByClassMap = new HashMap<>();
 	private final Set<String> javaLangObjectMethods = getJavaMethods(
 			Type.getInternalName(Object.class));
 	private final Report report;
+	// non null si les appels sont enregistrés pour un index partiel au lieu d'être résolus
+	private Set<String> recordedMethodCalls;
+	private Set<String> recordedFieldCalls;
+	// non null si les modifications du contexte d'analyse sont journalisées pour une reprise
+	private Checkpoint checkpoint;
 
 	/**
 	 * Implémentation de l'interface MethodVisitor d'ASM utilisée lors de l'analyse
 	 * (parcours des appels de méthodes et d'attributs).
 	 */
 	private class CallersMethodVisitor extends MethodVisitor {
-		CallersMethodVisitor() {
+		// non null si les appels sont aussi gardés pour une AnalysisSession
+		private final Set<String> methodCallKeys;
+		private final Set<String> fieldCallKeys;
+
+		CallersMethodVisitor(Set<String> methodCallKeys, Set<String> fieldCallKeys) {
 			super(Opcodes.ASM4);
+			this.methodCallKeys = methodCallKeys;
+			this.fieldCallKeys = fieldCallKeys;
 		}
 
 		/** {@inheritDoc} */
@@ -69,6 +90,9 @@ class Result {
 			if (!DcdHelper.isJavaClass(owner)) {
 				//log("\t" + owner + " " + name + " " + desc);
 				methodCalled(owner, name, desc);
+				if (methodCallKeys != null) {
+					methodCallKeys.add(PartialIndex.getCallKey(owner, name, desc));
+				}
 			}
 		}
 
@@ -83,6 +107,9 @@ class Result {
 			if (isFieldRead(opcode) && !DcdHelper.isJavaClass(owner)) {
 				//log("\t" + owner + " " + name + " " + desc);
 				fieldCalled(owner, name, desc);
+				if (fieldCallKeys != null) {
+					fieldCallKeys.add(PartialIndex.getCallKey(owner, name, desc));
+				}
 			}
 		}
 
@@ -226,7 +253,20 @@ class Result {
 	}
 
 	MethodVisitor createCallersMethodVisitor() {
-		return new CallersMethodVisitor();
+		return new CallersMethodVisitor(null, null);
+	}
+
+	/**
+	 * @param methodCallKeys Set complété avec les appels de méthodes, au format
+	 * PartialIndex.getCallKey
+	 * @param fieldCallKeys Set complété avec les lectures de champs, au même format
+	 * @return MethodVisitor résolvant les appels comme {@link #createCallersMethodVisitor()}
+	 * et les ajoutant aux Sets, pour les rejouer avec {@link #methodsCalled(String[])}
+	 * et {@link #fieldsCalled(String[])}
+	 */
+	MethodVisitor createCallersMethodVisitor(Set<String> methodCallKeys,
+			Set<String> fieldCallKeys) {
+		return new CallersMethodVisitor(methodCallKeys, fieldCallKeys);
 	}
 
 	void clear() {
@@ -235,13 +275,126 @@ class Result {
 		this.superClassByClassMap.clear();
 		this.subClassListByClassMap.clear();
 		this.javaMethodListByClassMap.clear();
+		this.memberInfosByClassMap.clear();
+		this.recordedMethodCalls = null;
+		this.recordedFieldCalls = null;
+	}
+
+	/**
+	 * @return Nombre d'entrées de chaque map du contexte d'analyse (lecture sans synchronisation,
+	 * pour le MBean)
+	 */
+	Map<String, Integer> getMapSizes() {
+		final Map<String, Integer> sizes = new LinkedHashMap<>();
+		sizes.put("methodsByClass", methodsByClassMap.size());
+		sizes.put("fieldsByClass", fieldsByClassMap.size());
+		sizes.put("superClassByClass", superClassByClassMap.size());
+		sizes.put("subClassListByClass", subClassListByClassMap.size());
+		sizes.put("javaMethodListByClass", javaMethodListByClassMap.size());
+		sizes.put("memberInfosByClass", memberInfosByClassMap.size());
+		final Set<String> methodCalls = recordedMethodCalls;
+		final Set<String> fieldCalls = recordedFieldCalls;
+		sizes.put("recordedMethodCalls", methodCalls != null ? methodCalls.size() : 0);
+		sizes.put("recordedFieldCalls", fieldCalls != null ? fieldCalls.size() : 0);
+		return sizes;
+	}
+
+	long getJavaMethodsHitCount() {
+		return javaMethodsHitCount;
+	}
+
+	long getJavaMethodsMissCount() {
+		return javaMethodsMissCount;
+	}
+
+	int spill() throws IOException {
+		// la map des super-classes n'est pas déchargée : une seule entrée de deux String par classe,
+		// alors que les Set des méthodes, des champs et des sous-classes représentent l'essentiel
+		return methodsByClassMap.spill() + fieldsByClassMap.spill()
+				+ subClassListByClassMap.spill();
+	}
+
+	void recordCalls() {
+		// en mode worker, la hiérarchie n'est que partielle :
+		// les appels sont donc enregistrés pour être résolus par le reducer
+		this.recordedMethodCalls = new HashSet<>();
+		this.recordedFieldCalls = new HashSet<>();
+	}
+
+	PartialIndex createPartialIndex(int analyzedClassCount) {
+		return new PartialIndex(methodsByClassMap, fieldsByClassMap, superClassByClassMap,
+				subClassListByClassMap, memberInfosByClassMap,
+				recordedMethodCalls != null ? recordedMethodCalls : new HashSet<String>(),
+				recordedFieldCalls != null ? recordedFieldCalls : new HashSet<String>(),
+				analyzedClassCount);
+	}
+
+	void mergePartialIndex(PartialIndex partialIndex) {
+		// une classe n'est indexée que par un seul worker, mais on fusionne par sécurité
+		mergeSets(partialIndex.getMethodsByClassMap(), methodsByClassMap);
+		mergeSets(partialIndex.getFieldsByClassMap(), fieldsByClassMap);
+		mergeSets(partialIndex.getSubClassListByClassMap(), subClassListByClassMap);
+		superClassByClassMap.putAll(partialIndex.getSuperClassByClassMap());
+		memberInfosByClassMap.putAll(partialIndex.getMemberInfosByClassMap());
+		// les appels ne peuvent être résolus qu'une fois toute la hiérarchie fusionnée
+		recordedMethodCalls.addAll(partialIndex.getMethodCalls());
+		recordedFieldCalls.addAll(partialIndex.getFieldCalls());
+	}
+
+	private static void mergeSets(Map<String, Set<String>> sourceMap,
+			Map<String, Set<String>> targetMap) {
+		for (final Map.Entry<String, Set<String>> entry : sourceMap.entrySet()) {
+			final Set<String> target = targetMap.get(entry.getKey());
+			if (target == null) {
+				targetMap.put(entry.getKey(), entry.getValue());
+			} else {
+				target.addAll(entry.getValue());
+			}
+		}
+	}
+
+	void resolveRecordedCalls() {
+		final Set<String> methodCalls = recordedMethodCalls;
+		final Set<String> fieldCalls = recordedFieldCalls;
+		recordedMethodCalls = null;
+		recordedFieldCalls = null;
+		for (final String callKey : methodCalls) {
+			resolveCall(callKey, methodsByClassMap);
+		}
+		for (final String callKey : fieldCalls) {
+			resolveCall(callKey, fieldsByClassMap);
+		}
+	}
+
+	private void resolveCall(String callKey, Map<String, Set<String>> targetMap) {
+		final String methodKey = PartialIndex.getCallMethodKey(callKey);
+		final int index = methodKey.indexOf(' ');
+		methodCalled(PartialIndex.getCallClassName(callKey), methodKey.substring(0, index),
+				methodKey.substring(index + 1), targetMap);
+	}
+
+	void setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Compte les succès et échecs du cache des méthodes des classes java pour le MBean.
+	 */
+	void enableMetrics() {
+		this.metricsEnabled = true;
 	}
 
 	void registerSuperClass(String asmSuperClassName, String asmClassName) {
+		if (checkpoint != null) {
+			checkpoint.onSuperClass(asmSuperClassName, asmClassName);
+		}
 		this.superClassByClassMap.put(asmClassName, asmSuperClassName);
 	}
 
 	void registerSubClass(String asmSuperClassName, String asmClassName) {
+		if (checkpoint != null) {
+			checkpoint.onSubClass(asmSuperClassName, asmClassName);
+		}
 		Set<String> subClassList = this.subClassListByClassMap.get(asmSuperClassName);
 		if (subClassList == null) {
 			subClassList = new HashSet<>(1);
@@ -250,7 +403,7 @@ class Result {
 		subClassList.add(asmClassName);
 	}
 
-	private Set<String> getAllSubClasses(String className) {
+	Set<String> getAllSubClasses(String className) {
 		Set<String> subClassList = subClassListByClassMap.get(className);
 		if (subClassList == null) {
 			return Collections.emptySet();
@@ -272,27 +425,43 @@ class Result {
 
 	void registerMethods(String asmClassName, Set<String> methods) {
 		if (!methods.isEmpty()) {
+			if (checkpoint != null) {
+				checkpoint.onMethods(asmClassName, methods);
+			}
 			methodsByClassMap.put(asmClassName, methods);
 		}
 	}
 
 	void registerFields(String asmClassName, Set<String> fields) {
 		if (!fields.isEmpty()) {
+			if (checkpoint != null) {
+				checkpoint.onFields(asmClassName, fields);
+			}
 			fieldsByClassMap.put(asmClassName, fields);
 		}
 	}
 
-	void excludeJavaMethods(ClassReader classReader, Set<String> methods) {
+	void registerMemberInfos(String asmClassName, Map<String, Long> memberInfos) {
+		if (!memberInfos.isEmpty()) {
+			if (checkpoint != null) {
+				checkpoint.onMemberInfos(asmClassName, memberInfos);
+			}
+			memberInfosByClassMap.put(asmClassName, memberInfos);
+		}
+	}
+
+	void excludeJavaMethods(String asmSuperClassName, String[] asmInterfaceNames,
+			Set<String> methods) {
 		// premier filtre : si mode public, on exclue
 		// les méthodes qui implémentent ou surchargent une méthode Java,
 		// par exemple actionPerformed, equals, hashCode
 		// (le filtre final sera fait dans filterJavaMethods)
-		if (DcdHelper.isJavaClass(classReader.getSuperName())) {
-			excludeJavaMethods(methods, classReader.getSuperName());
+		if (DcdHelper.isJavaClass(asmSuperClassName)) {
+			excludeJavaMethods(methods, asmSuperClassName);
 		} else {
 			methods.removeAll(javaLangObjectMethods);
 		}
-		for (final String interfaceName : classReader.getInterfaces()) {
+		for (final String interfaceName : asmInterfaceNames) {
 			excludeJavaMethods(methods, interfaceName);
 		}
 	}
@@ -304,6 +473,9 @@ class Result {
 	}
 
 	void filterJavaMethods() {
+		if (checkpoint != null) {
+			checkpoint.onFilterJavaMethods();
+		}
 		for (final Map.Entry<String, Set<String>> entry : subClassListByClassMap.entrySet()) {
 			final String className = entry.getKey();
 			if (!DcdHelper.isJavaClass(className)) {
@@ -325,8 +497,13 @@ class Result {
 	private Set<String> getJavaMethods(String asmClassName) {
 		Set<String> methods = javaMethodListByClassMap.get(asmClassName);
 		if (methods == null) {
+			if (metricsEnabled) {
+				javaMethodsMissCount++;
+			}
 			methods = DcdHelper.getJavaMethods(asmClassName);
 			javaMethodListByClassMap.put(asmClassName, methods);
+		} else if (metricsEnabled) {
+			javaMethodsHitCount++;
 		}
 		return methods;
 	}
@@ -340,17 +517,52 @@ class Result {
 	}
 
 	void methodCalled(String methodKey) {
+		if (checkpoint != null) {
+			checkpoint.onViewMethodCalled(methodKey);
+		}
 		for (final Set<String> methods : methodsByClassMap.values()) {
 			methods.remove(methodKey);
 		}
 	}
 
 	void methodCalled(String className, String name, String desc) {
-		methodCalled(className, name, desc, methodsByClassMap);
+		if (checkpoint != null) {
+			checkpoint.onMethodCalled(className, name, desc);
+		}
+		if (recordedMethodCalls != null) {
+			recordedMethodCalls.add(PartialIndex.getCallKey(className, name, desc));
+		} else {
+			methodCalled(className, name, desc, methodsByClassMap);
+		}
+	}
+
+	void methodsCalled(String[] callKeys) {
+		for (final String callKey : callKeys) {
+			final String methodKey = PartialIndex.getCallMethodKey(callKey);
+			final int index = methodKey.indexOf(' ');
+			methodCalled(PartialIndex.getCallClassName(callKey), methodKey.substring(0, index),
+					methodKey.substring(index + 1));
+		}
+	}
+
+	void fieldsCalled(String[] callKeys) {
+		for (final String callKey : callKeys) {
+			final String methodKey = PartialIndex.getCallMethodKey(callKey);
+			final int index = methodKey.indexOf(' ');
+			fieldCalled(PartialIndex.getCallClassName(callKey), methodKey.substring(0, index),
+					methodKey.substring(index + 1));
+		}
 	}
 
 	void fieldCalled(String className, String name, String desc) {
-		methodCalled(className, name, desc, fieldsByClassMap);
+		if (checkpoint != null) {
+			checkpoint.onFieldCalled(className, name, desc);
+		}
+		if (recordedFieldCalls != null) {
+			recordedFieldCalls.add(PartialIndex.getCallKey(className, name, desc));
+		} else {
+			methodCalled(className, name, desc, fieldsByClassMap);
+		}
 	}
 
 	private void methodCalled(String className, String name, String desc,
@@ -404,39 +616,85 @@ class Result {
 		}
 	}
 
-	int reportDeadCode(boolean publicDeadCode) throws XMLStreamException {
+	int reportDeadCode(boolean publicDeadCode) throws XMLStreamException, IOException {
 		int suspects = 0;
-		// TreeMap pour ordre d'affichage alphabétique par classe
-		for (final Map.Entry<String, Set<String>> entry : new TreeMap<>(methodsByClassMap)
-				.entrySet()) {
-			final String asmClassName = entry.getKey();
-			final Set<String> methods = entry.getValue();
-			final Set<String> fields = fieldsByClassMap.remove(asmClassName);
-			final Set<String> descs = new LinkedHashSet<>(
-					methods.size() + (fields != null ? fields.size() : 0));
-			if (fields != null) {
-				for (final String field : fields) {
-					descs.add(DcdHelper.getFieldDescription(field));
-				}
-				suspects += fields.size();
+		// tri des seuls noms de classes pour l'ordre d'affichage alphabétique par classe,
+		// en mémoire bornée au-delà de REPORT_SORT_RUN_SIZE classes (pas de copie des maps en TreeMap)
+		final ExternalSorter methodClassSorter = sortKeys(methodsByClassMap);
+		try {
+			String asmClassName = methodClassSorter.next();
+			while (asmClassName != null) {
+				final Set<String> methods = methodsByClassMap.get(asmClassName);
+				final Set<String> fields = fieldsByClassMap.remove(asmClassName);
+				suspects += reportDeadCodeSuspects(publicDeadCode, asmClassName,
+						createMembers(asmClassName, fields, methods));
+				asmClassName = methodClassSorter.next();
 			}
-			for (final String method : methods) {
-				descs.add(DcdHelper.getMethodDescription(method));
+		} finally {
+			methodClassSorter.close();
+		}
+		final ExternalSorter fieldClassSorter = sortKeys(fieldsByClassMap);
+		try {
+			String asmClassName = fieldClassSorter.next();
+			while (asmClassName != null) {
+				final Set<String> fields = fieldsByClassMap.get(asmClassName);
+				suspects += reportDeadCodeSuspects(publicDeadCode, asmClassName,
+						createMembers(asmClassName, fields, null));
+				asmClassName = fieldClassSorter.next();
+			}
+		} finally {
+			fieldClassSorter.close();
+		}
+		return suspects;
+	}
+
+	private static ExternalSorter sortKeys(Map<String, Set<String>> map) throws IOException {
+		final ExternalSorter sorter = new ExternalSorter(REPORT_SORT_RUN_SIZE);
+		try {
+			for (final String key : map.keySet()) {
+				sorter.add(key);
 			}
-			report.reportDeadCodeSuspects(publicDeadCode, asmClassName, descs);
-			suspects += methods.size();
-		}
-		for (final Map.Entry<String, Set<String>> entry : new TreeMap<>(fieldsByClassMap)
-				.entrySet()) {
-			final String asmClassName = entry.getKey();
-			final Set<String> fields = entry.getValue();
-			final Set<String> descs = new LinkedHashSet<>(fields.size());
+			sorter.sort();
+		} catch (final IOException e) {
+			sorter.close();
+			throw e;
+		}
+		return sorter;
+	}
+
+	private List<Finding.Member> createMembers(String asmClassName, Set<String> fields,
+			Set<String> methods) {
+		// visibilité et taille du bytecode si elles ont été enregistrées pour les rapports structurés
+		final Map<String, Long> memberInfos = memberInfosByClassMap.get(asmClassName);
+		final List<Finding.Member> members = new ArrayList<>();
+		if (fields != null) {
 			for (final String field : fields) {
-				descs.add(DcdHelper.getFieldDescription(field));
+				members.add(createMember(field, memberInfos));
 			}
-			report.reportDeadCodeSuspects(publicDeadCode, asmClassName, descs);
-			suspects += fields.size();
 		}
-		return suspects;
+		if (methods != null) {
+			for (final String method : methods) {
+				members.add(createMember(method, memberInfos));
+			}
+		}
+		return Collections.unmodifiableList(members);
+	}
+
+	private static Finding.Member createMember(String key, Map<String, Long> memberInfos) {
+		final Long info = memberInfos != null ? memberInfos.get(key) : null;
+		final long value = info != null ? info : MemberInfos.getUnknown();
+		final int index = key.indexOf(' ');
+		return new Finding.Member(key.substring(0, index), key.substring(index + 1),
+				MemberInfos.getVisibility(value), MemberInfos.getBytecodeSize(value));
+	}
+
+	private int reportDeadCodeSuspects(boolean publicDeadCode, String asmClassName,
+			List<Finding.Member> members) throws XMLStreamException {
+		if (members.isEmpty()) {
+			// analyzeViewFiles peut avoir laisser des listes vides
+			return 0;
+		}
+		// les suspects de la baseline ne sont pas reportés ni comptés
+		return report.reportDeadCodeSuspects(publicDeadCode, asmClassName, members);
 	}
 }
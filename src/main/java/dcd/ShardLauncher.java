@@ -0,0 +1,119 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Lancement des processus workers en local pour le mode shard,
+ * chaque worker étant une JVM analysant une part du classpath.
+ * @author evernat
+ */
+final class ShardLauncher {
+	private ShardLauncher() {
+		super();
+	}
+
+	static void launchWorkers(Parameters parameters) throws IOException {
+		final File shardDirectory = parameters.getShardDirectory();
+		if (!shardDirectory.mkdirs() && !shardDirectory.exists()) {
+			throw new IOException("Shard directory can't be created: " + shardDirectory);
+		}
+		final List<Process> processes = new ArrayList<>(parameters.getShardCount());
+		try {
+			for (int i = 0; i < parameters.getShardCount(); i++) {
+				final File partialIndexFile = PartialIndex.getFile(shardDirectory, i);
+				if (partialIndexFile.exists() && !partialIndexFile.delete()) {
+					throw new IOException(partialIndexFile + " can't be deleted");
+				}
+				final File propertiesFile = writeWorkerProperties(parameters, i);
+				processes.add(createProcessBuilder(propertiesFile).start());
+			}
+			for (int i = 0; i < processes.size(); i++) {
+				final int exitValue = processes.get(i).waitFor();
+				if (exitValue != 0) {
+					throw new IOException("Shard worker " + i + " failed with exit value "
+							+ exitValue);
+				}
+			}
+		} catch (final InterruptedException e) {
+			// le reducer est interrompu (par l'IHM par exemple), on garde l'état d'interruption
+			Thread.currentThread().interrupt();
+		} finally {
+			// si une erreur ou une interruption est survenue, les autres workers sont arrêtés
+			for (final Process process : processes) {
+				process.destroy();
+			}
+		}
+	}
+
+	private static File writeWorkerProperties(Parameters parameters, int shardIndex)
+			throws IOException {
+		final Properties properties = parameters.toProperties();
+		properties.put("shardIndex", String.valueOf(shardIndex));
+		final File shardDirectory = parameters.getShardDirectory();
+		if (parameters.getTraceFile() != null) {
+			// une trace par processus, chacun ayant son pid dans la trace
+			properties.put("traceFile",
+					new File(shardDirectory, "shard-" + shardIndex + ".trace.json").getPath());
+		}
+		if (parameters.getCheckpointFile() != null) {
+			// chaque worker a son propre point de reprise
+			properties.put("checkpointFile",
+					parameters.getCheckpointFile().getPath() + '.' + shardIndex);
+		}
+		final File propertiesFile = new File(shardDirectory,
+				"shard-" + shardIndex + ".properties");
+		final OutputStream output = new BufferedOutputStream(
+				new FileOutputStream(propertiesFile));
+		try {
+			properties.store(output, DcdHelper.APPLICATION_NAME);
+		} finally {
+			output.close();
+		}
+		return propertiesFile;
+	}
+
+	private static ProcessBuilder createProcessBuilder(File propertiesFile) {
+		final List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separatorChar + "bin"
+				+ File.separatorChar + "java");
+		// mêmes options mémoire que le reducer, mais pas les agents (debug, profiler, ...)
+		for (final String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (argument.startsWith("-X") && !argument.startsWith("-Xrun")
+					&& !argument.startsWith("-Xdebug")) {
+				command.add(argument);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(DeadCodeDetector.class.getName());
+		command.add(propertiesFile.getPath());
+		final ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.inheritIO();
+		return processBuilder;
+	}
+}
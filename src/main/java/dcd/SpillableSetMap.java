@@ -0,0 +1,452 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map de Set de String (méthodes par classe, sous-classes par classe) pouvant être déchargée
+ * sur disque dans un fichier mappé en mémoire lorsque le budget mémoire est dépassé.
+ * <br/>Les Set déchargés restent modifiables : une suppression marque l'élément comme supprimé
+ * directement dans le fichier mappé, et un ajout recharge le Set en mémoire.
+ * L'analyse se termine ainsi plus lentement au lieu d'échouer en OutOfMemoryError.
+ * @author evernat
+ */
+class SpillableSetMap extends AbstractMap<String, Set<String>> implements Serializable {
+	private static final long serialVersionUID = 1L;
+	// taille des segments mappés en mémoire (un enregistrement ne chevauche pas deux segments)
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+	// entête d'un enregistrement : nombre d'éléments puis nombre d'éléments non supprimés
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final byte REMOVED = 1;
+
+	private final Map<String, Set<String>> heapMap = new HashMap<>();
+	// position des Set déchargés : index du segment sur 32 bits de poids fort, puis position
+	private final Map<String, Long> spilledPositions = new HashMap<>();
+	private transient SpillFile spillFile;
+
+	/**
+	 * Fichier de déchargement, découpé en segments mappés en mémoire.
+	 */
+	private static final class SpillFile {
+		private final File file;
+		private final RandomAccessFile randomAccessFile;
+		private final List<MappedByteBuffer> segments = new ArrayList<>();
+		private long length;
+
+		SpillFile() throws IOException {
+			super();
+			file = File.createTempFile("dcd-spill", ".tmp");
+			file.deleteOnExit();
+			randomAccessFile = new RandomAccessFile(file, "rw");
+		}
+
+		long write(Set<String> set) throws IOException {
+			final byte[][] elements = new byte[set.size()][];
+			int recordSize = RECORD_HEADER_SIZE;
+			int i = 0;
+			for (final String element : set) {
+				elements[i] = element.getBytes(StandardCharsets.UTF_8);
+				// longueur, octets, puis marqueur de suppression
+				recordSize += 4 + elements[i].length + 1;
+				i++;
+			}
+			MappedByteBuffer segment = segments.isEmpty() ? null
+					: segments.get(segments.size() - 1);
+			if (segment == null || segment.remaining() < recordSize) {
+				segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE,
+						length, Math.max(SEGMENT_SIZE, recordSize));
+				length += segment.capacity();
+				segments.add(segment);
+			}
+			final long position = (long) (segments.size() - 1) << 32 | segment.position();
+			segment.putInt(elements.length);
+			segment.putInt(elements.length);
+			for (final byte[] element : elements) {
+				segment.putInt(element.length);
+				segment.put(element);
+				segment.put((byte) 0);
+			}
+			return position;
+		}
+
+		MappedByteBuffer getSegment(long position) {
+			return segments.get((int) (position >>> 32));
+		}
+
+		void close() {
+			try {
+				randomAccessFile.close();
+			} catch (final IOException e) {
+				// le fichier temporaire sera supprimé à la sortie de la JVM
+				DcdHelper.log("[DCD] Can not close " + file);
+			}
+			segments.clear();
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Vue d'un Set déchargé dans le fichier mappé en mémoire.
+	 */
+	private final class SpilledSet extends AbstractSet<String> {
+		private final String key;
+		private final MappedByteBuffer segment;
+		private final int start;
+		private Set<String> delegate;
+
+		SpilledSet(String key, long position) {
+			super();
+			this.key = key;
+			this.segment = spillFile.getSegment(position);
+			this.start = (int) position;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public int size() {
+			if (delegate != null) {
+				return delegate.size();
+			}
+			return segment.getInt(start + 4);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean contains(Object o) {
+			if (delegate != null) {
+				return delegate.contains(o);
+			}
+			return o instanceof String && find((String) o) >= 0;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean remove(Object o) {
+			if (delegate != null) {
+				return delegate.remove(o);
+			}
+			if (!(o instanceof String)) {
+				return false;
+			}
+			final int flagPosition = find((String) o);
+			if (flagPosition < 0) {
+				return false;
+			}
+			markRemoved(flagPosition);
+			return true;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean add(String e) {
+			if (delegate == null) {
+				// un ajout après déchargement (nouvelle sous-classe par exemple) :
+				// le Set est rechargé en mémoire
+				delegate = faultIn(key);
+			}
+			return delegate.add(e);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Iterator<String> iterator() {
+			if (delegate != null) {
+				return delegate.iterator();
+			}
+			return new SpilledIterator(this);
+		}
+
+		void markRemoved(int flagPosition) {
+			segment.put(flagPosition, REMOVED);
+			segment.putInt(start + 4, segment.getInt(start + 4) - 1);
+		}
+
+		// retourne la position du marqueur de suppression de l'élément ou -1 si non trouvé
+		private int find(String element) {
+			final byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+			final int count = segment.getInt(start);
+			int position = start + RECORD_HEADER_SIZE;
+			for (int i = 0; i < count; i++) {
+				final int length = segment.getInt(position);
+				position += 4;
+				if (length == bytes.length && segment.get(position + length) != REMOVED
+						&& equalsBytes(position, bytes)) {
+					return position + length;
+				}
+				position += length + 1;
+			}
+			return -1;
+		}
+
+		private boolean equalsBytes(int position, byte[] bytes) {
+			for (int i = 0; i < bytes.length; i++) {
+				if (segment.get(position + i) != bytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Itérateur sur les éléments non supprimés d'un Set déchargé.
+	 */
+	private static final class SpilledIterator implements Iterator<String> {
+		private final SpilledSet set;
+		private final int count;
+		private int index;
+		private int position;
+		// début et longueur de l'élément suivant non supprimé, -1 si aucun
+		private int nextStart = -1;
+		private int nextLength;
+		private int lastFlagPosition = -1;
+
+		SpilledIterator(SpilledSet set) {
+			super();
+			this.set = set;
+			this.count = set.segment.getInt(set.start);
+			this.position = set.start + RECORD_HEADER_SIZE;
+			advance();
+		}
+
+		private void advance() {
+			nextStart = -1;
+			while (index < count && nextStart < 0) {
+				final int length = set.segment.getInt(position);
+				if (set.segment.get(position + 4 + length) != REMOVED) {
+					nextStart = position + 4;
+					nextLength = length;
+				}
+				position += 4 + length + 1;
+				index++;
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean hasNext() {
+			return nextStart >= 0;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String next() {
+			if (nextStart < 0) {
+				throw new NoSuchElementException();
+			}
+			final byte[] bytes = new byte[nextLength];
+			for (int i = 0; i < nextLength; i++) {
+				bytes[i] = set.segment.get(nextStart + i);
+			}
+			lastFlagPosition = nextStart + nextLength;
+			advance();
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void remove() {
+			if (lastFlagPosition < 0) {
+				throw new IllegalStateException();
+			}
+			set.markRemoved(lastFlagPosition);
+			lastFlagPosition = -1;
+		}
+	}
+
+	/**
+	 * Décharge sur disque tous les Set présents en mémoire.
+	 * @return Nombre de Set déchargés
+	 * @throws IOException e
+	 */
+	int spill() throws IOException {
+		if (spillFile == null) {
+			spillFile = new SpillFile();
+		}
+		final int count = heapMap.size();
+		for (final Map.Entry<String, Set<String>> entry : heapMap.entrySet()) {
+			spilledPositions.put(entry.getKey(), spillFile.write(entry.getValue()));
+		}
+		heapMap.clear();
+		return count;
+	}
+
+	boolean isSpilled() {
+		return !spilledPositions.isEmpty();
+	}
+
+	Set<String> faultIn(String key) {
+		final Long position = spilledPositions.remove(key);
+		final Set<String> set = new HashSet<>(new SpilledSet(key, position));
+		heapMap.put(key, set);
+		return set;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Set<String> get(Object key) {
+		final Set<String> set = heapMap.get(key);
+		if (set != null || spilledPositions.isEmpty()) {
+			return set;
+		}
+		final Long position = spilledPositions.get(key);
+		if (position == null) {
+			return null;
+		}
+		return new SpilledSet((String) key, position);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean containsKey(Object key) {
+		return heapMap.containsKey(key) || spilledPositions.containsKey(key);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Set<String> put(String key, Set<String> value) {
+		final Set<String> previous = remove(key);
+		heapMap.put(key, value);
+		return previous;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Set<String> remove(Object key) {
+		final Set<String> set = heapMap.remove(key);
+		if (set != null || spilledPositions.isEmpty()) {
+			return set;
+		}
+		final Long position = spilledPositions.remove(key);
+		if (position == null) {
+			return null;
+		}
+		return new SpilledSet((String) key, position);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int size() {
+		return heapMap.size() + spilledPositions.size();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void clear() {
+		heapMap.clear();
+		spilledPositions.clear();
+		if (spillFile != null) {
+			spillFile.close();
+			spillFile = null;
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Set<Map.Entry<String, Set<String>>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Set<String>>>() {
+			/** {@inheritDoc} */
+			@Override
+			public int size() {
+				return SpillableSetMap.this.size();
+			}
+
+			/** {@inheritDoc} */
+			@Override
+			public Iterator<Map.Entry<String, Set<String>>> iterator() {
+				return new EntryIterator();
+			}
+		};
+	}
+
+	/**
+	 * Itérateur sur les entrées en mémoire puis sur les entrées déchargées.
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<String, Set<String>>> {
+		private final Iterator<Map.Entry<String, Set<String>>> heapIterator = heapMap.entrySet()
+				.iterator();
+		private final Iterator<Map.Entry<String, Long>> spilledIterator = spilledPositions
+				.entrySet().iterator();
+		private Iterator<?> lastIterator;
+
+		EntryIterator() {
+			super();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean hasNext() {
+			return heapIterator.hasNext() || spilledIterator.hasNext();
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Map.Entry<String, Set<String>> next() {
+			if (heapIterator.hasNext()) {
+				lastIterator = heapIterator;
+				return heapIterator.next();
+			}
+			lastIterator = spilledIterator;
+			final Map.Entry<String, Long> entry = spilledIterator.next();
+			return new SimpleImmutableEntry<String, Set<String>>(entry.getKey(),
+					new SpilledSet(entry.getKey(), entry.getValue()));
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void remove() {
+			if (lastIterator == null) {
+				throw new IllegalStateException();
+			}
+			lastIterator.remove();
+			lastIterator = null;
+		}
+	}
+
+	private Object writeReplace() {
+		// sérialisation (index partiel du mode shard par exemple) :
+		// les Set déchargés sont rechargés en mémoire
+		if (spilledPositions.isEmpty()) {
+			return new HashMap<>(heapMap);
+		}
+		final Map<String, Set<String>> map = new HashMap<>(size());
+		for (final Map.Entry<String, Set<String>> entry : entrySet()) {
+			map.put(entry.getKey(), new HashSet<>(entry.getValue()));
+		}
+		return map;
+	}
+}
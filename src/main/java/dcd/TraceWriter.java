@@ -0,0 +1,122 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Ecriture d'une trace de l'analyse au format "Trace Event" de Chrome
+ * (chrome://tracing, Perfetto, Speedscope...) : un évènement complet (ph X) par span
+ * (parcours de répertoire, décompression, étape, package, fichiers de vue, écriture du rapport),
+ * avec le processus et le thread, pour trouver les sérialisations et les traînards
+ * des analyses parallèles.
+ * <br/>Les spans peuvent être écrits par le thread d'analyse et par le thread du rapport.
+ * @author evernat
+ */
+class TraceWriter {
+	private final Writer writer;
+	private final long pid;
+	private final long originNanos = System.nanoTime();
+	private final Set<Long> namedThreadIds = new HashSet<>();
+	private final StringBuilder event = new StringBuilder();
+
+	TraceWriter(File traceFile, String processName) throws IOException {
+		super();
+		if (traceFile.getParentFile() != null && !traceFile.getParentFile().mkdirs()
+				&& !traceFile.getParentFile().exists()) {
+			throw new IOException("Parent directory of traceFile can't be created: "
+					+ traceFile.getPath());
+		}
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(traceFile),
+				StandardCharsets.UTF_8), 64 * 1024);
+		pid = getPid();
+		writer.write("{\"traceEvents\":[\n");
+		writeMetadata("process_name", 0, processName);
+	}
+
+	private static long getPid() {
+		// nom de la forme pid@host (java 7 et 8)
+		final String name = ManagementFactory.getRuntimeMXBean().getName();
+		final int index = name.indexOf('@');
+		try {
+			return Long.parseLong(index != -1 ? name.substring(0, index) : name);
+		} catch (final NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return Début d'un span, à passer à {@link #span(String, String, long)}
+	 */
+	static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Ecrit un span terminé maintenant, dans le thread courant.
+	 * @param category Catégorie (walk, unzip, step, package, viewFiles, report)
+	 * @param name Nom (répertoire, fichier, étape, package...)
+	 * @param startNanos Début du span retourné par {@link #start()}
+	 * @throws IOException e
+	 */
+	synchronized void span(String category, String name, long startNanos) throws IOException {
+		final Thread thread = Thread.currentThread();
+		if (namedThreadIds.add(thread.getId())) {
+			writeMetadata("thread_name", thread.getId(), thread.getName());
+		}
+		final long start = (startNanos - originNanos) / 1000;
+		final long end = (System.nanoTime() - originNanos) / 1000;
+		event.setLength(0);
+		event.append(",\n{\"name\":");
+		DcdHelper.appendJsonString(event, name != null ? name : "");
+		event.append(",\"cat\":");
+		DcdHelper.appendJsonString(event, category);
+		event.append(",\"ph\":\"X\",\"ts\":").append(start).append(",\"dur\":")
+				.append(end - start).append(",\"pid\":").append(pid).append(",\"tid\":")
+				.append(thread.getId()).append('}');
+		writer.append(event);
+	}
+
+	// évènement de métadonnées (ph M) : nom du processus ou d'un thread
+	private void writeMetadata(String name, long tid, String value) throws IOException {
+		event.setLength(0);
+		if (tid != 0) {
+			// le nom du processus est le premier évènement
+			event.append(",\n");
+		}
+		event.append("{\"name\":\"").append(name).append("\",\"ph\":\"M\",\"pid\":")
+				.append(pid).append(",\"tid\":").append(tid).append(",\"args\":{\"name\":");
+		DcdHelper.appendJsonString(event, value);
+		event.append("}}");
+		writer.append(event);
+	}
+
+	synchronized void close() throws IOException {
+		writer.write("\n]}\n");
+		writer.close();
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Export xml des résultats d'analyses.
+ * @author evernat
+ */
+class XmlReportSink implements ReportSink {
+	private static final String XML_INDENT = "  ";
+	// retour à la ligne xml normalisé (http://www.w3.org/TR/xml11/#sec-line-ends)
+	private static final String XML_END_OF_LINE = "\n";
+	private final FileOutputStream fileOutput;
+	private final OutputStream output;
+	private final XMLStreamWriter xmlStreamWriter;
+	// true si le rapport xml est repris après un point de reprise, sans élément racine ouvert
+	private final boolean resumed;
+
+	XmlReportSink(File xmlReportFile, long resumePosition) throws XMLStreamException, IOException {
+		super();
+		resumed = resumePosition > 0;
+		if (resumed) {
+			// le rapport écrit avant l'interruption est conservé jusqu'au dernier package terminé
+			fileOutput = new FileOutputStream(xmlReportFile, true);
+			fileOutput.getChannel().truncate(resumePosition);
+			output = new BufferedOutputStream(fileOutput, 64 * 1024);
+			xmlStreamWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(output);
+		} else {
+			if (xmlReportFile.getParentFile() != null && !xmlReportFile.getParentFile().mkdirs()
+					&& !xmlReportFile.getParentFile().exists()) {
+				throw new IOException("Parent directory of xmlReportFile can't be created: "
+						+ xmlReportFile.getPath());
+			}
+			fileOutput = new FileOutputStream(xmlReportFile);
+			output = new BufferedOutputStream(fileOutput, 64 * 1024);
+			final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+			// Output destination can be specified with an OutputStream or Writer.
+			xmlStreamWriter = factory.createXMLStreamWriter(output);
+			//		String url = "http://url/";
+			//      xmlStreamWriter.setPrefix("date", url + "date");
+
+			xmlStreamWriter.writeStartDocument(); // writes XML declaration
+			xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
+			xmlStreamWriter
+					.writeComment(' ' + DcdHelper.APPLICATION_NAME + ", http://dcd.dev.java.net ");
+			xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
+			final String root = "dcd";
+			//        String doctype =
+			//            "<!DOCTYPE " + root + " SYSTEM \"" + url + "xml/cd.dtd\">";
+			//        xsm.writeDTD(doctype);
+			//        xsm.writeProcessingInstruction(
+			//            "xml-stylesheet", "type=\"text/xsl\" href=\"cd.xslt\"");
+			xmlStreamWriter.writeStartElement(root);
+			xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
+			//        xsm.writeDefaultNamespace(url + "music");
+			//        xsm.writeNamespace("date", url + "xml/date.xsd");
+			//        xsm.writeNamespace("xsi", "http://www.w3.org/1999/XMLSchema-instance");
+			//        xsm.writeAttribute("xsi:schemaLocation",
+			//            url + "music " + url + "xml/cd.xsd " +
+			//            url + "date " + url + "xml/date.xsd");
+			// xmlStreamWriter.writeAttribute("year", "2008");
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void report(Finding finding) throws IOException {
+		try {
+			xmlStreamWriter.writeCharacters(XML_INDENT);
+			xmlStreamWriter.writeStartElement(finding.getKind().getName());
+			xmlStreamWriter.writeAttribute("className", finding.getClassName());
+			xmlStreamWriter.writeCharacters(FindingFormatter.getMessage(finding));
+			final String details = FindingFormatter.getDetails(finding);
+			if (details != null) {
+				xmlStreamWriter.writeCharacters(details);
+			}
+			xmlStreamWriter.writeEndElement();
+			xmlStreamWriter.writeCharacters(XML_END_OF_LINE); // retour à la ligne pour lisibilité
+		} catch (final XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void log(String message) {
+		// les messages de log ne sont pas dans le rapport xml
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void flush() {
+		// le rapport xml n'est lisible qu'une fois terminé : pas d'écriture anticipée
+	}
+
+	long getPosition() throws IOException {
+		try {
+			xmlStreamWriter.flush();
+		} catch (final XMLStreamException e) {
+			throw new IOException(e);
+		}
+		output.flush();
+		return fileOutput.getChannel().position();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close(long durationMillis, int suspectCount, int analyzedClassCount)
+			throws IOException {
+		try {
+			try {
+				xmlStreamWriter.writeCharacters(XML_INDENT);
+				xmlStreamWriter.writeStartElement("summary");
+				xmlStreamWriter.writeAttribute("durationMillis", String.valueOf(durationMillis));
+				xmlStreamWriter.writeAttribute("suspectCount", String.valueOf(suspectCount));
+				xmlStreamWriter.writeAttribute("analyzedClassCount",
+						String.valueOf(analyzedClassCount));
+				xmlStreamWriter.writeEndElement();
+				xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
+
+				if (resumed) {
+					// l'élément racine a été ouvert avant la reprise, le writer ne le connaît pas
+					xmlStreamWriter.flush();
+					output.write(("</dcd>" + XML_END_OF_LINE).getBytes(StandardCharsets.UTF_8));
+				} else {
+					xmlStreamWriter.writeEndElement();
+					xmlStreamWriter.writeCharacters(XML_END_OF_LINE);
+				}
+			} finally {
+				xmlStreamWriter.close();
+			}
+		} catch (final XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			output.close();
+		}
+	}
+}
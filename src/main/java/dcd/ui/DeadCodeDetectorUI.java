@@ -102,7 +102,7 @@ public class DeadCodeDetectorUI extends JPanel {
 				/** {@inheritDoc} */
 				@Override
 				public void windowClosing(WindowEvent e) {
-					ui.parametersPanel.getController().actionCancel();
+					ui.parametersPanel.getController().closeSession();
 					if (propertiesFile == null) {
 						try {
 							ui.parametersPanel.createParameters().writeToUserPreferences();
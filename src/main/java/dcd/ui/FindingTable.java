@@ -0,0 +1,50 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd.ui;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * Tableau des résultats de l'analyse, trié par un clic sur l'entête d'une colonne.
+ * Le tri est fait par le modèle, hors de l'EDT, et non par un RowSorter.
+ * @author evernat
+ */
+class FindingTable extends Table {
+	private static final long serialVersionUID = 1L;
+
+	FindingTable() {
+		super(new FindingTableModel());
+		setAutoCreateRowSorter(false);
+		setRowSorter(null);
+		getTableHeader().addMouseListener(new MouseAdapter() {
+			/** {@inheritDoc} */
+			@Override
+			public void mouseClicked(MouseEvent event) {
+				final int column = getTableHeader().columnAtPoint(event.getPoint());
+				if (column != -1) {
+					getFindingTableModel().sortBy(convertColumnIndexToModel(column));
+				}
+			}
+		});
+	}
+
+	FindingTableModel getFindingTableModel() {
+		return (FindingTableModel) getModel();
+	}
+}
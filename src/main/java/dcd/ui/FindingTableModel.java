@@ -0,0 +1,337 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd.ui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import dcd.Finding;
+import dcd.FindingListener;
+
+/**
+ * Modèle de données des résultats pour le composant FindingTable, avec une ligne par méthode,
+ * champ ou variable suspect.
+ * <br/>Les résultats sont reçus au fil de l'analyse et ajoutés par lots à fréquence fixe,
+ * entre {@link #startRefresh()} et {@link #stopRefresh()}.
+ * Les valeurs des cellules ne sont calculées que pour les lignes affichées. Le filtre par
+ * regexp et le tri sont calculés hors de l'EDT par un SwingWorker.
+ * @author evernat
+ */
+class FindingTableModel extends AbstractTableModel implements FindingListener {
+	private static final long serialVersionUID = 1L;
+	private static final String[] COLUMN_NAMES = { "Type", "Class", "Method", "Suspect",
+			"Visibility", };
+	private static final int REFRESH_DELAY_MILLIS = 200;
+	// lignes : résultat et index du membre dans ce résultat, modifiées seulement dans l'EDT
+	private transient Finding[] rowFindings = new Finding[1024];
+	private int[] rowMembers = new int[1024];
+	private int rowCount;
+	// lignes affichées (filtrées et triées), ou null pour toutes les lignes dans l'ordre
+	private int[] viewRows;
+	private Pattern filter;
+	private int sortColumn = -1;
+	private boolean sortAscending;
+	private transient SwingWorker<int[], Void> viewWorker;
+	// true si le filtre, le tri ou les lignes ont changé pendant le calcul de viewWorker
+	private boolean viewDirty;
+	// résultats reçus du thread d'écriture du rapport, pas encore ajoutés
+	private final transient List<Finding> pendingFindings = new ArrayList<>();
+	private final transient Timer timer;
+	// nombre d'analyses en cours, plusieurs pouvant se chevaucher, modifié seulement dans l'EDT
+	private int runningAnalysisCount;
+
+	FindingTableModel() {
+		super();
+		timer = new Timer(REFRESH_DELAY_MILLIS, new ActionListener() {
+			/** {@inheritDoc} */
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				addPendingFindings();
+			}
+		});
+		timer.setCoalesce(true);
+	}
+
+	/**
+	 * Démarre l'ajout périodique des résultats reçus, au lancement d'une analyse.
+	 */
+	void startRefresh() {
+		runningAnalysisCount++;
+		timer.start();
+	}
+
+	/**
+	 * Ajoute les derniers résultats reçus, à la fin d'une analyse, et arrête l'ajout périodique
+	 * s'il n'y a plus d'analyse en cours.
+	 */
+	void stopRefresh() {
+		runningAnalysisCount--;
+		if (runningAnalysisCount == 0) {
+			timer.stop();
+		}
+		addPendingFindings();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void onFinding(Finding finding) {
+		// appelée par le thread d'écriture du rapport
+		synchronized (pendingFindings) {
+			pendingFindings.add(finding);
+		}
+	}
+
+	final void addPendingFindings() {
+		final Finding[] findings;
+		synchronized (pendingFindings) {
+			if (pendingFindings.isEmpty()) {
+				return;
+			}
+			findings = pendingFindings.toArray(new Finding[pendingFindings.size()]);
+			pendingFindings.clear();
+		}
+		final int firstRow = rowCount;
+		for (final Finding finding : findings) {
+			for (int i = 0; i < finding.getMembers().size(); i++) {
+				if (rowCount == rowFindings.length) {
+					rowFindings = Arrays.copyOf(rowFindings, rowCount * 2);
+					rowMembers = Arrays.copyOf(rowMembers, rowCount * 2);
+				}
+				rowFindings[rowCount] = finding;
+				rowMembers[rowCount] = i;
+				rowCount++;
+			}
+		}
+		if (viewRows == null) {
+			if (rowCount > firstRow) {
+				fireTableRowsInserted(firstRow, rowCount - 1);
+			}
+		} else {
+			updateView();
+		}
+	}
+
+	void clear() {
+		synchronized (pendingFindings) {
+			pendingFindings.clear();
+		}
+		Arrays.fill(rowFindings, 0, rowCount, null);
+		rowCount = 0;
+		// le calcul en cours et les lignes affichées référencent les lignes supprimées :
+		// la vue est vidée avant tout repaint, puis recalculée
+		cancelViewWorker();
+		if (viewRows != null) {
+			viewRows = new int[0];
+			fireTableDataChanged();
+		}
+		updateView();
+	}
+
+	/**
+	 * Filtre les lignes avec une regexp, cherchée dans toutes les colonnes.
+	 * @param regex Regexp, ou chaîne vide pour toutes les lignes
+	 */
+	void setFilter(String regex) {
+		filter = regex.isEmpty() ? null : Pattern.compile(regex);
+		updateView();
+	}
+
+	/**
+	 * Trie les lignes selon une colonne, en ordre inverse si elle était déjà triée.
+	 * @param column Index de colonne dans le modèle
+	 */
+	void sortBy(int column) {
+		if (column == sortColumn) {
+			sortAscending = !sortAscending;
+		} else {
+			sortColumn = column;
+			sortAscending = true;
+		}
+		updateView();
+	}
+
+	private void updateView() {
+		if (filter == null && sortColumn < 0) {
+			cancelViewWorker();
+			viewRows = null;
+			fireTableDataChanged();
+			return;
+		}
+		if (viewWorker != null) {
+			// le calcul en cours est obsolète, il sera relancé à sa fin
+			viewDirty = true;
+			return;
+		}
+		final Finding[] findings = Arrays.copyOf(rowFindings, rowCount);
+		final int[] members = Arrays.copyOf(rowMembers, rowCount);
+		final Pattern pattern = filter;
+		final int column = sortColumn;
+		final boolean ascending = sortAscending;
+		viewWorker = new SwingWorker<int[], Void>() {
+			/** {@inheritDoc} */
+			@Override
+			protected int[] doInBackground() {
+				return computeView(findings, members, pattern, column, ascending);
+			}
+
+			/** {@inheritDoc} */
+			@Override
+			protected void done() {
+				if (viewWorker != this) {
+					// calcul annulé
+					return;
+				}
+				viewWorker = null;
+				// la vue calculée est affichée même si elle est déjà obsolète (lignes ajoutées
+				// entre-temps), sinon elle ne le serait jamais tant que les résultats arrivent
+				try {
+					viewRows = get();
+				} catch (final InterruptedException | ExecutionException e) {
+					throw new IllegalStateException(e);
+				}
+				fireTableDataChanged();
+				if (viewDirty) {
+					viewDirty = false;
+					updateView();
+				}
+			}
+		};
+		viewWorker.execute();
+	}
+
+	private void cancelViewWorker() {
+		if (viewWorker != null) {
+			// done est appelée dans cancel si on est dans l'EDT : le calcul doit déjà être obsolète
+			final SwingWorker<int[], Void> worker = viewWorker;
+			viewWorker = null;
+			worker.cancel(true);
+		}
+		viewDirty = false;
+	}
+
+	// appelée hors de l'EDT
+	static int[] computeView(final Finding[] findings, final int[] members, Pattern pattern,
+			final int column, final boolean ascending) {
+		int count = 0;
+		final int[] rows = new int[findings.length];
+		for (int row = 0; row < findings.length; row++) {
+			if (pattern == null || matches(pattern, findings[row], members[row])) {
+				rows[count] = row;
+				count++;
+			}
+		}
+		if (column < 0) {
+			return Arrays.copyOf(rows, count);
+		}
+		final Integer[] order = new Integer[count];
+		final String[] keys = new String[findings.length];
+		for (int i = 0; i < count; i++) {
+			order[i] = rows[i];
+			keys[rows[i]] = getValue(findings[rows[i]], members[rows[i]], column);
+		}
+		// tri stable, les lignes égales restent dans l'ordre de l'analyse
+		Arrays.sort(order, new Comparator<Integer>() {
+			/** {@inheritDoc} */
+			@Override
+			public int compare(Integer row1, Integer row2) {
+				final int result = keys[row1].compareToIgnoreCase(keys[row2]);
+				return ascending ? result : -result;
+			}
+		});
+		final int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+
+	private static boolean matches(Pattern pattern, Finding finding, int member) {
+		for (int column = 0; column < COLUMN_NAMES.length; column++) {
+			if (pattern.matcher(getValue(finding, member, column)).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getValue(Finding finding, int member, int column) {
+		switch (column) {
+		case 0:
+			return finding.getKind().getName();
+		case 1:
+			return finding.getClassName();
+		case 2:
+			return finding.getMethod() != null ? finding.getMethod() : "";
+		case 3:
+			return finding.getMembers().get(member).getDescription();
+		case 4:
+			final String visibility = finding.getMembers().get(member).getVisibility();
+			return visibility != null ? visibility : "";
+		default:
+			return "??";
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getRowCount() {
+		return viewRows != null ? viewRows.length : rowCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getColumnCount() {
+		return COLUMN_NAMES.length;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getColumnName(int column) {
+		return COLUMN_NAMES[column];
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Class<?> getColumnClass(int column) {
+		return String.class;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Object getValueAt(int rowIndex, int columnIndex) {
+		final int row = viewRows != null ? viewRows[rowIndex] : rowIndex;
+		return getValue(rowFindings[row], rowMembers[row], columnIndex);
+	}
+
+	/**
+	 * @return Nombre de lignes de tous les résultats, avant filtre
+	 */
+	int getTotalRowCount() {
+		return rowCount;
+	}
+}
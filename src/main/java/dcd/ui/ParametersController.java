@@ -24,6 +24,11 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -34,6 +39,7 @@ import javax.swing.JTextArea;
 import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
+import dcd.AnalysisSession;
 import dcd.DeadCodeDetector;
 import dcd.Parameters;
 import dcd.ProgressListener;
@@ -44,60 +50,71 @@ import dcd.ProgressListener;
  */
 class ParametersController implements ProgressListener, Serializable {
 	private static final long serialVersionUID = 1L;
+	// nombre maximum de caractères conservés dans la zone de texte
+	private static final int MAX_RETAINED_CHARS = 2 * 1024 * 1024;
 	transient Thread thread; // NOPMD
 	final JProgressBar progressBar;
 	private final JFileChooser fileChooser = new JFileChooser();
 	private final FileTable fileTable;
 	private final JTextArea textArea;
+	private final FindingTableModel findingTableModel;
+	// fichiers décompressés et classes lues gardés entre deux analyses
+	private final transient AnalysisSession session = new AnalysisSession();
+	private final transient TextAreaAppender textAreaAppender;
 
 	private static class TextAreaOutputStream extends OutputStream {
-		JTextArea textArea;
+		private final TextAreaAppender appender;
+		// décodage UTF-8 gardant les octets d'un caractère coupé entre deux écritures
+		private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+		private final CharBuffer chars = CharBuffer.allocate(8192);
 
-		TextAreaOutputStream(JTextArea textArea) {
+		TextAreaOutputStream(TextAreaAppender appender) {
 			super();
-			this.textArea = textArea;
+			this.appender = appender;
 		}
 
 		/** {@inheritDoc} */
 		@Override
-		public void write(byte[] buf) throws UnsupportedEncodingException {
-			append(new String(buf, "UTF-8"));
-		}
-
-		/** {@inheritDoc} */
-		@Override
-		public void write(byte[] buf, int offset, int length) throws UnsupportedEncodingException {
-			append(new String(buf, offset, length, "UTF-8"));
+		public synchronized void write(byte[] buf, int offset, int length) {
+			int off = offset;
+			int remaining = length;
+			while (remaining > 0) {
+				final int count = Math.min(remaining, bytes.remaining());
+				bytes.put(buf, off, count);
+				off += count;
+				remaining -= count;
+				bytes.flip();
+				// en UTF-8, il n'y a pas plus de caractères que d'octets : chars suffit
+				decoder.decode(bytes, chars, false);
+				bytes.compact();
+				appender.append(chars.array(), 0, chars.position());
+				chars.clear();
+			}
 		}
 
 		/** {@inheritDoc} */
 		@Override
 		public void write(int b) {
-			append(String.valueOf((char) b));
-		}
-
-		private void append(final String string) {
-			SwingUtilities.invokeLater(new Runnable() { // NOPMD
-				/** {@inheritDoc} */
-				@Override
-				public void run() {
-					textArea.append(string);
-					// Make sure the last line is always visible
-					textArea.setCaretPosition(textArea.getDocument().getLength());
-				}
-			});
+			write(new byte[] { (byte) b }, 0, 1);
 		}
 	}
 
 	@SuppressWarnings("resource")
-	ParametersController(FileTable fileTable, JTextArea textArea, JProgressBar progressBar) {
+	ParametersController(FileTable fileTable, JTextArea textArea,
+			FindingTableModel findingTableModel, JProgressBar progressBar) {
 		super();
 		this.fileTable = fileTable;
 		this.textArea = textArea;
+		this.findingTableModel = findingTableModel;
 		this.progressBar = progressBar;
 		textArea.append(DeadCodeDetector.APPLICATION_NAME + '\n');
+		textAreaAppender = new TextAreaAppender(textArea, MAX_RETAINED_CHARS);
 		try {
-			System.setOut(new PrintStream(new TextAreaOutputStream(textArea), true, "UTF-8"));
+			System.setOut(
+					new PrintStream(new TextAreaOutputStream(textAreaAppender), true, "UTF-8"));
 		} catch (final UnsupportedEncodingException e) {
 			// ne peut pas arriver
 			throw new IllegalStateException(e);
@@ -152,13 +169,19 @@ class ParametersController implements ProgressListener, Serializable {
 		progressBar.setVisible(true);
 		onProgress(0);
 		final FileTable table = fileTable;
+		final FindingTableModel tableModel = findingTableModel;
+		final AnalysisSession analysisSession = session;
+		tableModel.clear();
+		tableModel.startRefresh();
 		thread = new Thread("DCD") { // NOPMD
 			@Override
 			public void run() {
 				try {
 					final DeadCodeDetector dcd = new DeadCodeDetector(parameters);
 					dcd.setProgressListener(ParametersController.this);
-					dcd.run();
+					dcd.setSession(analysisSession);
+					// résultats ajoutés au tableau au fil de l'analyse
+					dcd.analyze(tableModel);
 				} catch (final Exception e) {
 					DcdUiHelper.handleException(e, table);
 				} finally {
@@ -167,6 +190,8 @@ class ParametersController implements ProgressListener, Serializable {
 						@Override
 						public void run() {
 							progressBar.setVisible(false);
+							// le rapport est fermé : tous les résultats ont été reçus
+							tableModel.stopRefresh();
 						}
 					});
 				}
@@ -208,6 +233,14 @@ class ParametersController implements ProgressListener, Serializable {
 		}
 	}
 
+	/**
+	 * Fin de la session d'analyses, à la fermeture de l'application.
+	 */
+	void closeSession() {
+		actionCancel();
+		session.close();
+	}
+
 	void actionCopy() {
 		final StringSelection stringSelection = new StringSelection(textArea.getText());
 		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(stringSelection,
@@ -215,7 +248,9 @@ class ParametersController implements ProgressListener, Serializable {
 	}
 
 	void actionClear() {
+		textAreaAppender.clear();
 		textArea.setText("");
+		findingTableModel.clear();
 	}
 
 	FileTableModel getFileTableModel() {
@@ -18,6 +18,7 @@
 package dcd.ui;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -25,6 +26,7 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.regex.PatternSyntaxException;
 
 import javax.swing.Action;
 import javax.swing.BorderFactory;
@@ -34,6 +36,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
@@ -42,6 +45,8 @@ import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.TransferHandler;
 import javax.swing.border.Border;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import dcd.Parameters;
 
@@ -62,6 +67,8 @@ class ParametersPanel extends JPanel {
 	private final JCheckBox initDeadCodeCheckBox = new JCheckBox("init");
 	private final JProgressBar progressBar = new JProgressBar(0, 100);
 	private final JTextArea textArea = new JTextArea(10, 88);
+	private final FindingTable findingTable = new FindingTable();
+	private final JTextField findingFilterTextField = new JTextField(30);
 	private final JPanel resultsPanel = new JPanel();
 	private final JButton advancedButton = createButton("Advanced", "/images/down.gif", "advanced");
 	private final JPanel advancedPanel = new JPanel(DcdUiHelper.createBorderLayout());
@@ -71,7 +78,7 @@ class ParametersPanel extends JPanel {
 			"Type a regular expression of methods or fields to exclude (ex : get.*)");
 	private final JTextField xmlReportFileTextField = new JTextField(50);
 	private final ParametersController controller = new ParametersController(filesTable, textArea,
-			progressBar);
+			findingTable.getFindingTableModel(), progressBar);
 
 	ParametersPanel(Parameters parameters) {
 		super();
@@ -234,10 +241,13 @@ class ParametersPanel extends JPanel {
 		final JScrollPane scrollPane = new JScrollPane(textArea);
 		// scrollbar vertical à always pour éviter d'avoir la scrollbar horizontal
 		scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
+		final JTabbedPane tabbedPane = new JTabbedPane();
+		tabbedPane.addTab("Results", getFindingsPanel());
+		tabbedPane.addTab("Log", scrollPane);
 		final JPanel scrollPanePanel = new JPanel(DcdUiHelper.createBorderLayout());
 		scrollPanePanel.setBorder(EMPTY_BORDER);
 		scrollPanePanel.setOpaque(false);
-		scrollPanePanel.add(scrollPane, BorderLayout.CENTER);
+		scrollPanePanel.add(tabbedPane, BorderLayout.CENTER);
 		final JPanel resultsButtonsPanel = new JPanel(DcdUiHelper.createGridLayout(-1, 1, 10, 10));
 		resultsButtonsPanel.setBorder(EMPTY_BORDER);
 		resultsButtonsPanel.setOpaque(false);
@@ -262,6 +272,48 @@ class ParametersPanel extends JPanel {
 		return resultsPanel;
 	}
 
+	private JPanel getFindingsPanel() {
+		final JScrollPane scrollPane = new JScrollPane(findingTable);
+		scrollPane.setPreferredSize(textArea.getPreferredScrollableViewportSize());
+		final JPanel filterPanel = new JPanel(DcdUiHelper.LEADING_FLOW_LAYOUT);
+		filterPanel.setOpaque(false);
+		filterPanel.add(new JLabel("Filter (regular expression) "));
+		filterPanel.add(findingFilterTextField);
+		findingFilterTextField.getDocument().addDocumentListener(new DocumentListener() {
+			/** {@inheritDoc} */
+			@Override
+			public void insertUpdate(DocumentEvent event) {
+				onFindingFilterChanged();
+			}
+
+			/** {@inheritDoc} */
+			@Override
+			public void removeUpdate(DocumentEvent event) {
+				onFindingFilterChanged();
+			}
+
+			/** {@inheritDoc} */
+			@Override
+			public void changedUpdate(DocumentEvent event) {
+				onFindingFilterChanged();
+			}
+		});
+		final JPanel findingsPanel = new JPanel(DcdUiHelper.createBorderLayout());
+		findingsPanel.add(filterPanel, BorderLayout.NORTH);
+		findingsPanel.add(scrollPane, BorderLayout.CENTER);
+		return findingsPanel;
+	}
+
+	final void onFindingFilterChanged() {
+		try {
+			findingTable.getFindingTableModel().setFilter(findingFilterTextField.getText());
+			findingFilterTextField.setForeground(textArea.getForeground());
+		} catch (final PatternSyntaxException e) {
+			// regexp incomplète pendant la saisie : le filtre précédent est conservé
+			findingFilterTextField.setForeground(Color.RED);
+		}
+	}
+
 	private JButton createButton(String text, String imageName, String actionCommand) {
 		final JButton button = DcdUiHelper.createButton(text, imageName, actionCommand);
 		button.addActionListener(new ActionListener() {
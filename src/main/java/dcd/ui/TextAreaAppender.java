@@ -0,0 +1,167 @@
+/*
+ * Copyright 2008 by Emeric Vernat
+ *
+ *     This file is part of Dead Code Detector.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dcd.ui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+
+/**
+ * Ajout de texte dans un JTextArea depuis n'importe quel thread, regroupé par image :
+ * le texte est accumulé dans un buffer circulaire et ajouté au JTextArea par un timer Swing
+ * à fréquence fixe, au lieu d'un invokeLater par écriture qui sature l'EDT.
+ * <br/>Le timer est démarré par la première écriture et arrêté dès que le buffer est vide :
+ * il ne tourne pas quand rien n'est écrit.
+ * <br/>Le texte conservé est limité : au-delà de maxRetainedChars, le texte le plus ancien est
+ * perdu dans le buffer et retiré du JTextArea.
+ * @author evernat
+ */
+class TextAreaAppender {
+	// 25 images par seconde
+	private static final int FRAME_DELAY_MILLIS = 40;
+	private final JTextArea textArea;
+	private final int maxRetainedChars;
+	// buffer circulaire du texte pas encore ajouté, protégé par this
+	private final char[] ring;
+	private int ringStart;
+	private int ringLength;
+	// true si du texte a été perdu depuis le dernier ajout dans le JTextArea
+	private boolean truncated;
+	// true si le timer est démarré ou va l'être, protégé par this
+	private boolean timerScheduled;
+	private final Timer timer;
+	private final Runnable timerStarter;
+
+	TextAreaAppender(JTextArea textArea, int maxRetainedChars) {
+		super();
+		assert maxRetainedChars > 0;
+		this.textArea = textArea;
+		this.maxRetainedChars = maxRetainedChars;
+		this.ring = new char[maxRetainedChars];
+		this.timer = new Timer(FRAME_DELAY_MILLIS, new ActionListener() {
+			/** {@inheritDoc} */
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				flushToTextArea();
+			}
+		});
+		timer.setCoalesce(true);
+		this.timerStarter = new Runnable() {
+			/** {@inheritDoc} */
+			@Override
+			public void run() {
+				timer.start();
+			}
+		};
+	}
+
+	void append(char[] chars, int offset, int length) {
+		final boolean startTimer;
+		synchronized (this) {
+			appendToRing(chars, offset, length);
+			startTimer = !timerScheduled;
+			timerScheduled = true;
+		}
+		if (startTimer) {
+			// le timer est démarré dans l'EDT, une seule fois jusqu'à ce que le buffer soit vidé
+			SwingUtilities.invokeLater(timerStarter);
+		}
+	}
+
+	private void appendToRing(char[] chars, int offset, int length) {
+		int start = offset;
+		int count = length;
+		if (count > ring.length) {
+			// seule la fin du texte peut être conservée
+			start += count - ring.length;
+			count = ring.length;
+			truncated = true;
+		}
+		for (int i = start; i < start + count; i++) {
+			if (ringLength == ring.length) {
+				// buffer plein : le caractère le plus ancien est perdu
+				ring[ringStart] = chars[i];
+				ringStart = (ringStart + 1) % ring.length;
+				truncated = true;
+			} else {
+				ring[(ringStart + ringLength) % ring.length] = chars[i];
+				ringLength++;
+			}
+		}
+	}
+
+	synchronized void clear() {
+		ringStart = 0;
+		ringLength = 0;
+		truncated = false;
+	}
+
+	private synchronized String takePendingText() {
+		if (ringLength == 0) {
+			// plus rien à ajouter : le timer est arrêté jusqu'à la prochaine écriture
+			timerScheduled = false;
+			timer.stop();
+			return null;
+		}
+		final String text;
+		if (ringStart + ringLength <= ring.length) {
+			text = new String(ring, ringStart, ringLength);
+		} else {
+			final int firstLength = ring.length - ringStart;
+			text = new String(ring, ringStart, firstLength)
+					+ new String(ring, 0, ringLength - firstLength);
+		}
+		ringStart = 0;
+		ringLength = 0;
+		if (truncated) {
+			truncated = false;
+			// la première ligne, incomplète, n'est pas affichée
+			final int index = text.indexOf('\n');
+			if (index != -1) {
+				return text.substring(index + 1);
+			}
+		}
+		return text;
+	}
+
+	// appelée dans l'EDT par le timer
+	void flushToTextArea() {
+		final String text = takePendingText();
+		if (text == null) {
+			return;
+		}
+		textArea.append(text);
+		final int excess = textArea.getDocument().getLength() - maxRetainedChars;
+		if (excess > 0) {
+			try {
+				// suppression des lignes les plus anciennes, jusqu'à une fin de ligne
+				final int end = textArea.getLineEndOffset(textArea.getLineOfOffset(excess));
+				textArea.replaceRange(null, 0, end);
+			} catch (final BadLocationException e) {
+				// ne peut pas arriver, excess étant dans le document
+				throw new IllegalStateException(e);
+			}
+		}
+		// Make sure the last line is always visible
+		textArea.setCaretPosition(textArea.getDocument().getLength());
+	}
+}